@@ -0,0 +1,133 @@
+package src.pamvotis.bench;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * A benchmark of a hot path of the simulator. Each benchmark executes a number of operations (e.g. simulated
+ * slots or generated random variables) in a loop. The benchmark is first executed for some warmup iterations,
+ * so that the JIT compiler optimizes the code, and then it is measured for some iterations. The throughput
+ * in operations per second and the memory allocated per operation are reported.
+ * @see BenchmarkSuite
+ */
+public abstract class Benchmark {
+
+    private String name = null;	//The name of the benchmark.
+    private String unit = null;	//The name of an operation, e.g. "slot".
+    private double opsPerSec = 0;	//The measured throughput.
+    private double bytesPerOp = Double.NaN;	//The measured allocations, or NaN if they can not be measured.
+    private static volatile long sink = 0;	//Keeps the results of the benchmarks, so that they are not optimized away.
+
+    /**
+     * Creates a benchmark.
+     * @param name The name of the benchmark.
+     * @param unit The name of an operation, e.g. "slot".
+     */
+    public Benchmark(String name, String unit) {
+        this.name = name;
+        this.unit = unit;
+    }
+
+    /**
+     * Prepares the benchmark. Called once before the warmup.
+     * @throws Exception If the benchmark can not be prepared.
+     */
+    protected abstract void setUp() throws Exception;
+
+    /**
+     * Executes a number of operations. The results of the operations should be passed to consume(), so
+     * that they are not optimized away.
+     * @param operations The number of operations, e.g. slots to simulate.
+     * @return The number of operations that were actually executed. It may differ slightly from 'operations'
+     * when the operations can only be executed in groups, e.g. slots that are simulated in milliseconds.
+     * @throws Exception If an operation fails.
+     */
+    protected abstract long run(long operations) throws Exception;
+
+    /**
+     * Keeps a result of the benchmark, so that the JIT compiler can not remove the code that calculated it.
+     * @param value The result.
+     */
+    protected static void consume(long value) {
+        sink += value;
+    }
+
+    /**
+     * Prepares, warms up and measures the benchmark.
+     * @param warmups The number of warmup iterations.
+     * @param iterations The number of measured iterations.
+     * @param millis The duration of each iteration in milliseconds.
+     * @throws Exception If the benchmark fails.
+     */
+    public void measure(int warmups, int iterations, long millis) throws Exception {
+        setUp();
+        //Find the number of operations of an iteration, so that it lasts about 'millis'
+        long operations = 1;
+        long done = 0;
+        long elapsed = 0;
+        while (elapsed < millis * 1000000L / 10) {
+            operations *= 2;
+            long start = System.nanoTime();
+            done = run(operations);
+            elapsed = System.nanoTime() - start;
+        }
+        operations = Math.max(1, (long) ((double) done * millis * 1000000L / Math.max(1, elapsed)));
+
+        for (int i = 0; i < warmups; i++) {
+            run(operations);
+        }
+
+        long totalOps = 0;
+        long totalTime = 0;
+        long allocated = allocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            totalOps += run(operations);
+            totalTime += System.nanoTime() - start;
+        }
+        long allocatedAfter = allocatedBytes();
+        opsPerSec = totalOps / (totalTime / 1e9);
+        if ((allocated >= 0) && (allocatedAfter >= 0)) {
+            bytesPerOp = (double) (allocatedAfter - allocated) / totalOps;
+        }
+    }
+
+    /**
+     * @return The name of the benchmark.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The name of an operation, e.g. "slot".
+     */
+    public String getUnit() {
+        return unit;
+    }
+
+    /**
+     * @return The measured operations per second.
+     */
+    public double getOpsPerSec() {
+        return opsPerSec;
+    }
+
+    /**
+     * @return The measured bytes allocated per operation, or NaN if the JVM can not measure allocations.
+     */
+    public double getBytesPerOp() {
+        return bytesPerOp;
+    }
+
+    //Returns the bytes allocated by the current thread so far, or -1 if the JVM does not support it.
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,226 @@
+package src.pamvotis.bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+import java.util.Vector;
+
+import src.pamvotis.core.PacketBuffer;
+import src.pamvotis.core.Params;
+import src.pamvotis.core.SimulationContext;
+import src.pamvotis.core.Simulator;
+import src.pamvotis.sources.GenericSource;
+import src.pamvotis.sources.Source;
+
+/**
+ * Measures the performance of the main hot paths of the simulator: the slot loop for networks of 2, 10, 20
+ * and 30 nodes, the slot loop under saturation (where the nodes compete for the medium in every slot), the
+ * random variable generation of the sources for each distribution, the packet buffer and the distance
+ * calculation. For each benchmark, the throughput in operations (e.g. slots) per second and the bytes
+ * allocated per operation are reported.
+ * <p>
+ * It must run from the directory of the application, because the simulator reads the "config/SpecParams.xml"
+ * and "config/NtConf.xml" files. The physical layer and the EDCA parameters of the NtConf.xml file are used,
+ * but the nodes are replaced by the nodes of each benchmark. The console output of the simulator is discarded
+ * while a benchmark runs.
+ * <p>
+ * Usage: java src.pamvotis.bench.BenchmarkSuite [filter]. Only the benchmarks whose name contains the filter are
+ * executed. The system properties "warmups", "iterations" and "millis" define the number of warmup iterations,
+ * the number of measured iterations and the duration of each iteration.
+ */
+public class BenchmarkSuite {
+
+    public static void main(String[] args) {
+        String filter = (args.length > 0) ? args[0] : "";
+        int warmups = Integer.getInteger("warmups", 3).intValue();
+        int iterations = Integer.getInteger("iterations", 5).intValue();
+        long millis = Integer.getInteger("millis", 1000).intValue();
+
+        Vector<Benchmark> benchmarks = new Vector<Benchmark>();
+        int[] nodes = {2, 10, 20, 30};
+        for (int i = 0; i < nodes.length; i++) {
+            benchmarks.add(new SimulateBenchmark("simulate." + nodes[i] + "Nodes", nodes[i], false, false));
+            benchmarks.add(new SimulateBenchmark("simulate." + nodes[i] + "Nodes.eventDriven", nodes[i], false, true));
+        }
+        benchmarks.add(new SimulateBenchmark("fightForSlot.saturated", 10, true, false));
+        char[] distributions = {'c', 'u', 'e', 'l', 'p'};
+        for (int i = 0; i < distributions.length; i++) {
+            benchmarks.add(new GenRvBenchmark(distributions[i]));
+        }
+        benchmarks.add(new PacketBufferBenchmark());
+        benchmarks.add(new DistFromBenchmark());
+
+        PrintStream console = System.out;
+        console.println(pad("Benchmark", 36) + pad("Throughput", 22) + "Allocations");
+        for (Benchmark b : benchmarks) {
+            if (b.getName().contains(filter) == false) {
+                continue;
+            }
+            System.setOut(new PrintStream(new OutputStream() {
+                public void write(int b) {
+                }
+
+                public void write(byte[] b, int off, int len) {
+                }
+            }));
+            try {
+                b.measure(warmups, iterations, millis);
+            } catch (Exception e) {
+                console.println(pad(b.getName(), 36) + "failed: " + e);
+                continue;
+            } finally {
+                System.setOut(console);
+            }
+            String allocations = Double.isNaN(b.getBytesPerOp()) ? "n/a"
+                    : String.format("%.1f bytes/%s", b.getBytesPerOp(), b.getUnit());
+            console.println(pad(b.getName(), 36) + pad(String.format("%,.0f %ss/s", b.getOpsPerSec(), b.getUnit()), 22)
+                    + allocations);
+        }
+    }
+
+    private static String pad(String s, int width) {
+        StringBuilder b = new StringBuilder(s);
+        while (b.length() < width) {
+            b.append(' ');
+        }
+        return b.append(' ').toString();
+    }
+
+    /**
+     * Simulates a network, slot by slot. The network has a number of nodes, all inside the coverage of each
+     * other. Each node has a source of 8000-bit packets. Normally the packets are generated with Poisson
+     * arrivals at 10 packets/s. Under saturation they are generated at 1000 packets/s, so every node always
+     * has a packet to send and the nodes compete for the medium in every slot.
+     */
+    static class SimulateBenchmark extends Benchmark {
+
+        private int nodes = 0;
+        private boolean saturated = false;
+        private boolean eventDriven = false;
+        private Simulator sim = null;
+        private SimulationContext context = null;
+        private long time = 0;	//The simulated time in milliseconds.
+
+        public SimulateBenchmark(String name, int nodes, boolean saturated, boolean eventDriven) {
+            super(name, "slot");
+            this.nodes = nodes;
+            this.saturated = saturated;
+            this.eventDriven = eventDriven;
+        }
+
+        protected void setUp() throws Exception {
+            sim = new Simulator();
+            sim.setSeed(1);
+            sim.setEventDriven(eventDriven);
+            sim.confParams();
+            sim.setOutResults("");
+            sim.removeAllNodes();
+            for (int i = 1; i <= nodes; i++) {
+                sim.addNode(i, 1000000, 1000, (i * 7) % 50, (i * 13) % 50, 0);
+                if (saturated) {
+                    sim.appendNewSource(i, new GenericSource(1, 'c', 1000, 'c', 8000));
+                } else {
+                    sim.appendNewSource(i, new GenericSource(1, 'e', 10, 'e', 8000));
+                }
+            }
+            context = SimulationContext.current();
+            time = 0;
+        }
+
+        protected long run(long operations) {
+            long millis = Math.max(1, Math.round(operations * context.slot * 1000));
+            long first = context.timer;
+            sim.simulate(time + 1, time + millis);
+            time += millis;
+            consume(sim.getSuccessForAllNodes());
+            return context.timer - first;
+        }
+    }
+
+    /**
+     * Generates random variables with one of the distributions of the sources.
+     */
+    static class GenRvBenchmark extends Benchmark {
+
+        private char distribution = 'c';
+        private Source source = null;
+
+        public GenRvBenchmark(char distribution) {
+            super("genRv." + distribution, "call");
+            this.distribution = distribution;
+        }
+
+        protected void setUp() throws Exception {
+            Simulator sim = new Simulator();
+            sim.setSeed(1);
+            sim.confParams();
+            SimulationContext.current().generator = new Random(1);
+            source = new GenericSource(1, 'c', 10, 'c', 8000);
+        }
+
+        protected long run(long operations) {
+            long sum = 0;
+            for (long i = 0; i < operations; i++) {
+                sum += (long) source.genRv(distribution, 8000, 2000, Integer.MAX_VALUE, -1);
+            }
+            consume(sum);
+            return operations;
+        }
+    }
+
+    /**
+     * Adds a packet to the end of a half-full packet buffer and removes its first packet.
+     */
+    static class PacketBufferBenchmark extends Benchmark {
+
+        private PacketBuffer buffer = null;
+
+        public PacketBufferBenchmark() {
+            super("packetBuffer.enqueueDequeue", "packet");
+        }
+
+        protected void setUp() {
+            buffer = new PacketBuffer(1000);
+            for (int i = 0; i < 500; i++) {
+                buffer.enqueue(i, 8000, i);
+            }
+        }
+
+        protected long run(long operations) {
+            long sum = 0;
+            for (long i = 0; i < operations; i++) {
+                buffer.enqueue(i, 8000, (int) i);
+                sum += buffer.firstGenerationTime();
+                buffer.dequeue();
+            }
+            consume(sum);
+            return operations;
+        }
+    }
+
+    /**
+     * Calculates the distance of a node from various points.
+     */
+    static class DistFromBenchmark extends Benchmark {
+
+        private Params params = null;
+
+        public DistFromBenchmark() {
+            super("params.distFrom", "call");
+        }
+
+        protected void setUp() {
+            params = new Params();
+            params.InitParams(1, 1000000, 17, 17, 100, 0, 0, 31, 1023);
+        }
+
+        protected long run(long operations) {
+            long sum = 0;
+            for (long i = 0; i < operations; i++) {
+                sum += params.DistFrom((int) (i & 1023), (int) ((i >> 10) & 1023));
+            }
+            consume(sum);
+            return operations;
+        }
+    }
+}
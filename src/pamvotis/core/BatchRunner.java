@@ -0,0 +1,359 @@
+package src.pamvotis.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import src.pamvotis.exceptions.ConfigurationException;
+
+/**
+ * Runs simulations from the command line, without the graphical interface. Each simulation runs exactly like in
+ * the interface: the duration is split in the configured number of intervals and, before each interval, the
+ * backoff strategy is selected adaptively (see Strategy), unless a fixed strategy is given. The result files are
+ * written like in the interface. Many seeds can run in parallel, each one in its own thread. The configuration
+ * file is read once, for all the seeds.
+ * <p>
+ * The progress is written to the standard output, one line per event: the name of the event and the fields of
+ * the event as name=value pairs, separated with spaces. For example:
+ * <pre>
+ * start seed=1 values=10 duration=30
+ * interval seed=1 interval=3 values=10 time=9 progress=30 strategy=2 success=1520 collisions=84
+ * done seed=1 elapsed=1234 throughput=5123.4 delay=12.5 stopped=false
+ * error seed=1 message=...
+ * </pre>
+ * Usage: java src.pamvotis.core.BatchRunner [-config file] [-seeds list] [-out directory] [-threads n]
+ * [-strategy n] [-eventDriven] [-timeBudget milliseconds] [-slotBudget slots]. The seeds are a comma separated list that may contain ranges, like in
+ * ParameterSweep, e.g. "1..10". By default the seed of the configuration file is used. When many seeds are given,
+ * the results of each seed are written to the subdirectory "seed" + seed of the output directory. The exit code
+ * is 0 if all simulations finish and 1 otherwise. With a budget, each simulation stops when its budget runs out,
+ * with the statistics of the time simulated, and its done line has stopped=true. It must run from the directory of the application, because the
+ * simulator reads the "config/SpecParams.xml" file.
+ * @see ParameterSweep
+ */
+public class BatchRunner {
+
+    /**
+     * The strategy that means that the backoff strategy is selected adaptively before each interval.
+     * @see #createStrategy(Simulator)
+     */
+    public static final int ADAPTIVE = 0;
+    private String config = "config" + File.separator + "NtConf.xml";	//The configuration file.
+    private int[] seeds = null;	//The seeds, or null for the seed of the configuration file.
+    private String outputDir = null;	//The directory of the results, or null for the one of the configuration file.
+    private int threads = Runtime.getRuntime().availableProcessors();	//The number of simulations that run in parallel.
+    private int strategy = ADAPTIVE;	//The backoff strategy used by all simulations.
+    private boolean eventDriven = false;	//If true, the simulations use the event-driven engine.
+    private PrintStream progress = System.out;	//Where the progress is written.
+    private long timeBudget = 0;	//The wall-clock time of each simulation in milliseconds, or 0 for no limit.
+    private long slotBudget = 0;	//The slots of each simulation, or 0 for no limit.
+
+    /**
+     * Creates a runner of the "config/NtConf.xml" file with its own seed.
+     */
+    public BatchRunner() {
+    }
+
+    /**
+     * @param config The configuration file.
+     */
+    public void setConfig(String config) {
+        this.config = config;
+    }
+
+    /**
+     * @param seeds The seeds of the simulations, or null for a single simulation with the seed of the
+     * configuration file.
+     */
+    public void setSeeds(int[] seeds) {
+        this.seeds = seeds;
+    }
+
+    /**
+     * @param outputDir The directory of the result files, or null for the results path of the configuration file.
+     * It is created if it does not exist.
+     */
+    public void setOutputDir(String outputDir) {
+        this.outputDir = outputDir;
+    }
+
+    /**
+     * @param threads The number of simulations that run in parallel. By default it is the number of processors.
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @param strategy The backoff strategy used by all simulations, or ADAPTIVE (the default).
+     * @see Simulator#setCurrentStrategy(int)
+     */
+    public void setStrategy(int strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * @param eventDriven True for running the simulations with the event-driven engine.
+     * @see Simulator#setEventDriven(boolean)
+     */
+    public void setEventDriven(boolean eventDriven) {
+        this.eventDriven = eventDriven;
+    }
+
+    /**
+     * @param progress Where the progress is written. By default it is the standard output.
+     */
+    public void setProgress(PrintStream progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * @param timeBudget The wall-clock time each simulation may run in milliseconds, or 0 for no limit.
+     * @see SimulationControl#setTimeBudget(long)
+     */
+    public void setTimeBudget(long timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    /**
+     * @param slotBudget The number of slots each simulation may simulate, or 0 for no limit.
+     * @see SimulationControl#setSlotBudget(long)
+     */
+    public void setSlotBudget(long slotBudget) {
+        this.slotBudget = slotBudget;
+    }
+
+    /**
+     * Runs all the simulations and waits for them to finish. A simulation that fails is reported with an
+     * error line and does not stop the others.
+     * @return The number of simulations that failed.
+     * @throws IOException If the configuration file cannot be read.
+     * @throws ConfigurationException If the configuration file is not valid.
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     */
+    public int run() throws IOException, ConfigurationException, InterruptedException {
+        Scenario scenario = Scenario.load(config);
+        List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+        if (seeds == null) {
+            tasks.add(new Batch(scenario, scenario.getSeed(), outputDir));
+        } else {
+            for (int s = 0; s < seeds.length; s++) {
+                String dir = (outputDir != null) ? outputDir : scenario.getResultsPath();
+                if (seeds.length > 1) {
+                    dir = new File(dir, "seed" + seeds[s]).getPath();
+                }
+                tasks.add(new Batch(scenario, seeds[s], dir));
+            }
+        }
+        int failed = 0;
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, Math.min(threads, tasks.size())));
+        try {
+            List<Future<Boolean>> results = pool.invokeAll(tasks);
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    if (results.get(i).get() == false) {
+                        failed++;
+                    }
+                } catch (ExecutionException e) {
+                    failed++;
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return failed;
+    }
+
+    /**
+     * Creates the adaptive strategy of the interface: four candidates, strategies 1 to 4, that are rewarded with
+     * the successful transmissions and penalised with the collisions of each interval they are used. The selected
+     * strategies are recorded to the trace of the simulator and the ties are broken with a stream of the simulator.
+     * The strategy is set as the adaptive strategy of the simulator, so its ranks are saved with the checkpoints.
+     * @param sim The simulator, after confParams().
+     * @return The strategy.
+     * @see #simulateInterval(Simulator, Strategy, long, long)
+     */
+    public static Strategy createStrategy(Simulator sim) {
+        Strategy strats = new Strategy();
+        strats.setTrace(sim.getTrace());
+        strats.setGenerator(sim.getRandomStream().split(Simulator.STRATEGY_STREAM));
+        strats.addCandidate("Strategy 1", 1, 0);
+        strats.addCandidate("Strategy 2", 2, 0);
+        strats.addCandidate("Strategy 3", 3, 0);
+        strats.addCandidate("Strategy 4", 4, 0);
+        sim.setAdaptiveStrategy(strats);
+        return strats;
+    }
+
+    /**
+     * Simulates an interval with an adaptive strategy: the strategy is selected before the interval and it is
+     * rewarded and penalised with the results of the interval. Nothing is done if the simulation is stopped.
+     * @param sim The simulator.
+     * @param strats The adaptive strategy, or null for simulating with the current strategy of the simulator.
+     * @param startTime The first millisecond of the interval.
+     * @param endTime The last millisecond of the interval.
+     * @see Simulator#simulate(long, long)
+     */
+    public static void simulateInterval(Simulator sim, Strategy strats, long startTime, long endTime) {
+        if (sim.isStopped()) {
+            return;
+        }
+        if (strats != null) {
+            sim.setCurrentStrategy(strats.selectStrategy());
+        }
+        sim.simulate(startTime, endTime);
+        //A stopped interval is shorter, so it is not compared with the others.
+        if ((strats != null) && (sim.isStopped() == false)) {
+            int currentStrategy = sim.getCurrentStrategy();
+            strats.penalise(currentStrategy, sim.getCollisionsForAllNodes());
+            strats.reward(currentStrategy, sim.getSuccessForAllNodes());
+        }
+    }
+
+    /**
+     * The simulation of one seed. It writes the progress of the simulation as a listener of the simulator.
+     */
+    private class Batch implements Callable<Boolean>, SimulationListener {
+
+        private Scenario scenario;
+        private int seed;
+        private String dir;	//The directory of the results, or null for the one of the scenario.
+        private int intervalsDone = 0;	//The number of intervals finished.
+
+        public Batch(Scenario scenario, int seed, String dir) {
+            this.scenario = scenario;
+            this.seed = seed;
+            this.dir = dir;
+        }
+
+        public Boolean call() {
+            long start = System.currentTimeMillis();
+            try {
+                Simulator sim = new Simulator();
+                sim.addListener(this);
+                sim.setSeed(seed);
+                sim.setEventDriven(eventDriven);
+                sim.confParams(scenario);
+                if ((timeBudget > 0) || (slotBudget > 0)) {
+                    SimulationControl control = new SimulationControl();
+                    if (timeBudget > 0) {
+                        control.setTimeBudget(timeBudget);
+                    }
+                    if (slotBudget > 0) {
+                        control.setSlotBudget(slotBudget);
+                    }
+                    sim.setControl(control);
+                }
+                if (dir != null) {
+                    File d = new File(dir);
+                    if ((d.isDirectory() == false) && (d.mkdirs() == false)) {
+                        throw new IOException("Cannot create the directory " + dir);
+                    }
+                    sim.setResultsPath(dir);
+                }
+                sim.printHeaders();
+                Strategy strats = null;
+                if (strategy == ADAPTIVE) {
+                    strats = createStrategy(sim);
+                } else {
+                    sim.setCurrentStrategy(strategy);
+                }
+
+                int values = sim.getValues();
+                int interval = (int) (sim.getDuration() * 1000 / values);
+                int modInterval = (int) ((sim.getDuration() * 1000) % values);
+                progress.println("start seed=" + seed + " values=" + values + " duration=" + sim.getDuration());
+                int j = 0;
+                for (int i = 1; i <= values; i++) {
+                    if (i != values) {
+                        simulateInterval(sim, strats, j + 1, j + interval);
+                    } else {
+                        simulateInterval(sim, strats, j + 1, j + interval + modInterval);
+                    }
+                    if (sim.isStopped()) {
+                        break;
+                    }
+                    j += interval;
+                }
+                sim.printMeanValues();
+                progress.println("done seed=" + seed + " elapsed=" + (System.currentTimeMillis() - start)
+                        + " throughput=" + sim.getMeanSysThrBps() + " delay=" + sim.getMeanDelay()
+                        + " stopped=" + sim.isStopped());
+                return Boolean.TRUE;
+            } catch (Exception e) {
+                progress.println("error seed=" + seed + " message=" + String.valueOf(e.getMessage()).replace('\n', ' '));
+                return Boolean.FALSE;
+            }
+        }
+
+        public void progress(Simulator sim, int progress, double time) {
+        }
+
+        public void intervalFinished(Simulator sim, IntervalResults results) {
+            intervalsDone++;
+            progress.println("interval seed=" + seed + " interval=" + intervalsDone + " values=" + sim.getValues()
+                    + " time=" + sim.getTime() + " progress=" + sim.getProgress()
+                    + " strategy=" + results.getStrategy() + " success=" + results.getSuccesses()
+                    + " collisions=" + results.getCollisions());
+        }
+    }
+
+    /**
+     * Runs simulations from the command line. See the description of the class for the options.
+     * @param args The options.
+     */
+    public static void main(String[] args) {
+        BatchRunner runner = new BatchRunner();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (option.equals("-eventDriven")) {
+                    runner.setEventDriven(true);
+                    continue;
+                }
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException("Missing value for " + option);
+                }
+                String value = args[++i];
+                if (option.equals("-config")) {
+                    runner.setConfig(value);
+                } else if (option.equals("-seeds") || option.equals("-seed")) {
+                    String[] v = ParameterSweep.parseValues(value);
+                    int[] seeds = new int[v.length];
+                    for (int s = 0; s < v.length; s++) {
+                        seeds[s] = Integer.parseInt(v[s]);
+                    }
+                    runner.setSeeds(seeds);
+                } else if (option.equals("-out")) {
+                    runner.setOutputDir(value);
+                } else if (option.equals("-threads")) {
+                    runner.setThreads(Integer.parseInt(value));
+                } else if (option.equals("-timeBudget")) {
+                    runner.setTimeBudget(Long.parseLong(value));
+                } else if (option.equals("-slotBudget")) {
+                    runner.setSlotBudget(Long.parseLong(value));
+                } else if (option.equals("-strategy")) {
+                    runner.setStrategy(value.equals("adaptive") ? ADAPTIVE : Integer.parseInt(value));
+                } else {
+                    throw new IllegalArgumentException("Unknown option " + option);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: java src.pamvotis.core.BatchRunner [-config file] [-seeds list] [-out directory]"
+                    + " [-threads n] [-strategy n|adaptive] [-eventDriven] [-timeBudget ms] [-slotBudget slots]");
+            System.exit(1);
+        }
+        try {
+            System.exit(runner.run() == 0 ? 0 : 1);
+        } catch (Exception e) {
+            System.out.println("error message=" + String.valueOf(e.getMessage()).replace('\n', ' '));
+            System.exit(1);
+        }
+    }
+}
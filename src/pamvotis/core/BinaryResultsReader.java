@@ -0,0 +1,335 @@
+package src.pamvotis.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import src.pamvotis.exceptions.ElementDoesNotExistException;
+
+/**
+ * Reads a binary results file, written by the simulator when the binary results format is enabled.
+ * The file is memory-mapped and the values are returned as primitive arrays, without parsing.
+ * <p>
+ * The file contains the parameters of the scenario, one column for each node and statistic with one value
+ * per simulation interval, and the mean values of the whole simulation. The statistics are identified by
+ * the same two-character codes that select the text result files, e.g. "tb" for the throughput in Kbits/s.
+ * @see Simulator#setResultsFormat(int)
+ */
+public class BinaryResultsReader {
+
+    /**
+     * The two-character codes of the statistics, in the order they are stored: throughput in Kbits/s,
+     * throughput in packets/s, utilization, media access delay, queuing delay, total delay, delay jitter,
+     * queue length and retransmission attempts.
+     */
+    public static final String[] METRICS = {"tb", "tp", "ut", "md", "qd", "td", "dj", "ql", "ra"};
+    /**
+     * Used instead of a node ID for the columns and mean values that concern the whole system. Only the
+     * throughput and the utilization have such values.
+     */
+    public static final int SYSTEM = -1;
+    private static final int NODE_PARAMS = 9;	//id, rate, x, y, coverage, ac, cwMin, cwMax, aifsd
+    private MappedByteBuffer buffer = null;
+    private int nodes = 0;	//The number of nodes.
+    private int nodesStart = 0;	//The position of the parameters of the first node.
+    private int rows = 0;	//The number of simulation intervals.
+    private int columns = 0;	//The number of columns, without the time column.
+    private int columnsStart = 0;	//The position of the column directory.
+    private int timesStart = 0;	//The position of the time column.
+    private int meansStart = 0;	//The position of the mean values.
+
+    /**
+     * Opens a binary results file.
+     * @param file The file, usually "Results.bin" in the results path.
+     * @throws IOException If the file cannot be read or it is not a binary results file.
+     */
+    public BinaryResultsReader(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+        if ((buffer.capacity() < 8) || (buffer.getInt(0) != BinaryResultsWriter.MAGIC)) {
+            throw new IOException(file + " is not a binary results file.");
+        }
+        if (buffer.getInt(4) != BinaryResultsWriter.VERSION) {
+            throw new IOException("Unsupported version " + buffer.getInt(4) + " of binary results file " + file);
+        }
+        nodes = buffer.getInt(44);
+        nodesStart = 48;
+        int pos = nodesStart + nodes * NODE_PARAMS * 4;
+        rows = buffer.getInt(pos);
+        columns = buffer.getInt(pos + 4);
+        columnsStart = pos + 8;
+        timesStart = columnsStart + columns * 8;
+        meansStart = timesStart + (columns + 1) * rows * 4;
+    }
+
+    /**
+     * @param metric The two-character code of a statistic.
+     * @return True if the statistic has values for the whole system.
+     */
+    public static boolean hasSystemColumn(String metric) {
+        return metric.equals("tb") || metric.equals("tp") || metric.equals("ut");
+    }
+
+    /**
+     * @return The seed of the random number generator.
+     */
+    public int getSeed() {
+        return buffer.getInt(8);
+    }
+
+    /**
+     * @return The simulation duration in seconds.
+     */
+    public long getDuration() {
+        return buffer.getLong(12);
+    }
+
+    /**
+     * @return The number of values (simulation intervals) of the configuration file.
+     */
+    public int getValues() {
+        return buffer.getInt(20);
+    }
+
+    /**
+     * @return The slot duration in seconds.
+     */
+    public float getSlot() {
+        return buffer.getFloat(24);
+    }
+
+    /**
+     * @return The physical layer, as in the configuration file.
+     */
+    public char getPhyLayer() {
+        return (char) buffer.getInt(28);
+    }
+
+    /**
+     * @return The RTS threshold.
+     */
+    public int getRtsThr() {
+        return buffer.getInt(32);
+    }
+
+    /**
+     * @return 'y' if CTS-to-self is used, 'n' otherwise.
+     */
+    public char getCtsToSelf() {
+        return (char) buffer.getInt(36);
+    }
+
+    /**
+     * @return The number of 802.11b nodes in mixed 802.11b/g networks.
+     */
+    public int getMixNodes() {
+        return buffer.getInt(40);
+    }
+
+    /**
+     * @return The number of nodes.
+     */
+    public int getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return The IDs of the nodes, in the order they were added to the simulation.
+     */
+    public int[] getNodeIds() {
+        int[] ids = new int[nodes];
+        for (int i = 0; i < nodes; i++) {
+            ids[i] = nodeParam(i, 0);
+        }
+        return ids;
+    }
+
+    /**
+     * @param node The position of the node.
+     * @return The data rate of the node in bits/s.
+     */
+    public int getRate(int node) {
+        return nodeParam(node, 1);
+    }
+
+    /**
+     * @param node The position of the node.
+     * @return The horizontal coordinate of the node.
+     */
+    public int getX(int node) {
+        return nodeParam(node, 2);
+    }
+
+    /**
+     * @param node The position of the node.
+     * @return The vertical coordinate of the node.
+     */
+    public int getY(int node) {
+        return nodeParam(node, 3);
+    }
+
+    /**
+     * @param node The position of the node.
+     * @return The coverage of the node.
+     */
+    public int getCoverage(int node) {
+        return nodeParam(node, 4);
+    }
+
+    /**
+     * @param node The position of the node.
+     * @return The access category of the node.
+     */
+    public int getAc(int node) {
+        return nodeParam(node, 5);
+    }
+
+    /**
+     * @param node The position of the node.
+     * @return The minimum contention window of the node.
+     */
+    public int getCwMin(int node) {
+        return nodeParam(node, 6);
+    }
+
+    /**
+     * @param node The position of the node.
+     * @return The maximum contention window of the node.
+     */
+    public int getCwMax(int node) {
+        return nodeParam(node, 7);
+    }
+
+    /**
+     * @param node The position of the node.
+     * @return The aifsd of the node.
+     */
+    public float getAifsd(int node) {
+        return buffer.getFloat(nodesStart + (node * NODE_PARAMS + 8) * 4);
+    }
+
+    /**
+     * @return The number of values in each column (simulation intervals).
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return The time at the end of each interval in seconds.
+     */
+    public float[] getTimes() {
+        return toArray(timesStart);
+    }
+
+    /**
+     * @param metric The two-character code of the statistic, e.g. "tb".
+     * @param nodeId The ID of the node, or SYSTEM.
+     * @return True if the file contains the values of the statistic for the node.
+     */
+    public boolean hasColumn(String metric, int nodeId) {
+        return findColumn(metric, nodeId) != -1;
+    }
+
+    /**
+     * @param metric The two-character code of the statistic, e.g. "tb".
+     * @param nodeId The ID of the node, or SYSTEM.
+     * @return The value of the statistic at each interval.
+     * @throws ElementDoesNotExistException If the file does not contain the statistic for the node.
+     */
+    public float[] getColumn(String metric, int nodeId) throws ElementDoesNotExistException {
+        return toArray(columnStart(metric, nodeId));
+    }
+
+    /**
+     * Gives access to a column without copying it.
+     * @param metric The two-character code of the statistic, e.g. "tb".
+     * @param nodeId The ID of the node, or SYSTEM.
+     * @return A read-only view of the mapped file, that contains the value of the statistic at each interval.
+     * @throws ElementDoesNotExistException If the file does not contain the statistic for the node.
+     */
+    public FloatBuffer getColumnBuffer(String metric, int nodeId) throws ElementDoesNotExistException {
+        return view(columnStart(metric, nodeId));
+    }
+
+    /**
+     * @param metric The two-character code of the statistic, e.g. "tb".
+     * @param nodeId The ID of the node, or SYSTEM.
+     * @return The mean value of the statistic for the whole simulation, or NaN if it does not exist.
+     * @throws ElementDoesNotExistException If the node does not exist.
+     */
+    public float getMean(String metric, int nodeId) throws ElementDoesNotExistException {
+        int m = metricIndex(metric);
+        if (m == -1) {
+            return Float.NaN;
+        }
+        int node = nodes;
+        if (nodeId != SYSTEM) {
+            node = -1;
+            for (int i = 0; i < nodes; i++) {
+                if (nodeParam(i, 0) == nodeId) {
+                    node = i;
+                    break;
+                }
+            }
+            if (node == -1) {
+                throw new ElementDoesNotExistException("Node " + nodeId + " does not exist.");
+            }
+        }
+        return buffer.getFloat(meansStart + (node * METRICS.length + m) * 4);
+    }
+
+    private int nodeParam(int node, int param) {
+        return buffer.getInt(nodesStart + (node * NODE_PARAMS + param) * 4);
+    }
+
+    //The index of a statistic in METRICS, or -1.
+    static int metricIndex(String metric) {
+        for (int m = 0; m < METRICS.length; m++) {
+            if (METRICS[m].equals(metric)) {
+                return m;
+            }
+        }
+        return -1;
+    }
+
+    private int findColumn(String metric, int nodeId) {
+        int m = metricIndex(metric);
+        for (int c = 0; c < columns; c++) {
+            if ((buffer.getInt(columnsStart + c * 8) == m) && (buffer.getInt(columnsStart + c * 8 + 4) == nodeId)) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    private int columnStart(String metric, int nodeId) throws ElementDoesNotExistException {
+        int c = findColumn(metric, nodeId);
+        if (c == -1) {
+            throw new ElementDoesNotExistException("Statistic " + metric + " of node " + nodeId + " does not exist.");
+        }
+        return timesStart + (c + 1) * rows * 4;
+    }
+
+    private FloatBuffer view(int start) {
+        ByteBuffer b = buffer.duplicate();
+        b.position(start);
+        b.limit(start + rows * 4);
+        return b.slice().asFloatBuffer().asReadOnlyBuffer();
+    }
+
+    private float[] toArray(int start) {
+        float[] values = new float[rows];
+        view(start).get(values);
+        return values;
+    }
+}
@@ -0,0 +1,190 @@
+package src.pamvotis.core;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Vector;
+
+/**
+ * Collects the statistic results of a simulation and writes them to a binary columnar file, which can be
+ * read with BinaryResultsReader without parsing any text. The values of each interval are kept in memory,
+ * one column per node per statistic, and the file is written at once at the end of the simulation.
+ * <p>
+ * The values are not rounded, unlike the values of the text files.
+ * @see BinaryResultsReader
+ */
+class BinaryResultsWriter implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    static final int MAGIC = 0x50565242;	//"PVRB"
+    static final int VERSION = 1;
+    private int seed = 0;
+    private long duration = 0;
+    private int values = 0;
+    private float slot = 0;
+    private char phyLayer = 's';
+    private int rtsThr = 0;
+    private char ctsToSelf = 'n';
+    private int mixNodes = 0;
+    private int[][] nodeParams = null;	//id, rate, x, y, coverage, ac, cwMin, cwMax of each node.
+    private float[] aifsd = null;	//The aifsd of each node.
+    private int[] columnMetric = null;	//The statistic of each column, as an index of BinaryResultsReader.METRICS.
+    private int[] columnNode = null;	//The node ID of each column, or BinaryResultsReader.SYSTEM.
+    private float[] times = new float[16];	//The time of each row.
+    private float[][] columns = null;	//The values of each column.
+    private int rows = 0;	//The number of rows.
+    private float[] means = null;	//The mean values of each node and of the system, for all statistics.
+
+    /**
+     * Creates a writer for the current scenario of a simulation.
+     * @param outResults The two-character codes of the statistics that are collected, e.g. "tbtpmd".
+     */
+    BinaryResultsWriter(int seed, long duration, int values, float slot, char phyLayer, int rtsThr, char ctsToSelf,
+            int mixNodes, Vector<MobileNode> nodes, String outResults) {
+        this.seed = seed;
+        this.duration = duration;
+        this.values = values;
+        this.slot = slot;
+        this.phyLayer = phyLayer;
+        this.rtsThr = rtsThr;
+        this.ctsToSelf = ctsToSelf;
+        this.mixNodes = mixNodes;
+
+        int nodeCount = nodes.size();
+        nodeParams = new int[nodeCount][];
+        aifsd = new float[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            Params p = nodes.elementAt(i).params;
+            nodeParams[i] = new int[]{p.id, p.rate, p.x, p.y, p.coverage, p.ac, p.cwMin, p.cwMax};
+            aifsd[i] = p.aifsd;
+        }
+
+        //One column for each node and statistic, and one more for the statistics that concern the system.
+        Vector<int[]> cols = new Vector<int[]>();
+        for (int m = 0; m < BinaryResultsReader.METRICS.length; m++) {
+            if (outResults.contains(BinaryResultsReader.METRICS[m])) {
+                for (int i = 0; i < nodeCount; i++) {
+                    cols.add(new int[]{m, nodeParams[i][0]});
+                }
+                if (BinaryResultsReader.hasSystemColumn(BinaryResultsReader.METRICS[m])) {
+                    cols.add(new int[]{m, BinaryResultsReader.SYSTEM});
+                }
+            }
+        }
+        columnMetric = new int[cols.size()];
+        columnNode = new int[cols.size()];
+        columns = new float[cols.size()][times.length];
+        for (int c = 0; c < cols.size(); c++) {
+            columnMetric[c] = cols.elementAt(c)[0];
+            columnNode[c] = cols.elementAt(c)[1];
+        }
+
+        means = new float[(nodeCount + 1) * BinaryResultsReader.METRICS.length];
+        Arrays.fill(means, Float.NaN);
+    }
+
+    /**
+     * @return The number of columns, without the time column.
+     */
+    int getColumns() {
+        return columnMetric.length;
+    }
+
+    /**
+     * @return The two-character code of the statistic of a column.
+     */
+    String getMetric(int column) {
+        return BinaryResultsReader.METRICS[columnMetric[column]];
+    }
+
+    /**
+     * @return The ID of the node of a column, or BinaryResultsReader.SYSTEM.
+     */
+    int getNode(int column) {
+        return columnNode[column];
+    }
+
+    /**
+     * Adds a new row. Its values are set with set().
+     * @param time The time at the end of the interval in seconds.
+     */
+    void addRow(float time) {
+        if (rows == times.length) {
+            int capacity = times.length * 2;
+            times = Arrays.copyOf(times, capacity);
+            for (int c = 0; c < columns.length; c++) {
+                columns[c] = Arrays.copyOf(columns[c], capacity);
+            }
+        }
+        times[rows] = time;
+        rows++;
+    }
+
+    /**
+     * Sets a value of the last row.
+     */
+    void set(int column, float value) {
+        columns[column][rows - 1] = value;
+    }
+
+    /**
+     * Sets the mean values of a node, or of the system, for the whole simulation.
+     * @param node The position of the node in the nodes vector, or the number of nodes for the system.
+     * @param metric The statistic, as an index of BinaryResultsReader.METRICS.
+     */
+    void setMean(int node, int metric, float value) {
+        means[node * BinaryResultsReader.METRICS.length + metric] = value;
+    }
+
+    /**
+     * Writes the file. If it exists, it is replaced.
+     * @param file The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    void write(File file) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(seed);
+            out.writeLong(duration);
+            out.writeInt(values);
+            out.writeFloat(slot);
+            out.writeInt(phyLayer);
+            out.writeInt(rtsThr);
+            out.writeInt(ctsToSelf);
+            out.writeInt(mixNodes);
+            out.writeInt(nodeParams.length);
+            for (int i = 0; i < nodeParams.length; i++) {
+                for (int j = 0; j < nodeParams[i].length; j++) {
+                    out.writeInt(nodeParams[i][j]);
+                }
+                out.writeFloat(aifsd[i]);
+            }
+            out.writeInt(rows);
+            out.writeInt(columns.length);
+            for (int c = 0; c < columns.length; c++) {
+                out.writeInt(columnMetric[c]);
+                out.writeInt(columnNode[c]);
+            }
+            for (int r = 0; r < rows; r++) {
+                out.writeFloat(times[r]);
+            }
+            for (int c = 0; c < columns.length; c++) {
+                for (int r = 0; r < rows; r++) {
+                    out.writeFloat(columns[c][r]);
+                }
+            }
+            for (int i = 0; i < means.length; i++) {
+                out.writeFloat(means[i]);
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
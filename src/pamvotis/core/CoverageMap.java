@@ -0,0 +1,97 @@
+package src.pamvotis.core;
+
+import java.io.Serializable;
+import java.util.Vector;
+
+/**
+ * Holds, for each node, the set of nodes that have it inside their coverage, in the form of a bitset matrix.
+ * The geometry of the network changes only when nodes are added, removed or moved, so the matrix is
+ * built once and reused in every slot for finding the hidden terminals, instead of calculating the
+ * distances between all nodes again and again.
+ * <p>
+ * The hidden terminals are found once for all nodes, when the transmitting nodes are marked: a node is
+ * hidden if no row of a transmitting node contains it. Usually only one or two nodes transmit, so this
+ * costs a few bitwise operations per 64 nodes, and each check afterwards is a single bit test.
+ */
+class CoverageMap implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private long[][] heardBy = new long[0][];	//Bit i of row j is set if node j is inside the coverage of node i.
+	private long[] hidden = new long[0];	//Bit i is set if node i is hidden (see isHidden).
+	private long lastWord = 0;	//The bits of the last word of a row that refer to nodes.
+	private boolean valid = false;	//False if the geometry changed since the last build.
+
+	/**
+	 * Marks the map as invalid. It will be rebuilt the next time it is used.
+	 * Must be called every time a node is added, removed or changes position or coverage.
+	 */
+	void invalidate() {
+		valid = false;
+	}
+
+	/**
+	 * Rebuilds the map if the geometry has changed. The distances are calculated with Params.DistFrom,
+	 * exactly like the simulator did before.
+	 * @param nodes The nodes of the simulation.
+	 */
+	void update(Vector<MobileNode> nodes) {
+		if (valid) return;
+		int size = nodes.size();
+		int words = (size + 63) >>> 6;
+		heardBy = new long[size][words];
+		hidden = new long[words];
+		lastWord = ((size & 63) == 0) ? -1L : (1L << size) - 1;
+		for (int i = 0; i < size; i++) {
+			Params p = nodes.elementAt(i).params;
+			for (int j = 0; j < size; j++) {
+				Params q = nodes.elementAt(j).params;
+				if (p.DistFrom(q.x, q.y) <= p.coverage) {
+					heardBy[j][i >>> 6] |= 1L << i;
+				}
+			}
+		}
+		valid = true;
+	}
+
+	/**
+	 * Stores which nodes transmit at the moment, according to their nowTransmitting flag, and finds
+	 * the hidden nodes.
+	 * @param nodes The nodes of the simulation.
+	 * @param state The state of the nodes, which holds the nowTransmitting flags.
+	 */
+	void markTransmitting(Vector<MobileNode> nodes, NodeState state) {
+		update(nodes);
+		for (int w = 0; w < hidden.length; w++) {
+			hidden[w] = (w == hidden.length - 1) ? lastWord : -1L;
+		}
+		for (int v = 0; v < hidden.length; v++) {
+			long transmitting = state.transmitting[v];
+			while (transmitting != 0) {
+				long[] row = heardBy[(v << 6) + Long.numberOfTrailingZeros(transmitting)];
+				for (int w = 0; w < hidden.length; w++) {
+					hidden[w] &= ~row[w];
+				}
+				transmitting &= transmitting - 1;
+			}
+		}
+	}
+
+	/**
+	 * Checks if a node is hidden, meaning that none of the transmitting nodes is inside its coverage.
+	 * If no node transmits, every node is hidden. markTransmitting must be called first.
+	 * @param i The position of the node in the nodes vector.
+	 * @return True if the node is not in LOS with any of the transmitting nodes.
+	 */
+	boolean isHidden(int i) {
+		return (hidden[i >>> 6] & (1L << i)) != 0;
+	}
+
+	/**
+	 * @return The hidden nodes in a bitset, where bit i refers to the i-th node. markTransmitting must
+	 * be called first. The bitset must not be modified.
+	 */
+	long[] hidden() {
+		return hidden;
+	}
+}
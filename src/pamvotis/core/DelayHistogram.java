@@ -0,0 +1,157 @@
+package src.pamvotis.core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A histogram of packet delays in slots, for finding the percentiles of a delay. The buckets are log-linear,
+ * like in HdrHistogram: the values below 256 have a bucket each, and every next power of two is split in 128
+ * buckets of equal width, so the value of a percentile has a relative error below 1/128. The memory depends
+ * only on the largest value recorded (about 1KB for each power of two above 256), not on the number of values,
+ * and recording a value does not allocate memory.
+ * <p>
+ * Histograms can be added to each other, e.g. the histograms of many intervals, of the nodes of an access
+ * category, or of many replications.
+ * @see Simulator#getDelayHistogram(int, int)
+ */
+public final class DelayHistogram implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final int SUB_BITS = 8;	//The number of bits of a value that select its bucket.
+    private static final int SUB_COUNT = 1 << SUB_BITS;	//The values below this have a bucket each.
+    private static final int SUB_HALF = SUB_COUNT / 2;	//The number of buckets of each next power of two.
+    private long[] counts = new long[SUB_COUNT];	//The number of values of each bucket.
+    private int maxIndex = -1;	//The highest bucket that is not empty.
+    private long totalCount = 0;	//The number of values.
+    private long total = 0;	//The sum of the values.
+    private long max = 0;	//The largest value.
+
+    /**
+     * Adds a value to the histogram.
+     * @param value The value, e.g. the delay of a packet in slots. Negative values are recorded as 0.
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        int index = index(value);
+        if (index >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(index + 1, counts.length + SUB_HALF * 4));
+        }
+        counts[index]++;
+        if (index > maxIndex) {
+            maxIndex = index;
+        }
+        totalCount++;
+        total += value;
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Adds the values of another histogram to this one.
+     * @param other The other histogram. It is not changed.
+     */
+    public void add(DelayHistogram other) {
+        if (other.maxIndex >= counts.length) {
+            counts = Arrays.copyOf(counts, other.maxIndex + 1);
+        }
+        for (int i = 0; i <= other.maxIndex; i++) {
+            counts[i] += other.counts[i];
+        }
+        if (other.maxIndex > maxIndex) {
+            maxIndex = other.maxIndex;
+        }
+        totalCount += other.totalCount;
+        total += other.total;
+        if (other.max > max) {
+            max = other.max;
+        }
+    }
+
+    /**
+     * Removes all values. The memory of the histogram is kept.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0, maxIndex + 1, 0);
+        maxIndex = -1;
+        totalCount = 0;
+        total = 0;
+        max = 0;
+    }
+
+    /**
+     * @return A new histogram with the same values.
+     */
+    public DelayHistogram copy() {
+        DelayHistogram copy = new DelayHistogram();
+        copy.add(this);
+        return copy;
+    }
+
+    /**
+     * Finds the value below which a percentage of the values are.
+     * @param percentile The percentage, from 0 to 100, e.g. 99.9.
+     * @return The largest value that is equivalent to the value of the percentile (has the same bucket), but
+     * not larger than the largest value recorded. 0 if the histogram is empty.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        double p = Math.min(Math.max(percentile, 0), 100);
+        long target = Math.max((long) Math.ceil(p / 100 * totalCount), 1);
+        long count = 0;
+        for (int i = 0; i <= maxIndex; i++) {
+            count += counts[i];
+            if (count >= target) {
+                return Math.min(highestEquivalentValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return The number of values.
+     */
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @return The mean value, or 0 if the histogram is empty.
+     */
+    public double getMean() {
+        if (totalCount == 0) {
+            return 0;
+        }
+        return (double) total / totalCount;
+    }
+
+    /**
+     * @return The largest value, or 0 if the histogram is empty.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    //The bucket of a value.
+    private static int index(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+        return (shift + 1) * SUB_HALF + (int) (value >>> shift) - SUB_HALF;
+    }
+
+    //The largest value of a bucket.
+    private static long highestEquivalentValue(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_HALF - 1;
+        long sub = index % SUB_HALF + SUB_HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,93 @@
+package src.pamvotis.core;
+
+/**
+ * Keeps the durations (in slots) of the frame exchanges that the simulator has already calculated, keyed by
+ * the kind of the exchange (e.g. RTS/CTS/DATA/ACK), the data rate and the payload. Most sources use a few packet
+ * lengths, so after the first transmissions almost every duration is found here.
+ * <p>
+ * It is an open addressing hash table of primitive arrays, so lookups do not allocate. Sources with continuous
+ * packet length distributions can create many keys, so the table is cleared when it reaches its maximum size.
+ */
+class DurationCache {
+
+	private static final int MAX_SIZE = 1 << 14;	//The maximum number of entries.
+	private int[] kinds = new int[64];
+	private int[] rates = new int[64];
+	private int[] payloads = new int[64];
+	private int[] durations = new int[64];	//-1 for empty entries.
+	private int size = 0;
+
+	DurationCache() {
+		clear();
+	}
+
+	/**
+	 * Removes all durations. Must be called when the parameters of the physical layer change.
+	 */
+	void clear() {
+		java.util.Arrays.fill(durations, -1);
+		size = 0;
+	}
+
+	/**
+	 * Finds a duration.
+	 * @param kind The kind of the frame exchange.
+	 * @param rate The data rate.
+	 * @param payload The payload in bits.
+	 * @return The duration in slots, or -1 if it is not in the cache.
+	 */
+	int get(int kind, int rate, int payload) {
+		int mask = durations.length - 1;
+		for (int i = hash(kind, rate, payload) & mask; durations[i] != -1; i = (i + 1) & mask) {
+			if ((payloads[i] == payload) && (rates[i] == rate) && (kinds[i] == kind)) {
+				return durations[i];
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Adds a duration, which must not be in the cache.
+	 * @param kind The kind of the frame exchange.
+	 * @param rate The data rate.
+	 * @param payload The payload in bits.
+	 * @param duration The duration in slots. Must not be negative.
+	 */
+	void put(int kind, int rate, int payload, int duration) {
+		if (size >= MAX_SIZE) {
+			clear();
+		} else if (2 * (size + 1) > durations.length) {
+			grow();
+		}
+		int mask = durations.length - 1;
+		int i = hash(kind, rate, payload) & mask;
+		while (durations[i] != -1) {
+			i = (i + 1) & mask;
+		}
+		kinds[i] = kind;
+		rates[i] = rate;
+		payloads[i] = payload;
+		durations[i] = duration;
+		size++;
+	}
+
+	private void grow() {
+		int[] oldKinds = kinds, oldRates = rates, oldPayloads = payloads, oldDurations = durations;
+		int capacity = 2 * durations.length;
+		kinds = new int[capacity];
+		rates = new int[capacity];
+		payloads = new int[capacity];
+		durations = new int[capacity];
+		clear();
+		for (int i = 0; i < oldDurations.length; i++) {
+			if (oldDurations[i] != -1) {
+				put(oldKinds[i], oldRates[i], oldPayloads[i], oldDurations[i]);
+			}
+		}
+	}
+
+	private static int hash(int kind, int rate, int payload) {
+		int h = (payload * 0x9e3779b9) ^ (rate * 0x85ebca6b) ^ (kind * 0xc2b2ae35);
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,107 @@
+package src.pamvotis.core;
+
+/**
+ * Maps int keys (the IDs of nodes or sources) to their positions in a list, so that an element is found by its ID
+ * without scanning the list. It is an open addressing hash table of primitive arrays, so lookups do not allocate.
+ * The owner of the list must keep the index up to date when elements are added or removed.
+ */
+class IntIndex {
+
+	private int[] keys = new int[16];
+	private int[] positions = new int[16];	//-1 for empty entries.
+	private int size = 0;
+
+	IntIndex() {
+		clear();
+	}
+
+	/**
+	 * Removes all keys.
+	 */
+	void clear() {
+		java.util.Arrays.fill(positions, -1);
+		size = 0;
+	}
+
+	/**
+	 * Finds the position of a key.
+	 * @param key The key.
+	 * @return The position, or -1 if the key does not exist.
+	 */
+	int get(int key) {
+		int mask = positions.length - 1;
+		for (int i = hash(key) & mask; positions[i] != -1; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return positions[i];
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Adds a key or changes its position.
+	 * @param key The key.
+	 * @param position The position. Must not be negative.
+	 */
+	void put(int key, int position) {
+		if (2 * (size + 1) > positions.length) {
+			grow();
+		}
+		int mask = positions.length - 1;
+		int i = hash(key) & mask;
+		while ((positions[i] != -1) && (keys[i] != key)) {
+			i = (i + 1) & mask;
+		}
+		if (positions[i] == -1) {
+			size++;
+		}
+		keys[i] = key;
+		positions[i] = position;
+	}
+
+	/**
+	 * Removes a key. The positions of the other keys do not change, so if the element was removed from a list,
+	 * the keys of the next elements must be put again with their new positions.
+	 * @param key The key.
+	 */
+	void remove(int key) {
+		int mask = positions.length - 1;
+		int i = hash(key) & mask;
+		while ((positions[i] != -1) && (keys[i] != key)) {
+			i = (i + 1) & mask;
+		}
+		if (positions[i] == -1) {
+			return;
+		}
+		positions[i] = -1;
+		size--;
+		//Move back the following entries of the cluster that can take the empty entry, so that
+		//no lookup stops before its key.
+		for (int j = (i + 1) & mask; positions[j] != -1; j = (j + 1) & mask) {
+			int home = hash(keys[j]) & mask;
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				keys[i] = keys[j];
+				positions[i] = positions[j];
+				positions[j] = -1;
+				i = j;
+			}
+		}
+	}
+
+	private void grow() {
+		int[] oldKeys = keys, oldPositions = positions;
+		keys = new int[2 * oldKeys.length];
+		positions = new int[2 * oldPositions.length];
+		clear();
+		for (int i = 0; i < oldPositions.length; i++) {
+			if (oldPositions[i] != -1) {
+				put(oldKeys[i], oldPositions[i]);
+			}
+		}
+	}
+
+	private static int hash(int key) {
+		int h = key * 0x9e3779b9;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,131 @@
+package src.pamvotis.core;
+
+/**
+ * The statistics of a simulation interval: the value of each statistic of BinaryResultsReader.METRICS for each
+ * node and the system throughput and utilization. It is a snapshot, so it does not change when the simulation
+ * continues.
+ * @see SimulationListener#intervalFinished(Simulator, IntervalResults)
+ */
+public final class IntervalResults {
+
+    private final long startTime;	//The start of the interval in milliseconds.
+    private final long endTime;	//The end of the interval in milliseconds.
+    private final double time;	//The simulated time at the end of the interval in seconds.
+    private final int strategy;	//The backoff strategy used in the interval.
+    private final long successes;	//The successful transmissions of all nodes.
+    private final long collisions;	//The collisions of all nodes.
+    private final int[] nodeIds;	//The IDs of the nodes, in the order of the simulator.
+    private final float[][] values;	//The value of each node for each statistic of METRICS.
+    private final float[] system;	//The throughput in Kbits/s and packets/s and the utilization of the system.
+
+    IntervalResults(long startTime, long endTime, double time, int strategy, long successes, long collisions,
+            int[] nodeIds, float[][] values, float[] system) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.time = time;
+        this.strategy = strategy;
+        this.successes = successes;
+        this.collisions = collisions;
+        this.nodeIds = nodeIds;
+        this.values = values;
+        this.system = system;
+    }
+
+    /**
+     * @return The start time of the interval in milliseconds, as given to Simulator.simulate().
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return The end time of the interval in milliseconds, as given to Simulator.simulate().
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * @return The simulated time at the end of the interval in seconds.
+     */
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * @return The backoff strategy used in the interval.
+     */
+    public int getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * @return The number of successful transmissions of all nodes in the interval.
+     */
+    public long getSuccesses() {
+        return successes;
+    }
+
+    /**
+     * @return The number of collisions of all nodes in the interval.
+     */
+    public long getCollisions() {
+        return collisions;
+    }
+
+    /**
+     * @return The number of nodes.
+     */
+    public int getNodeCount() {
+        return nodeIds.length;
+    }
+
+    /**
+     * @param node The index of the node, from 0 to getNodeCount()-1.
+     * @return The ID of the node.
+     */
+    public int getNodeId(int node) {
+        return nodeIds[node];
+    }
+
+    /**
+     * Returns the value of a statistic of a node.
+     * @param node The index of the node, from 0 to getNodeCount()-1.
+     * @param metric The two-character code of the statistic, one of BinaryResultsReader.METRICS.
+     * @return The value of the statistic in the interval.
+     */
+    public float get(int node, String metric) {
+        return values[metricIndex(metric)][node];
+    }
+
+    /**
+     * Returns the values of a statistic of all nodes.
+     * @param metric The two-character code of the statistic, one of BinaryResultsReader.METRICS.
+     * @return The value of each node, in the order of getNodeId().
+     */
+    public float[] get(String metric) {
+        return values[metricIndex(metric)].clone();
+    }
+
+    /**
+     * Returns the value of a statistic of the whole system. Only the throughput ("tb" and "tp") and the
+     * utilization ("ut") have such values.
+     * @param metric The two-character code of the statistic.
+     * @return The value of the statistic in the interval.
+     */
+    public float getSystem(String metric) {
+        int m = metricIndex(metric);
+        if (m > 2) {
+            throw new IllegalArgumentException("There is no system value for " + metric);
+        }
+        return system[m];
+    }
+
+    private static int metricIndex(String metric) {
+        int m = BinaryResultsReader.metricIndex(metric);
+        if (m == -1) {
+            throw new IllegalArgumentException("Unknown statistic " + metric);
+        }
+        return m;
+    }
+}
@@ -0,0 +1,104 @@
+package src.pamvotis.core;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Publishes the counters of a simulator through JMX, so that long simulations can be watched with a JMX console
+ * (e.g. jconsole). Each read takes a new snapshot of the counters. The counters are updated by the simulation
+ * thread without synchronization, so a value may be slightly out of date.
+ * @see Simulator#setMetricsEnabled(boolean)
+ */
+public class MetricsMonitor implements MetricsMonitorMBean {
+
+    private Simulator sim = null;
+
+    /**
+     * Creates a monitor for a simulator.
+     * @param sim The simulator. Its counters must be enabled.
+     */
+    public MetricsMonitor(Simulator sim) {
+        this.sim = sim;
+    }
+
+    /**
+     * Registers a monitor for a simulator to the platform MBean server, with the object name
+     * "src.pamvotis:type=Simulator,name='name'".
+     * @param sim The simulator. Its counters must be enabled.
+     * @param name A name that identifies the simulation.
+     * @return The object name of the monitor, needed for unregistering it.
+     * @throws JMException If the monitor can not be registered, e.g. the name is used.
+     */
+    public static ObjectName register(Simulator sim, String name) throws JMException {
+        ObjectName objectName = new ObjectName("src.pamvotis:type=Simulator,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMonitor(sim), objectName);
+        return objectName;
+    }
+
+    /**
+     * Removes a monitor from the platform MBean server.
+     * @param objectName The object name returned by register().
+     * @throws JMException If the monitor is not registered.
+     */
+    public static void unregister(ObjectName objectName) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    }
+
+    public long getSlots() {
+        return sim.getMetrics().getSlots();
+    }
+
+    public long getEmptySlots() {
+        return sim.getMetrics().getEmptySlots();
+    }
+
+    public long getSuccessfulSlots() {
+        return sim.getMetrics().getSuccessfulSlots();
+    }
+
+    public long getCollisionSlots() {
+        return sim.getMetrics().getCollisionSlots();
+    }
+
+    public long getFreezeSlots() {
+        return sim.getMetrics().getFreezeSlots();
+    }
+
+    public long getSkippedSlots() {
+        return sim.getMetrics().getSkippedSlots();
+    }
+
+    public long getPacketsGenerated() {
+        return sim.getMetrics().getPacketsGenerated();
+    }
+
+    public long getPacketsEnqueued() {
+        return sim.getMetrics().getPacketsEnqueued();
+    }
+
+    public long getPacketsDropped() {
+        return sim.getMetrics().getPacketsDropped();
+    }
+
+    public long getConfigureNanos() {
+        return sim.getMetrics().getConfigureNanos();
+    }
+
+    public long getFightNanos() {
+        return sim.getMetrics().getFightNanos();
+    }
+
+    public long getSkipNanos() {
+        return sim.getMetrics().getSkipNanos();
+    }
+
+    public long getTime() {
+        return sim.getTime();
+    }
+
+    public int getProgress() {
+        return sim.getProgress();
+    }
+}
@@ -0,0 +1,42 @@
+package src.pamvotis.core;
+
+/**
+ * The JMX management interface of MetricsMonitor. Each attribute is a counter of the simulator.
+ * @see SimulatorMetrics
+ */
+public interface MetricsMonitorMBean {
+
+    public long getSlots();
+
+    public long getEmptySlots();
+
+    public long getSuccessfulSlots();
+
+    public long getCollisionSlots();
+
+    public long getFreezeSlots();
+
+    public long getSkippedSlots();
+
+    public long getPacketsGenerated();
+
+    public long getPacketsEnqueued();
+
+    public long getPacketsDropped();
+
+    public long getConfigureNanos();
+
+    public long getFightNanos();
+
+    public long getSkipNanos();
+
+    /**
+     * @return The simulation time in seconds.
+     */
+    public long getTime();
+
+    /**
+     * @return The % progress of the simulation.
+     */
+    public int getProgress();
+}
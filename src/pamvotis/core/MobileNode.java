@@ -1,5 +1,6 @@
 package src.pamvotis.core;
 
+import java.io.Serializable;
 import java.util.Vector;
 
 import src.pamvotis.exceptions.ElementDoesNotExistException;
@@ -10,17 +11,26 @@ import src.pamvotis.sources.Source;
  * Simulates a mobile node
  * @author Dimitris El. Vassis - Vassilis Zafeiris
  */
-public class MobileNode{
+public class MobileNode implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 	
 	/**
 	 * Instantiates a new node and creates a packet buffer on the node. The capacity of the buffer
 	 * is the MAX_PKT_QUEUE_LNGTH parameter, specified in the specParams.xml configuration file.
+	 * @param context The context of the simulation the node belongs to.
 	 */
-	MobileNode(){
+	MobileNode(SimulationContext context){
+		this.context = context;
+		random = context.generator;
 		_pktBuffer = new PacketBuffer(SpecParams.MAX_PKT_QUEUE_LNGTH);
 	}
 		
-	int backoffCounter=0;	//The backoff counter.
+	NodeState state = new NodeState(1);	//The MAC state of the node that changes in every slot (backoff
+			//counter and flags). It is shared with the other nodes of the simulation; the node is at
+			//position 'index'. See the accessors below.
+	
+	int index = 0;	//The position of the node in the shared state.
 
 	long collisions=0;	//The total number of collisions a station had.
 			//Divided with the number of successful transmissions
@@ -31,10 +41,6 @@ public class MobileNode{
 	
 	int pktLength=0;	//The length of each packet.
 	
-	boolean requestTransmit=false; //Represents if a station wants to transmit.
-			//Used for finding the number of nodes that want to
-			//transmit in a specific slot.
-	
 	long successfulBits=0;	//The number of successfully transmitted bits.
 			//Divided with the total time gives the throughput.
 	long totSuccessfulBits=0; //The total number of successful bits in the whole simulation.
@@ -46,8 +52,8 @@ public class MobileNode{
 	long totSuccessfulTransmissions=0; //The total successful transmissions in the whole simulation.
 	//Used for calculating the mean values.
 	
-	static long timer=0;//The timer. It has the same value for all stations.
-			//It is the currentSlot value.
+	SimulationContext context = null;//The context of the simulation. Its timer has the same value for
+			//all stations. It is the currentSlot value.
 	
 	int transmissionDuration=0; //The duration from the first 
 			//transmission attempt of a packet until the end of
@@ -61,15 +67,9 @@ public class MobileNode{
 	
 	long transmissionStart=0; //The starting time of a transmission
 
-	boolean successfullyTransmitting=false; //A flag which shows
-			//if a transmission is successful or collision.
-	
 	int contWind=0;	//The contention window. We initialize it on Simulator class because we don't
 	//know the node's AC yet.
 	
-	boolean havePktToSend= false; // Flag which indicates if a station has a
-			//packet in the transmitter.
-	
 	long queuingDelay=0; //The delay of a packet from the start of
 			//its birth until its first transmission attempt.
 			//This variable holds the sum of all queuing delays.
@@ -87,8 +87,6 @@ public class MobileNode{
 	
 	Vector<Packet> pktQueue = new Vector<Packet>(); //The vector that simulates the packet queue
 	
-	public static java.util.Random generator;
-			
 	long lastPktTrans=0;	//Indicates the time the last packet was
 			//transmitted. Used in the  for the TakePacketFromQueue
 			//routine for the implementation of the backoff procedure.
@@ -96,25 +94,104 @@ public class MobileNode{
 	Params params = new Params(); //The data rate, packet generation parameters, 
 			// coordinates and coverage of a node.
 
-	boolean startTransmitting=false;	//Shows if a station initiated a transmission.
-			//Used only in the Collision procedure.
-
-	boolean nowTransmitting=false;	//Shows if a station transmits in the
-		//current slot. Used globally.
-
 	long jitter=0;	//Variable which holds the sum of the square of
 		//the total delay of each packet. At the end it will be
 		//devided with the mean total delay to find the delay jitter.
 	
 	long totJitter=0; //Holds the sum of all jitter (see above) values in the whole simulation.
 	//Used for calculating the mean values.
+
+	DelayHistogram[] delays = createHistograms(); //The histograms of the queuing, media access and
+		//total delay of the packets, indexed by Simulator.QUEUING_DELAY, MEDIA_ACCESS_DELAY and TOTAL_DELAY.
+		//Used for calculating the percentiles of the delays.
+
+	DelayHistogram[] totDelays = createHistograms(); //The histograms of the delays in the whole simulation.
+
+	//Creates a histogram for each delay.
+	static DelayHistogram[] createHistograms() {
+		return new DelayHistogram[] {new DelayHistogram(), new DelayHistogram(), new DelayHistogram()};
+	}
 		
 
+	//The backoff counter.
+	int getBackoffCounter() {
+		return state.backoff[index];
+	}
+	
+	void setBackoffCounter(int backoffCounter) {
+		state.backoff[index] = backoffCounter;
+	}
+	
+	//Represents if a station wants to transmit. Used for finding the number of nodes
+	//that want to transmit in a specific slot.
+	boolean isRequestTransmit() {
+		return NodeState.isSet(state.request, index);
+	}
+	
+	void setRequestTransmit(boolean requestTransmit) {
+		NodeState.set(state.request, index, requestTransmit);
+	}
+	
+	//A flag which shows if a transmission is successful or collision.
+	boolean isSuccessfullyTransmitting() {
+		return NodeState.isSet(state.success, index);
+	}
+	
+	void setSuccessfullyTransmitting(boolean successfullyTransmitting) {
+		NodeState.set(state.success, index, successfullyTransmitting);
+	}
+	
+	//Flag which indicates if a station has a packet in the transmitter.
+	boolean isHavePktToSend() {
+		return NodeState.isSet(state.havePkt, index);
+	}
+	
+	void setHavePktToSend(boolean havePktToSend) {
+		NodeState.set(state.havePkt, index, havePktToSend);
+	}
+	
+	//Shows if a station transmits in the current slot. Used globally.
+	boolean isNowTransmitting() {
+		return NodeState.isSet(state.transmitting, index);
+	}
+	
+	void setNowTransmitting(boolean nowTransmitting) {
+		NodeState.set(state.transmitting, index, nowTransmitting);
+	}
+	
+	//Gives the node a state of its own, with its current values. Called when the node is removed
+	//from a simulation, because the shared state is rebuilt without it.
+	void detachState() {
+		NodeState own = new NodeState(1);
+		own.copy(0, state, index);
+		state = own;
+		index = 0;
+	}
+
+	java.util.Random random = null;	//Generator for the backoff counters and contention windows of the node.
+	
+	RandomStream streams = null;	//The stream of the node, from which the generators of the node and of its
+		//sources are derived (see setStreams). Null if they use the generator of the context.
+	
+	static final long MAC_STREAM = -1;	//The key of the generator of the node. The sources use their ID.
+	
+	/**
+	 * Sets the stream of the node, before any source is added. The generator of the node and the generators of
+	 * its sources are split from it, each with its own key, so they are independent of each other and of the
+	 * order they are used.
+	 * @param streams The stream of the node.
+	 * @see RandomStream#split(long)
+	 */
+	void setStreams(RandomStream streams) {
+		this.streams = streams;
+		random = streams.split(MAC_STREAM);
+	}
+
 	//Initializes the backoff inter. pCw is the contention window value.
 	int InitBackoff(int pCw)
 	{
 		//We consider cw_min as 16, 32 64 etc, meaning that the backoff counter is between 0 and 15,31,63 e.t.c
-		return generator.nextInt(pCw);
+		return random.nextInt(pCw);
 	}
 	
 	/*
@@ -139,13 +216,19 @@ public class MobileNode{
 	}
 
 	/**
-	 * Adds a new source to the source manager
+	 * Adds a new source to the source manager and binds it to the context of the node. If the node has a stream,
+	 * the source takes its own generator, split from the stream of the node with the ID of the source as key.
 	 * @param s The source to be added
 	 * @throws ElementExistsException 
 	 * @see SourceManager#addSource(Source)
+	 * @see Source#setGenerator(java.util.Random)
 	 */
 	public void addSource(Source s) throws ElementExistsException {
 		_srcManager.addSource(s);
+		s.setContext(context);
+		if (streams != null) {
+			s.setGenerator(streams.split(s._sourceId));
+		}
 	}
 	
 	/**
@@ -168,6 +251,16 @@ public class MobileNode{
 		return _srcManager.pollPacketsFromSources();
 	}
 
+	/**
+	 * Calls the corresponding function of the source manager to poll one packet from each source
+	 * and put it directly to the packet buffer of the node.
+	 * @param currentSlot The slot that is simulated.
+	 * @see SourceManager#pollPacketsFromSources(PacketBuffer, long)
+	 */
+	public void pollPacketsFromSources(long currentSlot) {
+		_srcManager.pollPacketsFromSources(_pktBuffer, currentSlot);
+	}
+
 	/**
 	 * Gets the packet buffer of the node.
 	 * @return The packet buffer of the node.
@@ -0,0 +1,194 @@
+package src.pamvotis.core;
+
+import java.io.Serializable;
+import java.util.Vector;
+
+/**
+ * Holds the MAC state of the nodes that changes in every slot, in dense arrays: the backoff counters and the
+ * coverage in int arrays and the flags (has a packet to send, wants to transmit, transmits, transmits
+ * successfully, starts transmitting) in bitsets, where bit i refers to the i-th node of the nodes vector.
+ * The slot loops of the simulator run over these arrays instead of visiting the node objects one by one.
+ * <p>
+ * Each node reads and writes its own part of the state (see MobileNode.state). A node that is not attached
+ * to a simulation has a state of its own, with one entry. The state is rebuilt, with the current values of
+ * the nodes, the next time it is used after a node is added, removed or changes coverage.
+ */
+class NodeState implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	int[] backoff;	//The backoff counter of each node.
+	int[] coverage;	//The coverage of each node.
+	long[] havePkt;	//Bit i is set if node i has a packet in the transmitter.
+	long[] request;	//Bit i is set if node i wants to transmit.
+	long[] transmitting;	//Bit i is set if node i transmits in the current slot.
+	long[] success;	//Bit i is set if the transmission of node i is successful.
+	long[] starting;	//Bit i is set if node i starts transmitting in a collision. Used only in the Collision procedure.
+	private boolean valid = false;	//False if the nodes changed since the last build.
+
+	/**
+	 * Creates the state for a number of nodes, with all counters zero and all flags disabled.
+	 * @param size The number of nodes.
+	 */
+	NodeState(int size) {
+		int words = Math.max(1, (size + 63) >>> 6);
+		backoff = new int[size];
+		coverage = new int[size];
+		havePkt = new long[words];
+		request = new long[words];
+		transmitting = new long[words];
+		success = new long[words];
+		starting = new long[words];
+	}
+
+	/**
+	 * Marks the state as invalid. It will be rebuilt the next time it is used.
+	 * Must be called every time a node is added, removed or changes coverage.
+	 */
+	void invalidate() {
+		valid = false;
+	}
+
+	/**
+	 * Rebuilds the state if the nodes have changed. The values are copied from the current state of each
+	 * node, and then the node is attached to this state.
+	 * @param nodes The nodes of the simulation.
+	 */
+	void update(Vector<MobileNode> nodes) {
+		if (valid) return;
+		NodeState fresh = new NodeState(nodes.size());
+		for (int i = 0; i < nodes.size(); i++) {
+			MobileNode n = nodes.elementAt(i);
+			fresh.copy(i, n.state, n.index);
+			fresh.coverage[i] = n.params.coverage;
+		}
+		backoff = fresh.backoff;
+		coverage = fresh.coverage;
+		havePkt = fresh.havePkt;
+		request = fresh.request;
+		transmitting = fresh.transmitting;
+		success = fresh.success;
+		starting = fresh.starting;
+		for (int i = 0; i < nodes.size(); i++) {
+			nodes.elementAt(i).state = this;
+			nodes.elementAt(i).index = i;
+		}
+		valid = true;
+	}
+
+	/**
+	 * Copies the state of a node from another state.
+	 * @param i The position of the node in this state.
+	 * @param from The other state.
+	 * @param j The position of the node in the other state.
+	 */
+	void copy(int i, NodeState from, int j) {
+		backoff[i] = from.backoff[j];
+		coverage[i] = from.coverage[j];
+		set(havePkt, i, isSet(from.havePkt, j));
+		set(request, i, isSet(from.request, j));
+		set(transmitting, i, isSet(from.transmitting, j));
+		set(success, i, isSet(from.success, j));
+		set(starting, i, isSet(from.starting, j));
+	}
+
+	/**
+	 * Enables the request flag of each node that has a packet to send, does not transmit and whose backoff
+	 * counter has expired. The flags are checked 64 nodes at a time and only the backoff counters of the
+	 * nodes that have a packet and do not transmit are visited.
+	 * @return The number of nodes that want to transmit, including those that wanted to transmit before.
+	 */
+	int requestTransmit() {
+		int requests = 0;
+		for (int w = 0; w < request.length; w++) {
+			long candidates = havePkt[w] & ~transmitting[w];
+			while (candidates != 0) {
+				int i = (w << 6) + Long.numberOfTrailingZeros(candidates);
+				if (backoff[i] == 0) {
+					request[w] |= 1L << i;
+				}
+				candidates &= candidates - 1;
+			}
+			requests += Long.bitCount(request[w]);
+		}
+		return requests;
+	}
+
+	/**
+	 * Decreases the positive backoff counters of the first nodes. The counters are never negative, so
+	 * the loop has no branch and the JIT compiler can vectorize it.
+	 * @param size The number of nodes.
+	 */
+	void countDown(int size) {
+		for (int i = 0; i < size; i++) {
+			backoff[i] = Math.max(backoff[i] - 1, 0);
+		}
+	}
+
+	/**
+	 * Decreases the positive backoff counters of the nodes that are in a set and do not transmit or want
+	 * to transmit. Blocks of 64 nodes that are all in the set are decreased like in countDown(int).
+	 * @param nodes The set of the nodes, in a bitset.
+	 */
+	void countDown(long[] nodes) {
+		for (int w = 0; w < nodes.length; w++) {
+			long mask = nodes[w] & ~transmitting[w] & ~request[w];
+			if (mask == -1L) {
+				int first = w << 6;
+				for (int i = first; i < first + 64; i++) {
+					backoff[i] = Math.max(backoff[i] - 1, 0);
+				}
+				continue;
+			}
+			while (mask != 0) {
+				int i = (w << 6) + Long.numberOfTrailingZeros(mask);
+				backoff[i] = Math.max(backoff[i] - 1, 0);
+				mask &= mask - 1;
+			}
+		}
+	}
+
+	/**
+	 * @return True if some node transmits.
+	 */
+	boolean anyTransmitting() {
+		for (int w = 0; w < transmitting.length; w++) {
+			if (transmitting[w] != 0) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Checks a flag of a node.
+	 * @param bits The bitset of the flag, e.g. request.
+	 * @param i The position of the node.
+	 * @return True if the flag is enabled.
+	 */
+	static boolean isSet(long[] bits, int i) {
+		return (bits[i >>> 6] & (1L << i)) != 0;
+	}
+
+	/**
+	 * Enables or disables a flag of a node.
+	 * @param bits The bitset of the flag, e.g. request.
+	 * @param i The position of the node.
+	 * @param value True for enabling the flag.
+	 */
+	static void set(long[] bits, int i, boolean value) {
+		if (value) {
+			bits[i >>> 6] |= 1L << i;
+		} else {
+			bits[i >>> 6] &= ~(1L << i);
+		}
+	}
+
+	/**
+	 * Disables a flag of all nodes.
+	 * @param bits The bitset of the flag, e.g. transmitting.
+	 */
+	static void clear(long[] bits) {
+		for (int w = 0; w < bits.length; w++) {
+			bits[w] = 0;
+		}
+	}
+}
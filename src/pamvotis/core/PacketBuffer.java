@@ -1,74 +1,194 @@
 package src.pamvotis.core;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.Vector;
 
 /**
- * Simulates the hardware packet buffer of a noder
+ * Simulates the hardware packet buffer of a noder. The buffer is a ring of
+ * primitive arrays, one for each field of a packet, so no Packet objects are
+ * kept and removing the first packet does not shift the rest. The arrays grow
+ * when needed, up to the capacity of the buffer.
  * @author Vassilis Zafeiris
- * 
+ *
  */
-public class PacketBuffer {
+public class PacketBuffer implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	int _maxSize = 0; // Buffer capacity in packets. Will be defined in the
 						// constructor
 
-	Vector<Packet> _vPacketQueue = null;
+	long[] _generationTime = null; // The generation time of each packet
+	int[] _length = null; // The length of each packet
+	int[] _id = null; // The ID of each packet
+	int _head = 0; // The position of the first packet in the arrays
+	int _size = 0; // The number of packets in the buffer
 
 	/**
-	 * Creates a packet buffer, which is actually called _vPacketQueue
-	 * 
+	 * Creates a packet buffer.
+	 *
 	 * @param size The buffer capacity in packets.
 	 */
 	public PacketBuffer(int size) {
 
 		_maxSize = size;
-		_vPacketQueue = new Vector<Packet>(_maxSize);
+		int initial = Math.max(1, Math.min(_maxSize, 16));
+		_generationTime = new long[initial];
+		_length = new int[initial];
+		_id = new int[initial];
 	}
 
 	/**
 	 * Gets all the packets that the source manager polled from each source and
 	 * adds them to the packet buffer. The source manager, at each slot, it
 	 * polls one packet from each source
-	 * 
+	 *
 	 * @param newPackets A vector that contains all the packets polled from sources
 	 */
 	public void enqueue(Vector<Packet> newPackets) {
 		for (Packet p : newPackets) {
-			if (_vPacketQueue.size() < _maxSize)
-				_vPacketQueue.add(p);
-			else
+			if (!enqueue(p.generationTime, p.length, p.id))
 				break;
 		}
 	}
 
 	/**
+	 * Adds a packet to the end of the packet buffer. If the buffer is full, the
+	 * packet is dropped.
+	 *
+	 * @param generationTime The time that the packet was generated
+	 * @param length The packet length in bits
+	 * @param id The ID of the packet
+	 * @return True if the packet was added or false if it was dropped.
+	 */
+	public boolean enqueue(long generationTime, int length, int id) {
+		if (_size >= _maxSize)
+			return false;
+		if (_size == _length.length)
+			grow();
+		int tail = (_head + _size) % _length.length;
+		_generationTime[tail] = generationTime;
+		_length[tail] = length;
+		_id[tail] = id;
+		_size++;
+		return true;
+	}
+
+	/**
+	 * Doubles the arrays, up to the capacity of the buffer, and moves the
+	 * packets to the start of the new arrays.
+	 */
+	private void grow() {
+		int capacity = (int) Math.min((long) _maxSize, 2L * _length.length);
+		long[] generationTime = new long[capacity];
+		int[] length = new int[capacity];
+		int[] id = new int[capacity];
+		for (int i = 0; i < _size; i++) {
+			int pos = (_head + i) % _length.length;
+			generationTime[i] = _generationTime[pos];
+			length[i] = _length[pos];
+			id[i] = _id[pos];
+		}
+		_generationTime = generationTime;
+		_length = length;
+		_id = id;
+		_head = 0;
+	}
+
+	/**
+	 * Creates a copy of the first packet of the buffer. The simulator uses the
+	 * firstGenerationTime, firstLength and firstId functions instead, which do
+	 * not create an object.
+	 *
 	 * @return The first element (packet) of the packet buffer
 	 * @see Packet
 	 */
 	public Packet firstPacket() {
-		return _vPacketQueue.firstElement();
+		if (_size == 0)
+			throw new java.util.NoSuchElementException();
+		Packet p = new Packet();
+		p.generationTime = _generationTime[_head];
+		p.length = _length[_head];
+		p.id = _id[_head];
+		return p;
+	}
+
+	/**
+	 * @return The generation time of the first packet of the buffer.
+	 */
+	public long firstGenerationTime() {
+		return _generationTime[_head];
+	}
+
+	/**
+	 * @return The length of the first packet of the buffer in bits.
+	 */
+	public int firstLength() {
+		return _length[_head];
+	}
+
+	/**
+	 * @return The ID of the first packet of the buffer.
+	 */
+	public int firstId() {
+		return _id[_head];
 	}
 
 	/**
 	 * Removes the first element of the packet buffer.
 	 */
 	public void dequeue() {
-		_vPacketQueue.removeElementAt(0);
+		if (_size == 0)
+			throw new ArrayIndexOutOfBoundsException(0);
+		_head = (_head + 1) % _length.length;
+		_size--;
 	}
 
 	/**
 	 * Checks if a packet buffer is empty.
-	 * 
+	 *
 	 * @return True if it is empty or false if not.
 	 */
 	public boolean isEmpty() {
-		return _vPacketQueue.isEmpty();
+		return _size == 0;
 	}
 
 	/**
 	 * @return The size of the packet buffer.
 	 */
 	public int size() {
-		return _vPacketQueue.size();
+		return _size;
+	}
+
+	/**
+	 * Writes only the packets of the buffer, from the first to the last, and not the free positions of the ring.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.writeInt(_maxSize);
+		out.writeInt(_size);
+		for (int i = 0; i < _size; i++) {
+			int pos = (_head + i) % _length.length;
+			out.writeLong(_generationTime[pos]);
+			out.writeInt(_length[pos]);
+			out.writeInt(_id[pos]);
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException {
+		_maxSize = in.readInt();
+		_size = in.readInt();
+		_head = 0;
+		int capacity = Math.max(1, Math.max(_size, Math.min(_maxSize, 16)));
+		_generationTime = new long[capacity];
+		_length = new int[capacity];
+		_id = new int[capacity];
+		for (int i = 0; i < _size; i++) {
+			_generationTime[i] = in.readLong();
+			_length[i] = in.readInt();
+			_id[i] = in.readInt();
+		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,403 @@
+package src.pamvotis.core;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import src.pamvotis.exceptions.ConfigurationException;
+
+/**
+ * Runs a parameter sweep: the scenario of a network configuration file is simulated for every combination of
+ * the values of some parameters and, for each combination (point), with a number of seeds. The configurations
+ * of the points are created in memory, by changing the parameters of the scenario of the configuration file,
+ * so no configuration file has to be written. All the simulations run in parallel, inside the same JVM, on a pool
+ * with a fixed number of threads. When all the seeds of a point finish, the mean value and the 95% confidence
+ * interval of each statistic of the point are written to the output, in the order of the points.
+ * <p>
+ * A parameter is the name of an element of the configuration file, e.g. RTSThr, ctsToSelf, phyLayer,
+ * cwMinFact0 or aifs2 (see Scenario.Builder.setParameter). The node parameters, like rate or AC, change for
+ * all nodes and the source parameters, like intArrTime or fileSizeMean, for all the sources that have them,
+ * unless they are prefixed with a node or source ID, e.g. node3.source1.intArrTime. The special parameter
+ * "config" selects the configuration file itself, e.g. for sweeping configurations with different numbers of
+ * nodes.
+ * <p>
+ * A sweep can be described in a file, with one line per parameter: "name = values". The values are separated
+ * with commas and may contain integer ranges, "from..to" or "from..to:step". The line "seeds = values" sets the
+ * seeds and the lines "threads = n", "strategy = n" and "eventDriven = true" set the corresponding options.
+ * Lines starting with # are comments. For example:
+ * <pre>
+ * config = config/Nt_Conf_2_Nodes.xml, config/Nt_Conf_10_Nodes.xml
+ * RTSThr = 0, 3000
+ * cwMinFact0 = 1..4
+ * seeds = 1..10
+ * </pre>
+ * Usage: java src.pamvotis.core.ParameterSweep sweepFile [outputFile]. It must run from the directory of the
+ * application, because the simulator reads the "config/SpecParams.xml" file.
+ * @see ReplicationRunner
+ */
+public class ParameterSweep {
+
+    /**
+     * The name of the parameter that selects the configuration file.
+     */
+    public static final String CONFIG = "config";
+    private String config = "config" + File.separator + "NtConf.xml";	//The configuration file, if not swept.
+    private List<String> names = new ArrayList<String>();	//The names of the parameters, in the order they were added.
+    private List<String[]> values = new ArrayList<String[]>();	//The values of each parameter.
+    private int[] seeds = {1};	//The seeds of each point.
+    private int threads = Runtime.getRuntime().availableProcessors();	//The number of simulations that run in parallel.
+    private int strategy = -1;	//The backoff strategy used by all simulations.
+    private boolean eventDriven = false;	//If true, the simulations use the event-driven engine.
+    private SimulationControl control = null;	//Pauses, cancels or limits all simulations.
+    private Map<String, Scenario> scenarios = new HashMap<String, Scenario>();	//The scenarios of the configuration files.
+
+    /**
+     * Creates a sweep of the "config/NtConf.xml" file with no parameters and seed 1.
+     */
+    public ParameterSweep() {
+    }
+
+    /**
+     * Adds a parameter to the sweep. The points are all the combinations of the values of the parameters. The
+     * last parameter added changes faster.
+     * @param name The name of the elements of the configuration file, or CONFIG.
+     * @param values The values of the parameter, or the configuration files for CONFIG.
+     */
+    public void addParameter(String name, String[] values) {
+        names.add(name);
+        this.values.add(values);
+    }
+
+    /**
+     * @param config The configuration file, when the CONFIG parameter is not swept.
+     */
+    public void setConfig(String config) {
+        this.config = config;
+    }
+
+    /**
+     * @param seeds The seeds of each point.
+     */
+    public void setSeeds(int[] seeds) {
+        this.seeds = seeds;
+    }
+
+    /**
+     * @param threads The number of simulations that run in parallel. By default it is the number of processors.
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @param strategy The backoff strategy used by all simulations.
+     * @see Simulator#setCurrentStrategy(int)
+     */
+    public void setStrategy(int strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * @param eventDriven True for running the simulations with the event-driven engine.
+     * @see Simulator#setEventDriven(boolean)
+     */
+    public void setEventDriven(boolean eventDriven) {
+        this.eventDriven = eventDriven;
+    }
+
+    /**
+     * Sets a control for pausing, cancelling or limiting all the simulations of the sweep from another thread.
+     * When it is cancelled, the running simulations stop at their next check and the sweep stops without writing
+     * the points that have not been written.
+     * @param control The control, or null for no control.
+     * @see Simulator#setControl(SimulationControl)
+     */
+    public void setControl(SimulationControl control) {
+        this.control = control;
+    }
+
+    /**
+     * @return The number of points of the sweep.
+     */
+    public int getPoints() {
+        int points = 1;
+        for (int i = 0; i < values.size(); i++) {
+            points *= values.get(i).length;
+        }
+        return points;
+    }
+
+    /**
+     * Finds the values of the parameters in a point.
+     * @param point The index of the point, from 0 to getPoints()-1.
+     * @return The value of each parameter, in the order the parameters were added.
+     */
+    public String[] getPoint(int point) {
+        String[] p = new String[names.size()];
+        for (int i = names.size() - 1; i >= 0; i--) {
+            String[] v = values.get(i);
+            p[i] = v[point % v.length];
+            point /= v.length;
+        }
+        return p;
+    }
+
+    /**
+     * Runs all the simulations of the sweep and waits for them to finish. The results of each point are written
+     * as soon as the point and all the points before it have finished, one line per point, with tabs between the
+     * columns: the index of the point, the value of each parameter and the mean value and the confidence
+     * interval of each statistic of ReplicationRunner.METRIC_NAMES.
+     * @param out Where the results are written. It is flushed after each point.
+     * @throws IOException If a configuration file cannot be read or the results cannot be written.
+     * @throws ConfigurationException If a configuration file is not valid.
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     * @throws ExecutionException If a simulation fails.
+     */
+    public void run(Writer out) throws IOException, ConfigurationException, InterruptedException, ExecutionException {
+        int points = getPoints();
+        loadScenarios();
+
+        StringBuilder b = new StringBuilder("Point");
+        for (int i = 0; i < names.size(); i++) {
+            b.append('\t').append(names.get(i));
+        }
+        for (int m = 0; m < ReplicationRunner.METRIC_NAMES.length; m++) {
+            b.append('\t').append(ReplicationRunner.METRIC_NAMES[m]).append("\t+/-");
+        }
+        out.write(b.append('\n').toString());
+        out.flush();
+
+        float[][][] results = new float[points][seeds.length][];
+        int[] finished = new int[points];
+        int nextPoint = 0;	//The first point that has not been written.
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            CompletionService<Run> completion = new ExecutorCompletionService<Run>(pool);
+            for (int p = 0; p < points; p++) {
+                for (int s = 0; s < seeds.length; s++) {
+                    completion.submit(new Run(p, s));
+                }
+            }
+            for (int k = 0; k < points * seeds.length;) {
+                //Wait for the next simulation, but check for a cancel every 100ms.
+                if ((control != null) && control.isCancelled()) {
+                    break;
+                }
+                Future<Run> done = completion.poll(100, TimeUnit.MILLISECONDS);
+                if (done == null) {
+                    continue;
+                }
+                Run run = done.get();
+                k++;
+                results[run.point][run.seed] = run.result;
+                finished[run.point]++;
+                while ((nextPoint < points) && (finished[nextPoint] == seeds.length)) {
+                    writePoint(out, nextPoint, results[nextPoint]);
+                    results[nextPoint] = null;
+                    nextPoint++;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    //Reads each configuration file once and checks that all the parameters exist.
+    private void loadScenarios() throws IOException, ConfigurationException {
+        List<String> files = new ArrayList<String>();
+        int c = names.indexOf(CONFIG);
+        if (c == -1) {
+            files.add(config);
+        } else {
+            for (int i = 0; i < values.get(c).length; i++) {
+                files.add(values.get(c)[i]);
+            }
+        }
+        for (int i = 0; i < files.size(); i++) {
+            scenarios.put(files.get(i), Scenario.load(files.get(i)));
+        }
+        Scenario.Builder b = scenarios.get(files.get(0)).toBuilder();
+        for (int i = 0; i < names.size(); i++) {
+            if (i != c) {
+                for (int j = 0; j < values.get(i).length; j++) {
+                    b.setParameter(names.get(i), values.get(i)[j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the scenario of a point, by changing the values of the parameters in the scenario of the
+     * configuration file. The nodes of the scenario are shared, not copied.
+     * @param point The index of the point.
+     * @return The scenario.
+     */
+    Scenario createScenario(int point) {
+        String[] p = getPoint(point);
+        int c = names.indexOf(CONFIG);
+        Scenario.Builder b = scenarios.get(c == -1 ? config : p[c]).toBuilder();
+        for (int i = 0; i < names.size(); i++) {
+            if (i != c) {
+                b.setParameter(names.get(i), p[i]);
+            }
+        }
+        return b.build();
+    }
+
+    private void writePoint(Writer out, int point, float[][] results) throws IOException {
+        StringBuilder b = new StringBuilder();
+        b.append(point);
+        String[] p = getPoint(point);
+        for (int i = 0; i < p.length; i++) {
+            b.append('\t').append(p[i]);
+        }
+        for (int m = 0; m < ReplicationRunner.METRIC_NAMES.length; m++) {
+            double[] v = new double[results.length];
+            for (int s = 0; s < results.length; s++) {
+                v[s] = results[s][m];
+            }
+            ReplicationRunner.Metric metric = new ReplicationRunner.Metric(ReplicationRunner.METRIC_NAMES[m], v);
+            b.append('\t').append(metric.getMean()).append('\t').append(metric.getConfidence());
+        }
+        out.write(b.append('\n').toString());
+        out.flush();
+    }
+
+    /**
+     * A simulation of a point with one of the seeds.
+     */
+    private class Run implements Callable<Run> {
+
+        private int point;
+        private int seed;	//The index of the seed.
+        private float[] result = null;
+
+        public Run(int point, int seed) {
+            this.point = point;
+            this.seed = seed;
+        }
+
+        public Run call() {
+            Simulator sim = new Simulator();
+            sim.setSeed(seeds[seed]);
+            sim.setEventDriven(eventDriven);
+            sim.confParams(createScenario(point));
+            sim.setOutResults("");
+            sim.setCurrentStrategy(strategy);
+            sim.setControl(control);
+            result = ReplicationRunner.simulate(sim);
+            return this;
+        }
+    }
+
+    /**
+     * Reads a sweep from a file. See the description of the class for the format.
+     * @param file The sweep file.
+     * @return The sweep.
+     * @throws IOException If the file cannot be read.
+     */
+    public static ParameterSweep load(String file) throws IOException {
+        ParameterSweep sweep = new ParameterSweep();
+        BufferedReader in = new BufferedReader(new FileReader(file));
+        try {
+            String line = null;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if ((line.length() == 0) || line.startsWith("#")) {
+                    continue;
+                }
+                int eq = line.indexOf('=');
+                if (eq == -1) {
+                    throw new IOException("Invalid line in the sweep file: " + line);
+                }
+                String name = line.substring(0, eq).trim();
+                String[] v = parseValues(line.substring(eq + 1));
+                if (name.equals("seeds")) {
+                    int[] seeds = new int[v.length];
+                    for (int i = 0; i < v.length; i++) {
+                        seeds[i] = Integer.parseInt(v[i]);
+                    }
+                    sweep.setSeeds(seeds);
+                } else if (name.equals("threads")) {
+                    sweep.setThreads(Integer.parseInt(v[0]));
+                } else if (name.equals("strategy")) {
+                    sweep.setStrategy(Integer.parseInt(v[0]));
+                } else if (name.equals("eventDriven")) {
+                    sweep.setEventDriven(Boolean.parseBoolean(v[0]));
+                } else {
+                    sweep.addParameter(name, v);
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid number in the sweep file: " + e.getMessage(), e);
+        } finally {
+            in.close();
+        }
+        return sweep;
+    }
+
+    //Splits a comma separated list of values and expands the integer ranges.
+    static String[] parseValues(String list) {
+        List<String> v = new ArrayList<String>();
+        String[] items = list.split(",");
+        for (int i = 0; i < items.length; i++) {
+            String item = items[i].trim();
+            int dots = item.indexOf("..");
+            if (dots == -1) {
+                v.add(item);
+                continue;
+            }
+            int colon = item.indexOf(':', dots);
+            int from = Integer.parseInt(item.substring(0, dots).trim());
+            int to = Integer.parseInt(item.substring(dots + 2, colon == -1 ? item.length() : colon).trim());
+            int step = (colon == -1) ? 1 : Integer.parseInt(item.substring(colon + 1).trim());
+            if (step <= 0) {
+                throw new NumberFormatException("The step of " + item + " must be positive");
+            }
+            for (int x = from; x <= to; x += step) {
+                v.add(String.valueOf(x));
+            }
+        }
+        return v.toArray(new String[v.size()]);
+    }
+
+    /**
+     * Runs a sweep file.
+     * @param args The sweep file and, optionally, the output file. By default the results are written to the
+     * standard output.
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: java src.pamvotis.core.ParameterSweep sweepFile [outputFile]");
+            System.exit(1);
+        }
+        try {
+            ParameterSweep sweep = load(args[0]);
+            Writer out = (args.length > 1) ? new FileWriter(args[1]) : new PrintWriter(new OutputStreamWriter(System.out));
+            try {
+                sweep.run(out);
+            } finally {
+                out.close();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -1,10 +1,14 @@
 package src.pamvotis.core;
 
+import java.io.Serializable;
+
 /**
  * Contains the parameters of a node, like coverage, position, data rate e.t.c
  * @author Dimitris El. Vassis
  */
-public class Params {
+public class Params implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 	
 	int id; //The ID if the node
 	int rate;	//The data rate (bits/s)
@@ -0,0 +1,104 @@
+package src.pamvotis.core;
+
+import java.util.Random;
+
+/**
+ * A fast random number generator, based on the SplitMix64 algorithm. Unlike java.util.Random, which it extends
+ * so that it can be used wherever a Random is expected, it is not synchronized and it produces 64 random bits
+ * with a few arithmetic operations.
+ * <p>
+ * A stream can be split into independent streams, each identified by a key. The seed of a split stream depends
+ * only on the seed of the parent stream and on the key, not on how many numbers the parent has generated or on
+ * the order the streams are split. The simulator derives a stream for each node and for each source of a node
+ * from the seed of the simulation, so the results are the same however the nodes and the sources are
+ * created or processed.
+ * <p>
+ * A stream must be used by one thread at a time.
+ * @see Simulator#getRandomStream()
+ */
+public class RandomStream extends Random {
+
+    private static final long serialVersionUID = 1L;
+    private static final long GAMMA = 0x9e3779b97f4a7c15L;	//The increment of the state (the golden ratio).
+    private static final float FLOAT_UNIT = 1.0f / (1 << 24);
+    private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+    private long origin;	//The seed of the stream. The split streams are derived from it.
+    private long state;	//The state of the generator.
+
+    /**
+     * Creates a stream.
+     * @param seed The seed of the stream.
+     */
+    public RandomStream(long seed) {
+        super(seed);	//Calls setSeed
+    }
+
+    /**
+     * Restarts the stream from a seed.
+     * @param seed The seed of the stream.
+     */
+    public void setSeed(long seed) {
+        origin = seed;
+        state = seed;
+    }
+
+    /**
+     * Creates a stream that is independent of this stream and of the streams split with other keys.
+     * The state of this stream is not affected.
+     * @param key The key of the stream, e.g. the ID of a node.
+     * @return A new stream, which is always the same for the same seed and key.
+     */
+    public RandomStream split(long key) {
+        return new RandomStream(mix(origin ^ mix(key * GAMMA + GAMMA)));
+    }
+
+    //The finalizer of SplitMix64 (variant 13 of the MurmurHash3 finalizer).
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    public long nextLong() {
+        state += GAMMA;
+        return mix(state);
+    }
+
+    protected int next(int bits) {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+
+    public int nextInt() {
+        return (int) (nextLong() >>> 32);
+    }
+
+    /**
+     * Returns a uniformly distributed int between 0 (inclusive) and bound (exclusive). Like java.util.Random,
+     * the values that would make the distribution uneven are rejected.
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive");
+        }
+        int r = (int) (nextLong() >>> 33);
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            return (int) ((bound * (long) r) >> 31);
+        }
+        for (int u = r; u - (r = u % bound) + m < 0; u = (int) (nextLong() >>> 33)) {
+        }
+        return r;
+    }
+
+    public boolean nextBoolean() {
+        return nextLong() < 0;
+    }
+
+    public float nextFloat() {
+        return (nextLong() >>> 40) * FLOAT_UNIT;
+    }
+
+    public double nextDouble() {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+}
@@ -0,0 +1,284 @@
+package src.pamvotis.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import src.pamvotis.exceptions.ConfigurationException;
+
+/**
+ * Runs many independent replications of the scenario of the "config/NtConf.xml" file in parallel, inside the
+ * same JVM. Each replication is a separate Simulator instance with a different seed. When all replications
+ * finish, the mean value of each statistic over all replications and its 95% confidence interval are reported,
+ * with the percentiles of the total delay of the packets of all replications.
+ * <p>
+ * The replications do not print any result files, except from the mean values file if the caller asks it.
+ * The configuration file is read once, for all the replications.
+ * @see Simulator#setSeed(int)
+ */
+public class ReplicationRunner {
+
+    /**
+     * The names of the statistics collected from each replication. They concern the whole system and the
+     * whole simulation.
+     */
+    public static final String[] METRIC_NAMES = {"Throughput (Kbits/s)", "Throughput (packets/s)",
+        "Utilization", "Media Access Delay (msec)", "Queuing Delay (msec)", "Total Packet Delay (msec)",
+        "Retransmission Attempts"};
+    //The 97.5% quantiles of the Student t distribution for 1 to 30 degrees of freedom.
+    private static final double[] T_QUANTILES = {12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306,
+        2.262, 2.228, 2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086, 2.080, 2.074,
+        2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042};
+    private int replications = 0;	//The number of replications.
+    private int firstSeed = 0;	//The seed of the first replication. Each next replication uses the next seed.
+    private int threads = Runtime.getRuntime().availableProcessors();	//The number of replications that run in parallel.
+    private int strategy = -1;	//The backoff strategy used by all replications.
+    private boolean eventDriven = false;	//If true, the replications use the event-driven engine.
+    private SimulationControl control = null;	//Pauses, cancels or limits all replications.
+    private Metric[] metrics = null;	//The results of the last run.
+    private DelayHistogram delays = null;	//The total delays of the packets of the last run, in slots.
+    private float slotMsec = 0;	//The duration of a slot in msec.
+
+    /**
+     * Creates a runner for a number of replications.
+     * @param replications The number of replications.
+     * @param firstSeed The seed of the first replication. Replication i uses the seed firstSeed+i.
+     */
+    public ReplicationRunner(int replications, int firstSeed) {
+        this.replications = replications;
+        this.firstSeed = firstSeed;
+    }
+
+    /**
+     * Runs all replications and waits for them to finish.
+     * @return The statistics, in the order of METRIC_NAMES.
+     * @throws IOException If the configuration file cannot be read.
+     * @throws ConfigurationException If the configuration file is not valid.
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     * @throws ExecutionException If a replication fails.
+     */
+    public Metric[] run() throws IOException, ConfigurationException, InterruptedException, ExecutionException {
+        Scenario scenario = Scenario.load("config" + File.separator + "NtConf.xml");
+        double[][] values = new double[METRIC_NAMES.length][replications];
+        delays = new DelayHistogram();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<Callable<float[]>> tasks = new ArrayList<Callable<float[]>>();
+            for (int r = 0; r < replications; r++) {
+                tasks.add(new Replication(scenario, firstSeed + r));
+            }
+            List<Future<float[]>> results = pool.invokeAll(tasks);
+            for (int r = 0; r < replications; r++) {
+                float[] result = results.get(r).get();
+                for (int m = 0; m < METRIC_NAMES.length; m++) {
+                    values[m][r] = result[m];
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        metrics = new Metric[METRIC_NAMES.length];
+        for (int m = 0; m < METRIC_NAMES.length; m++) {
+            metrics[m] = new Metric(METRIC_NAMES[m], values[m]);
+        }
+        return metrics;
+    }
+
+    /**
+     * @return The mean value and the 95% confidence interval of each statistic of the last run, one per line.
+     * @throws IllegalStateException If run() has not been called.
+     */
+    public String report() {
+        if (metrics == null) {
+            throw new IllegalStateException("run() has not been called");
+        }
+        String report = "Statistic\tMean\t95% Confidence Interval\n";
+        for (int m = 0; m < metrics.length; m++) {
+            report += metrics[m].getName() + "\t" + metrics[m].getMean() + "\t+/- " + metrics[m].getConfidence() + "\n";
+        }
+        for (int p = 0; p < Simulator.PERCENTILES.length; p++) {
+            report += "Total Packet Delay p" + Simulator.PERCENTILE_NAMES[p] + " (msec)\t"
+                    + delays.getValueAtPercentile(Simulator.PERCENTILES[p]) * slotMsec + "\n";
+        }
+        return report;
+    }
+
+    /**
+     * @return The histogram of the total delay of the packets of all nodes and all replications of the last
+     * run, in slots.
+     * @see Simulator#getMeanSysDelayHistogram(int)
+     */
+    public DelayHistogram getDelayHistogram() {
+        return delays;
+    }
+
+    /**
+     * @param threads The number of replications that run in parallel. By default it is the number of processors.
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @param strategy The backoff strategy used by all replications.
+     * @see Simulator#setCurrentStrategy(int)
+     */
+    public void setStrategy(int strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * @param eventDriven True for running the replications with the event-driven engine.
+     * @see Simulator#setEventDriven(boolean)
+     */
+    public void setEventDriven(boolean eventDriven) {
+        this.eventDriven = eventDriven;
+    }
+
+    /**
+     * Sets a control for pausing, cancelling or limiting all replications from another thread. The statistics
+     * of the replications that are stopped concern only the time simulated.
+     * @param control The control, or null for no control.
+     * @see Simulator#setControl(SimulationControl)
+     */
+    public void setControl(SimulationControl control) {
+        this.control = control;
+    }
+
+    /**
+     * A single replication.
+     * @see #simulate(Simulator)
+     */
+    private class Replication implements Callable<float[]> {
+
+        private Scenario scenario;
+        private int seed;
+
+        public Replication(Scenario scenario, int seed) {
+            this.scenario = scenario;
+            this.seed = seed;
+        }
+
+        public float[] call() {
+            Simulator sim = new Simulator();
+            sim.setSeed(seed);
+            sim.setEventDriven(eventDriven);
+            sim.confParams(scenario);
+            sim.setOutResults("");
+            sim.setCurrentStrategy(strategy);
+            sim.setControl(control);
+            float[] result = simulate(sim);
+            synchronized (ReplicationRunner.this) {
+                delays.add(sim.getMeanSysDelayHistogram(Simulator.TOTAL_DELAY));
+                slotMsec = sim.toMsec(1);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Simulates the whole duration of a configured scenario, splitted in the configured number of intervals,
+     * exactly like the interface does. It stops earlier if the simulation is stopped by its control.
+     * @param sim The simulator, after confParams().
+     * @return The statistics, in the order of METRIC_NAMES.
+     */
+    static float[] simulate(Simulator sim) {
+        int values = sim.getValues();
+        int interval = (int) (sim.getDuration() * 1000 / values);
+        int modInterval = (int) ((sim.getDuration() * 1000) % values);
+        int j = 0;
+        for (int i = 1; i <= values; i++) {
+            if (i != values) {
+                sim.simulate(j + 1, j + interval);
+            } else {
+                sim.simulate(j + 1, j + interval + modInterval);
+            }
+            if (sim.isStopped()) {
+                break;
+            }
+            j += interval;
+        }
+        return new float[]{sim.getMeanSysThrBps(), sim.getMeanSysThrPkts(), sim.getMeanSysUtil(),
+                    sim.getMeanMDelay(), sim.getMeanQDelay(), sim.getMeanDelay(), sim.getMeanRatts()};
+    }
+
+    /**
+     * The values of a statistic in all replications.
+     */
+    public static class Metric {
+
+        private String name = null;
+        private double[] values = null;
+
+        public Metric(String name, double[] values) {
+            this.name = name;
+            this.values = values;
+        }
+
+        /**
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The value of the statistic in each replication.
+         */
+        public double[] getValues() {
+            return values;
+        }
+
+        /**
+         * @return The mean value over all replications.
+         */
+        public double getMean() {
+            double sum = 0;
+            for (int i = 0; i < values.length; i++) {
+                sum += values[i];
+            }
+            return sum / values.length;
+        }
+
+        /**
+         * @return The sample standard deviation over all replications.
+         */
+        public double getStdDev() {
+            if (values.length < 2) {
+                return 0;
+            }
+            double mean = getMean();
+            double sum = 0;
+            for (int i = 0; i < values.length; i++) {
+                sum += (values[i] - mean) * (values[i] - mean);
+            }
+            return Math.sqrt(sum / (values.length - 1));
+        }
+
+        /**
+         * @return The half width of the 95% confidence interval of the mean value.
+         */
+        public double getConfidence() {
+            int df = values.length - 1;
+            if (df < 1) {
+                return 0;
+            }
+            double t = 1.960;
+            if (df <= T_QUANTILES.length) {
+                t = T_QUANTILES[df - 1];
+            } else if (df <= 40) {
+                t = 2.021;
+            } else if (df <= 60) {
+                t = 2.000;
+            } else if (df <= 120) {
+                t = 1.980;
+            }
+            return t * getStdDev() / Math.sqrt(values.length);
+        }
+    }
+}
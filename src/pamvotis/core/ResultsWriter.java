@@ -0,0 +1,145 @@
+package src.pamvotis.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * Writes the statistic result files of a simulation. Each file is opened once and stays open for the whole
+ * run, instead of being opened and closed after every simulation interval. The rows are formatted in a
+ * buffer that is reused and they are written to the file in large batches.
+ * <p>
+ * A row is written by appending its text to the buffer returned by row() and then calling endRow().
+ * The files are written to disk when the buffer is full and when flush() or close() is called.
+ * @see Simulator#printStats()
+ */
+public class ResultsWriter {
+
+    private static final int BATCH_SIZE = 64 * 1024;	//The number of characters gathered before writing to the file.
+    private String path = null;	//The directory of the result files.
+    private HashMap<String, Channel> channels = new HashMap<String, Channel>();	//The open files, by file name.
+
+    /**
+     * Sets the directory of the result files. If it changes, the open files are closed.
+     * @param path The directory of the result files.
+     * @throws IOException If an open file cannot be written.
+     */
+    public void setPath(String path) throws IOException {
+        if ((this.path != null) && (this.path.equals(path) == false)) {
+            close();
+        }
+        this.path = path;
+    }
+
+    /**
+     * Creates a result file, or empties it if it exists, in order to write its headers.
+     * @param name The name of the file, e.g. "Throughput_bits.txt".
+     * @return The buffer where the headers should be appended.
+     * @throws IOException If the file cannot be created.
+     */
+    public StringBuilder header(String name) throws IOException {
+        Channel channel = channels.remove(name);
+        if (channel != null) {
+            channel.close();
+        }
+        channel = new Channel(new File(path, name), false);
+        channels.put(name, channel);
+        return channel.buffer;
+    }
+
+    /**
+     * Starts a new row of a result file. If the file is not open, it is opened and the row is added to its end.
+     * @param name The name of the file, e.g. "Throughput_bits.txt".
+     * @return The buffer where the row should be appended.
+     * @throws IOException If the file cannot be opened.
+     */
+    public StringBuilder row(String name) throws IOException {
+        Channel channel = channels.get(name);
+        if (channel == null) {
+            channel = new Channel(new File(path, name), true);
+            channels.put(name, channel);
+        }
+        return channel.buffer;
+    }
+
+    /**
+     * Ends the row of a result file. The buffer is written to the file only if it is full.
+     * @param name The name of the file.
+     * @throws IOException If the file cannot be written.
+     */
+    public void endRow(String name) throws IOException {
+        Channel channel = channels.get(name);
+        if (channel.buffer.length() >= BATCH_SIZE) {
+            channel.flush();
+        }
+    }
+
+    /**
+     * Writes the rows of all files to disk. The files stay open.
+     * @throws IOException If a file cannot be written.
+     */
+    public void flush() throws IOException {
+        for (Channel channel : channels.values()) {
+            channel.flush();
+        }
+    }
+
+    /**
+     * Writes the rows of all files to disk and closes them. If more rows are written later, the files
+     * are opened again and the rows are added to their end.
+     * @throws IOException If a file cannot be written.
+     */
+    public void close() throws IOException {
+        IOException error = null;
+        for (Iterator<Channel> it = channels.values().iterator(); it.hasNext();) {
+            try {
+                it.next().close();
+            } catch (IOException e) {
+                error = e;
+            }
+            it.remove();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * An open result file with its buffer.
+     */
+    private static class Channel {
+
+        private Writer writer = null;
+        private StringBuilder buffer = new StringBuilder(BATCH_SIZE + 1024);
+        private char[] chars = new char[0];	//Used for copying the buffer to the writer.
+
+        public Channel(File file, boolean append) throws IOException {
+            writer = new OutputStreamWriter(new FileOutputStream(file, append));
+        }
+
+        public void flush() throws IOException {
+            int length = buffer.length();
+            if (length > 0) {
+                if (chars.length < length) {
+                    chars = new char[length];
+                }
+                buffer.getChars(0, length, chars, 0);
+                writer.write(chars, 0, length);
+                buffer.setLength(0);
+            }
+            writer.flush();
+        }
+
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                writer.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,829 @@
+package src.pamvotis.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import src.pamvotis.exceptions.ConfigurationException;
+import src.pamvotis.exceptions.UnknownDistributionException;
+import src.pamvotis.sources.FTPSource;
+import src.pamvotis.sources.GenericSource;
+import src.pamvotis.sources.HTTPSource;
+import src.pamvotis.sources.Source;
+import src.pamvotis.sources.VideoSource;
+
+/**
+ * The network configuration of a simulation: the system parameters, the 802.11e parameters and the nodes with
+ * their sources. It holds the same information as the "config/NtConf.xml" file, which is just one way to create
+ * it (see load). A scenario is immutable, so it can be shared by many simulations, e.g. by the replications
+ * of a sweep. Scenarios are created with a Builder and a scenario with some changes is created cheaply with
+ * toBuilder(), as the nodes are shared and not copied.
+ * <p>
+ * The sources of the nodes keep the state of the traffic generation, so the scenario keeps the parameters of
+ * each source (see SourceConfig) and the simulator creates new sources from them.
+ * @see Simulator#confParams(Scenario)
+ */
+public final class Scenario {
+
+    private final int seed;
+    private final int duration;
+    private final int values;
+    private final int mixNodes;
+    private final int rtsThr;
+    private final char ctsToSelf;
+    private final char phyLayer;
+    private final String resultsPath;
+    private final String outResults;
+    private final int resultsFormat;
+    private final int[] cwMinFact;
+    private final int[] cwMaxFact;
+    private final int[] aifs;
+    private final List<Node> nodes;
+
+    private Scenario(Builder b) {
+        seed = b.seed;
+        duration = b.duration;
+        values = b.values;
+        mixNodes = b.mixNodes;
+        rtsThr = b.rtsThr;
+        ctsToSelf = b.ctsToSelf;
+        phyLayer = b.phyLayer;
+        resultsPath = b.resultsPath;
+        outResults = b.outResults;
+        resultsFormat = b.resultsFormat;
+        cwMinFact = b.cwMinFact.clone();
+        cwMaxFact = b.cwMaxFact.clone();
+        aifs = b.aifs.clone();
+        nodes = Collections.unmodifiableList(new ArrayList<Node>(b.nodes));
+    }
+
+    /**
+     * Reads a scenario from a network configuration file. Each file is parsed once, unless it is modified.
+     * @param file The path of the file, e.g. "config/NtConf.xml".
+     * @return The scenario.
+     * @throws java.io.IOException If the file cannot be read or it is not a well formed XML file.
+     * @throws ConfigurationException If a parameter is missing or invalid.
+     * @see ScenarioLoader
+     */
+    public static Scenario load(String file) throws java.io.IOException, ConfigurationException {
+        return ScenarioLoader.load(file);
+    }
+
+    /**
+     * @return A builder with the values of this scenario.
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    /**
+     * @return The seed of the random number generator.
+     */
+    public int getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return The duration of the simulation in seconds.
+     */
+    public int getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return The number of simulation intervals (values collected).
+     */
+    public int getValues() {
+        return values;
+    }
+
+    /**
+     * @return The number of 802.11b compliant nodes (only in mixed 802.11b/g).
+     */
+    public int getMixNodes() {
+        return mixNodes;
+    }
+
+    /**
+     * @return The RTS threshold in bits.
+     */
+    public int getRtsThr() {
+        return rtsThr;
+    }
+
+    /**
+     * @return 'y' if CTS-to-self is used, 'n' otherwise.
+     */
+    public char getCtsToSelf() {
+        return ctsToSelf;
+    }
+
+    /**
+     * @return The physical layer: 's' for simple 802.11, 'a', 'b', 'g' or 'm' for mixed 802.11b/g.
+     */
+    public char getPhyLayer() {
+        return phyLayer;
+    }
+
+    /**
+     * @return The path of the result files.
+     */
+    public String getResultsPath() {
+        return resultsPath;
+    }
+
+    /**
+     * @return The results the user chose.
+     * @see Simulator#setOutResults(String)
+     */
+    public String getOutResults() {
+        return outResults;
+    }
+
+    /**
+     * @return The formats of the results (Simulator.TEXT_RESULTS, Simulator.BINARY_RESULTS or both).
+     */
+    public int getResultsFormat() {
+        return resultsFormat;
+    }
+
+    /**
+     * @param ac The access category, 0 to 3.
+     * @return The factor of the minimum contention window of the access category.
+     */
+    public int getCwMinFact(int ac) {
+        return cwMinFact[ac];
+    }
+
+    /**
+     * @param ac The access category, 0 to 3.
+     * @return The factor of the maximum contention window of the access category.
+     */
+    public int getCwMaxFact(int ac) {
+        return cwMaxFact[ac];
+    }
+
+    /**
+     * @param ac The access category, 0 to 3.
+     * @return The AIFS of the access category, in slots after the SIFS.
+     */
+    public int getAifs(int ac) {
+        return aifs[ac];
+    }
+
+    /**
+     * @return The nodes, in the order they are added to the simulation. The list cannot be modified.
+     */
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * A node of a scenario, with its sources. Immutable.
+     */
+    public static final class Node {
+
+        private final int id;
+        private final int rate;
+        private final int coverage;
+        private final int xPosition;
+        private final int yPosition;
+        private final int ac;
+        private final List<SourceConfig> sources;
+
+        /**
+         * Creates a node with no sources.
+         * @param id The ID of the node.
+         * @param rate The data rate of the node.
+         * @param coverage The coverage of the node.
+         * @param xPosition The x-axis coordinate.
+         * @param yPosition The y-axis coordinate.
+         * @param ac The 802.11e access category.
+         */
+        public Node(int id, int rate, int coverage, int xPosition, int yPosition, int ac) {
+            this(id, rate, coverage, xPosition, yPosition, ac, Collections.<SourceConfig>emptyList());
+        }
+
+        private Node(int id, int rate, int coverage, int xPosition, int yPosition, int ac, List<SourceConfig> sources) {
+            this.id = id;
+            this.rate = rate;
+            this.coverage = coverage;
+            this.xPosition = xPosition;
+            this.yPosition = yPosition;
+            this.ac = ac;
+            this.sources = sources;
+        }
+
+        /**
+         * @param source A source.
+         * @return A copy of the node with the source added after the other sources.
+         */
+        public Node withSource(SourceConfig source) {
+            List<SourceConfig> s = new ArrayList<SourceConfig>(sources);
+            s.add(source);
+            return new Node(id, rate, coverage, xPosition, yPosition, ac, Collections.unmodifiableList(s));
+        }
+
+        //A copy of the node with the source at a position replaced.
+        Node withSource(int position, SourceConfig source) {
+            List<SourceConfig> s = new ArrayList<SourceConfig>(sources);
+            s.set(position, source);
+            return new Node(id, rate, coverage, xPosition, yPosition, ac, Collections.unmodifiableList(s));
+        }
+
+        //A copy of the node with a parameter changed.
+        Node with(String name, int value) {
+            if (name.equals("rate")) {
+                return new Node(id, value, coverage, xPosition, yPosition, ac, sources);
+            } else if (name.equals("coverage")) {
+                return new Node(id, rate, value, xPosition, yPosition, ac, sources);
+            } else if (name.equals("xPosition")) {
+                return new Node(id, rate, coverage, value, yPosition, ac, sources);
+            } else if (name.equals("yPosition")) {
+                return new Node(id, rate, coverage, xPosition, value, ac, sources);
+            } else {
+                return new Node(id, rate, coverage, xPosition, yPosition, value, sources);
+            }
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public int getRate() {
+            return rate;
+        }
+
+        public int getCoverage() {
+            return coverage;
+        }
+
+        public int getXPosition() {
+            return xPosition;
+        }
+
+        public int getYPosition() {
+            return yPosition;
+        }
+
+        public int getAc() {
+            return ac;
+        }
+
+        /**
+         * @return The sources of the node. The list cannot be modified.
+         */
+        public List<SourceConfig> getSources() {
+            return sources;
+        }
+    }
+
+    /**
+     * The parameters of a source of a node. Immutable. Each simulation creates its own source from it.
+     */
+    public abstract static class SourceConfig {
+
+        private final int id;
+
+        protected SourceConfig(int id) {
+            this.id = id;
+        }
+
+        /**
+         * @return The ID of the source.
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Creates a source with these parameters. Must be called after the simulator is configured, because
+         * the source uses the context of the simulation (see SimulationContext.current()).
+         * @return A new source.
+         * @throws ConfigurationException If the parameters are invalid.
+         */
+        public abstract Source create() throws ConfigurationException;
+
+        /**
+         * @return The parameters of the source, by the names of their elements in the network configuration
+         * file, with the ID and the type of the source.
+         */
+        abstract Map<String, String> parameters();
+
+        //The parameters of all sources: the ID and the type.
+        Map<String, String> parameters(String type) {
+            Map<String, String> p = new HashMap<String, String>();
+            p.put("id", Integer.toString(id));
+            p.put("type", type);
+            return p;
+        }
+
+        //A copy of the source with a parameter changed, or null if the source has no such parameter.
+        SourceConfig with(String name, String value) {
+            Map<String, String> p = parameters();
+            if ((p.containsKey(name) == false) || name.equals("id") || name.equals("type")) {
+                return null;
+            }
+            p.put(name, value);
+            try {
+                return ScenarioLoader.createSource(p);
+            } catch (ConfigurationException e) {
+                throw new IllegalArgumentException("Invalid value " + value + " for the parameter " + name);
+            }
+        }
+    }
+
+    /**
+     * The parameters of a generic source.
+     * @see GenericSource
+     */
+    public static final class GenericSourceConfig extends SourceConfig {
+
+        private final char intArrDstr;
+        private final float rate;
+        private final char pktLngthDstr;
+        private final float pktLength;
+
+        /**
+         * @param id The ID of the source.
+         * @param intArrDstr The packet interarrival time distribution.
+         * @param rate The packet generation rate (packets/sec).
+         * @param pktLngthDstr The packet length distribution.
+         * @param pktLength The packet length (bits).
+         */
+        public GenericSourceConfig(int id, char intArrDstr, float rate, char pktLngthDstr, float pktLength) {
+            super(id);
+            this.intArrDstr = intArrDstr;
+            this.rate = rate;
+            this.pktLngthDstr = pktLngthDstr;
+            this.pktLength = pktLength;
+        }
+
+        public Source create() throws ConfigurationException {
+            try {
+                return new GenericSource(getId(), intArrDstr, rate, pktLngthDstr, pktLength);
+            } catch (UnknownDistributionException ex) {
+                throw new ConfigurationException("The packet length or/and the packet interarrival time distribution(s) you have configured are invalid. Only 'c','u' and 'e' are allowed.");
+            }
+        }
+
+        Map<String, String> parameters() {
+            Map<String, String> p = parameters("generic");
+            p.put("intArrDstr", String.valueOf(intArrDstr));
+            p.put("intArrTime", Float.toString(rate));
+            p.put("pktDist", String.valueOf(pktLngthDstr));
+            p.put("pktLngth", Float.toString(pktLength));
+            return p;
+        }
+    }
+
+    /**
+     * The parameters of an FTP source.
+     * @see FTPSource
+     */
+    public static final class FTPSourceConfig extends SourceConfig {
+
+        private final int pktSize;
+        private final float fileSizeMean;
+        private final float fileSizeStDev;
+        private final float fileSizeMax;
+        private final float readingTime;
+
+        /**
+         * @param id The ID of the source.
+         * @param pktSize The packet size in bits.
+         * @param fileSizeMean The mean file size in Bytes.
+         * @param fileSizeStDev The standard deviation of the file size in Bytes.
+         * @param fileSizeMax The maximum file size in Bytes.
+         * @param readingTime The reading time in seconds.
+         */
+        public FTPSourceConfig(int id, int pktSize, float fileSizeMean, float fileSizeStDev, float fileSizeMax,
+                float readingTime) {
+            super(id);
+            this.pktSize = pktSize;
+            this.fileSizeMean = fileSizeMean;
+            this.fileSizeStDev = fileSizeStDev;
+            this.fileSizeMax = fileSizeMax;
+            this.readingTime = readingTime;
+        }
+
+        public Source create() {
+            return new FTPSource(getId(), pktSize, fileSizeMean, fileSizeStDev, fileSizeMax, readingTime);
+        }
+
+        Map<String, String> parameters() {
+            Map<String, String> p = parameters("ftp");
+            p.put("pktSize", Integer.toString(pktSize));
+            p.put("fileSizeMean", Float.toString(fileSizeMean));
+            p.put("fileSizeStDev", Float.toString(fileSizeStDev));
+            p.put("fileSizeMax", Float.toString(fileSizeMax));
+            p.put("readingTime", Float.toString(readingTime));
+            return p;
+        }
+    }
+
+    /**
+     * The parameters of a video source.
+     * @see VideoSource
+     */
+    public static final class VideoSourceConfig extends SourceConfig {
+
+        private final int frameRate;
+        private final int packetsPerFrame;
+        private final float pktSize;
+        private final float pktSizeMax;
+        private final float pktIntArr;
+        private final float pktIntArrMax;
+
+        /**
+         * @param id The ID of the source.
+         * @param frameRate The video frame rate in frames/sec.
+         * @param packetsPerFrame The packets of a frame.
+         * @param pktSize The average size of each packet in bits.
+         * @param pktSizeMax The maximum size of each packet in bits.
+         * @param pktIntArr The average packet interarrival time in seconds.
+         * @param pktIntArrMax The maximum packet interarrival time in seconds.
+         */
+        public VideoSourceConfig(int id, int frameRate, int packetsPerFrame, float pktSize, float pktSizeMax,
+                float pktIntArr, float pktIntArrMax) {
+            super(id);
+            this.frameRate = frameRate;
+            this.packetsPerFrame = packetsPerFrame;
+            this.pktSize = pktSize;
+            this.pktSizeMax = pktSizeMax;
+            this.pktIntArr = pktIntArr;
+            this.pktIntArrMax = pktIntArrMax;
+        }
+
+        public Source create() {
+            return new VideoSource(getId(), frameRate, packetsPerFrame, pktSize, pktSizeMax, pktIntArr, pktIntArrMax);
+        }
+
+        Map<String, String> parameters() {
+            Map<String, String> p = parameters("video");
+            p.put("frameRate", Integer.toString(frameRate));
+            p.put("packetsPerFrame", Integer.toString(packetsPerFrame));
+            p.put("pktSize", Float.toString(pktSize));
+            p.put("pktSizeMax", Float.toString(pktSizeMax));
+            p.put("pktIntArr", Float.toString(pktIntArr));
+            p.put("pktIntArrMax", Float.toString(pktIntArrMax));
+            return p;
+        }
+    }
+
+    /**
+     * The parameters of an HTTP source.
+     * @see HTTPSource
+     */
+    public static final class HTTPSourceConfig extends SourceConfig {
+
+        private final int pktSize;
+        private final float mainObjectMean;
+        private final float mainObjectStDev;
+        private final float mainObjectMin;
+        private final float mainObjectMax;
+        private final float embObjectMean;
+        private final float embObjectStDev;
+        private final float embObjectMin;
+        private final float embObjectMax;
+        private final float numOfEmbObjectsMean;
+        private final float numOfEmbObjectsMax;
+        private final float readingTime;
+        private final float parsingTime;
+
+        /**
+         * The parameters are those of the HTTPSource constructor.
+         * @see HTTPSource#HTTPSource(int, int, float, float, float, float, float, float, float, float, float, float, float, float)
+         */
+        public HTTPSourceConfig(int id, int pktSize, float mainObjectMean, float mainObjectStDev, float mainObjectMin,
+                float mainObjectMax, float embObjectMean, float embObjectStDev, float embObjectMin, float embObjectMax,
+                float numOfEmbObjectsMean, float numOfEmbObjectsMax, float readingTime, float parsingTime) {
+            super(id);
+            this.pktSize = pktSize;
+            this.mainObjectMean = mainObjectMean;
+            this.mainObjectStDev = mainObjectStDev;
+            this.mainObjectMin = mainObjectMin;
+            this.mainObjectMax = mainObjectMax;
+            this.embObjectMean = embObjectMean;
+            this.embObjectStDev = embObjectStDev;
+            this.embObjectMin = embObjectMin;
+            this.embObjectMax = embObjectMax;
+            this.numOfEmbObjectsMean = numOfEmbObjectsMean;
+            this.numOfEmbObjectsMax = numOfEmbObjectsMax;
+            this.readingTime = readingTime;
+            this.parsingTime = parsingTime;
+        }
+
+        public Source create() {
+            return new HTTPSource(getId(), pktSize, mainObjectMean, mainObjectStDev, mainObjectMin, mainObjectMax,
+                    embObjectMean, embObjectStDev, embObjectMin, embObjectMax, numOfEmbObjectsMean, numOfEmbObjectsMax,
+                    readingTime, parsingTime);
+        }
+
+        Map<String, String> parameters() {
+            Map<String, String> p = parameters("http");
+            p.put("pktSize", Integer.toString(pktSize));
+            p.put("mainObjectMean", Float.toString(mainObjectMean));
+            p.put("mainObjectStDev", Float.toString(mainObjectStDev));
+            p.put("mainObjectMin", Float.toString(mainObjectMin));
+            p.put("mainObjectMax", Float.toString(mainObjectMax));
+            p.put("embObjectMean", Float.toString(embObjectMean));
+            p.put("embObjectStDev", Float.toString(embObjectStDev));
+            p.put("embObjectMin", Float.toString(embObjectMin));
+            p.put("embObjectMax", Float.toString(embObjectMax));
+            p.put("NumOfEmbObjectsMean", Float.toString(numOfEmbObjectsMean));
+            p.put("NumOfEmbObjectsMax", Float.toString(numOfEmbObjectsMax));
+            p.put("readingTime", Float.toString(readingTime));
+            p.put("parsingTime", Float.toString(parsingTime));
+            return p;
+        }
+    }
+
+    /**
+     * Creates scenarios. A new builder has no nodes and the default values of the "config/NtConf.xml" file
+     * that comes with the application: seed 0, duration 1 sec, 1 value, simple 802.11, no RTS/CTS, no
+     * CTS-to-self, no results and the default 802.11e parameters.
+     */
+    public static final class Builder {
+
+        private int seed = 0;
+        private int duration = 1;
+        private int values = 1;
+        private int mixNodes = 0;
+        private int rtsThr = 999999;
+        private char ctsToSelf = 'n';
+        private char phyLayer = 's';
+        private String resultsPath = ".";
+        private String outResults = "";
+        private int resultsFormat = Simulator.TEXT_RESULTS;
+        private int[] cwMinFact = {1, 2, 4, 8};
+        private int[] cwMaxFact = {1, 4, 8, 16};
+        private int[] aifs = {2, 2, 1, 1};
+        private List<Node> nodes = new ArrayList<Node>();
+
+        public Builder() {
+        }
+
+        private Builder(Scenario s) {
+            seed = s.seed;
+            duration = s.duration;
+            values = s.values;
+            mixNodes = s.mixNodes;
+            rtsThr = s.rtsThr;
+            ctsToSelf = s.ctsToSelf;
+            phyLayer = s.phyLayer;
+            resultsPath = s.resultsPath;
+            outResults = s.outResults;
+            resultsFormat = s.resultsFormat;
+            cwMinFact = s.cwMinFact.clone();
+            cwMaxFact = s.cwMaxFact.clone();
+            aifs = s.aifs.clone();
+            nodes = new ArrayList<Node>(s.nodes);
+        }
+
+        public Builder setSeed(int seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public Builder setDuration(int duration) {
+            this.duration = duration;
+            return this;
+        }
+
+        public Builder setValues(int values) {
+            this.values = values;
+            return this;
+        }
+
+        public Builder setMixNodes(int mixNodes) {
+            this.mixNodes = mixNodes;
+            return this;
+        }
+
+        public Builder setRtsThr(int rtsThr) {
+            this.rtsThr = rtsThr;
+            return this;
+        }
+
+        public Builder setCtsToSelf(char ctsToSelf) {
+            this.ctsToSelf = ctsToSelf;
+            return this;
+        }
+
+        public Builder setPhyLayer(char phyLayer) {
+            this.phyLayer = phyLayer;
+            return this;
+        }
+
+        public Builder setResultsPath(String resultsPath) {
+            this.resultsPath = resultsPath;
+            return this;
+        }
+
+        public Builder setOutResults(String outResults) {
+            this.outResults = outResults;
+            return this;
+        }
+
+        public Builder setResultsFormat(int resultsFormat) {
+            this.resultsFormat = resultsFormat;
+            return this;
+        }
+
+        /**
+         * Sets the 802.11e parameters of an access category.
+         * @param ac The access category, 0 to 3.
+         * @param cwMinFact The factor of the minimum contention window.
+         * @param cwMaxFact The factor of the maximum contention window.
+         * @param aifs The AIFS, in slots after the SIFS.
+         * @return This builder.
+         */
+        public Builder setEdca(int ac, int cwMinFact, int cwMaxFact, int aifs) {
+            this.cwMinFact[ac] = cwMinFact;
+            this.cwMaxFact[ac] = cwMaxFact;
+            this.aifs[ac] = aifs;
+            return this;
+        }
+
+        /**
+         * Adds a node with no sources after the other nodes.
+         * @return This builder.
+         * @see Node#Node(int, int, int, int, int, int)
+         */
+        public Builder addNode(int id, int rate, int coverage, int xPosition, int yPosition, int ac) {
+            return addNode(new Node(id, rate, coverage, xPosition, yPosition, ac));
+        }
+
+        /**
+         * Adds a node after the other nodes.
+         * @param node The node.
+         * @return This builder.
+         */
+        public Builder addNode(Node node) {
+            nodes.add(node);
+            return this;
+        }
+
+        /**
+         * Adds a source to a node, after the other sources of the node.
+         * @param nodeId The ID of the node. If there are many nodes with this ID, the last one.
+         * @param source The source.
+         * @return This builder.
+         * @throws IllegalArgumentException If there is no node with this ID.
+         */
+        public Builder addSource(int nodeId, SourceConfig source) {
+            for (int i = nodes.size() - 1; i >= 0; i--) {
+                if (nodes.get(i).getId() == nodeId) {
+                    nodes.set(i, nodes.get(i).withSource(source));
+                    return this;
+                }
+            }
+            throw new IllegalArgumentException("There is no node with ID " + nodeId);
+        }
+
+        /**
+         * Removes the nodes with an ID.
+         * @param nodeId The ID of the node.
+         * @return This builder.
+         */
+        public Builder removeNode(int nodeId) {
+            for (int i = nodes.size() - 1; i >= 0; i--) {
+                if (nodes.get(i).getId() == nodeId) {
+                    nodes.remove(i);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Removes all nodes.
+         * @return This builder.
+         */
+        public Builder removeAllNodes() {
+            nodes.clear();
+            return this;
+        }
+
+        /**
+         * Sets a parameter by the name of its element in the network configuration file, e.g. RTSThr, phyLayer,
+         * cwMinFact0 or aifs2. The node parameters (rate, coverage, xPosition, yPosition and AC) are set for all
+         * nodes and the source parameters (e.g. intArrTime, pktLngth or fileSizeMean) for all the sources that
+         * have them. A node or source parameter can be set for one node by prefixing it with "node" and the ID
+         * of the node, e.g. node3.rate, and for one source by prefixing it with "source" and the ID of the
+         * source, e.g. node3.source1.intArrTime or source1.intArrTime (the source 1 of all nodes).
+         * @param name The name of the parameter.
+         * @param value The value, as written in the configuration file.
+         * @return This builder.
+         * @throws IllegalArgumentException If there is no such parameter or the value is not valid.
+         */
+        public Builder setParameter(String name, String value) {
+            int nodeId = -1;	//The node whose parameter is set, or -1 for all nodes.
+            int sourceId = -1;	//The source whose parameter is set, or -1 for all sources.
+            String param = name;
+            try {
+                if (param.startsWith("node") && (param.indexOf('.') > 4)) {
+                    nodeId = Integer.parseInt(param.substring(4, param.indexOf('.')));
+                    param = param.substring(param.indexOf('.') + 1);
+                }
+                if (param.startsWith("source") && (param.indexOf('.') > 6)) {
+                    sourceId = Integer.parseInt(param.substring(6, param.indexOf('.')));
+                    param = param.substring(param.indexOf('.') + 1);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("There is no parameter " + name);
+            }
+            try {
+                if ((nodeId != -1) || (sourceId != -1)) {
+                    if (setNodeParameter(param, value, nodeId, sourceId) == false) {
+                        throw new IllegalArgumentException("There is no parameter " + name);
+                    }
+                } else if (name.equals("seed")) {
+                    seed = Integer.parseInt(value);
+                } else if (name.equals("duration")) {
+                    duration = Integer.parseInt(value);
+                } else if (name.equals("values")) {
+                    values = Integer.parseInt(value);
+                } else if (name.equals("mixNodes")) {
+                    mixNodes = Integer.parseInt(value);
+                } else if (name.equals("RTSThr")) {
+                    rtsThr = Integer.parseInt(value);
+                } else if (name.equals("ctsToSelf")) {
+                    ctsToSelf = value.charAt(0);
+                } else if (name.equals("phyLayer")) {
+                    phyLayer = value.charAt(0);
+                } else if (name.equals("resultsPath")) {
+                    resultsPath = value;
+                } else if (name.equals("outResults")) {
+                    outResults = value;
+                } else if (name.equals("resultsFormat")) {
+                    resultsFormat = ScenarioLoader.parseResultsFormat(value);
+                } else if (name.startsWith("cwMinFact") && (name.length() == 10)) {
+                    cwMinFact[accessCategory(name)] = Integer.parseInt(value);
+                } else if (name.startsWith("cwMaxFact") && (name.length() == 10)) {
+                    cwMaxFact[accessCategory(name)] = Integer.parseInt(value);
+                } else if (name.startsWith("aifs") && (name.length() == 5)) {
+                    aifs[accessCategory(name)] = Integer.parseInt(value);
+                } else if (setNodeParameter(name, value, -1, -1) == false) {
+                    throw new IllegalArgumentException("There is no parameter " + name);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value " + value + " for the parameter " + name);
+            } catch (StringIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Empty value for the parameter " + name);
+            }
+            return this;
+        }
+
+        //Sets a parameter of the nodes or of their sources. Returns false if no node or source has the parameter.
+        private boolean setNodeParameter(String name, String value, int nodeId, int sourceId) {
+            boolean nodeParameter = name.equals("rate") || name.equals("coverage") || name.equals("xPosition")
+                    || name.equals("yPosition") || name.equals("AC");
+            if (nodeParameter && (sourceId != -1)) {
+                return false;
+            }
+            boolean found = nodeParameter && (nodeId == -1);
+            for (int i = 0; i < nodes.size(); i++) {
+                Node n = nodes.get(i);
+                if ((nodeId != -1) && (n.getId() != nodeId)) {
+                    continue;
+                }
+                if (nodeParameter) {
+                    n = n.with(name, Integer.parseInt(value));
+                    found = true;
+                } else {
+                    for (int j = 0; j < n.getSources().size(); j++) {
+                        if ((sourceId != -1) && (n.getSources().get(j).getId() != sourceId)) {
+                            continue;
+                        }
+                        SourceConfig s = n.getSources().get(j).with(name, value);
+                        if (s != null) {
+                            n = n.withSource(j, s);
+                            found = true;
+                        }
+                    }
+                }
+                nodes.set(i, n);
+            }
+            return found;
+        }
+
+        //The access category of a parameter name like aifs2.
+        private static int accessCategory(String name) {
+            int ac = name.charAt(name.length() - 1) - '0';
+            if ((ac < 0) || (ac > 3)) {
+                throw new IllegalArgumentException("There is no parameter " + name);
+            }
+            return ac;
+        }
+
+        /**
+         * @return A scenario with the values of this builder. The builder can be used again.
+         */
+        public Scenario build() {
+            return new Scenario(this);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package src.pamvotis.core;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import src.pamvotis.exceptions.ConfigurationException;
+
+/**
+ * Reads scenarios from network configuration files, like "config/NtConf.xml". The files are read with a
+ * streaming (StAX) parser in one pass, without building a DOM tree. The scenarios are immutable, so each file
+ * is parsed once and the scenario is kept, until the file is modified.
+ * @see Scenario#load(String)
+ */
+class ScenarioLoader {
+
+    private static XMLInputFactory factory = null;	//Created once, as the lookup of the implementation is slow.
+    private static Map<String, Entry> cache = new HashMap<String, Entry>();	//The scenarios of the files read.
+
+    /**
+     * A scenario read from a file and the state of the file when it was read.
+     */
+    private static class Entry {
+
+        private long modified;
+        private long length;
+        private Scenario scenario;
+    }
+
+    /**
+     * Reads a scenario from a file, or returns the scenario read the last time, if the file has not changed.
+     * @param file The path of the file.
+     * @return The scenario.
+     * @throws IOException If the file cannot be read or it is not a well formed XML file.
+     * @throws ConfigurationException If a parameter is missing or invalid.
+     */
+    static synchronized Scenario load(String file) throws IOException, ConfigurationException {
+        File f = new File(file);
+        String key = f.getAbsolutePath();
+        long modified = f.lastModified();
+        long length = f.length();
+        Entry e = cache.get(key);
+        if ((e != null) && (modified != 0) && (e.modified == modified) && (e.length == length)) {
+            return e.scenario;
+        }
+        if (factory == null) {
+            factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        }
+        InputStream in = new BufferedInputStream(new FileInputStream(f));
+        try {
+            e = new Entry();
+            e.modified = modified;
+            e.length = length;
+            e.scenario = parse(factory.createXMLStreamReader(in));
+            cache.put(key, e);
+            return e.scenario;
+        } catch (XMLStreamException ex) {
+            throw new IOException("Cannot parse " + file + ": " + ex.getMessage(), ex);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads the text of the elements that have no child elements: the system parameters, the parameters of each
+     * node and the parameters of each source. Only the first element with a name is kept, like in
+     * getElementsByTagName(name).item(0). Then the scenario is built.
+     */
+    private static Scenario parse(XMLStreamReader r) throws XMLStreamException, ConfigurationException {
+        Map<String, String> system = new HashMap<String, String>();
+        List<Map<String, String>> nodes = new ArrayList<Map<String, String>>();
+        List<List<Map<String, String>>> sources = new ArrayList<List<Map<String, String>>>();
+        Map<String, String> node = null;	//The parameters of the current node.
+        Map<String, String> source = null;	//The parameters of the current source.
+        StringBuilder text = new StringBuilder();
+        boolean leaf = false;	//True if the current element has no child elements so far.
+        while (r.hasNext()) {
+            switch (r.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    if (r.getLocalName().equals("node")) {
+                        node = new HashMap<String, String>();
+                        node.put("number", r.getAttributeValue(null, "number"));
+                        nodes.add(node);
+                        sources.add(new ArrayList<Map<String, String>>());
+                    } else if (r.getLocalName().equals("source") && (node != null)) {
+                        source = new HashMap<String, String>();
+                        source.put("id", r.getAttributeValue(null, "id"));
+                        source.put("type", r.getAttributeValue(null, "type"));
+                        sources.get(sources.size() - 1).add(source);
+                    }
+                    text.setLength(0);
+                    leaf = true;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                    text.append(r.getText());
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (r.getLocalName().equals("source") && (source != null)) {
+                        source = null;
+                    } else if (r.getLocalName().equals("node") && (node != null)) {
+                        node = null;
+                    } else if (leaf) {
+                        Map<String, String> target = (source != null) ? source : (node != null) ? node : system;
+                        if (target.containsKey(r.getLocalName()) == false) {
+                            target.put(r.getLocalName(), text.toString().trim());
+                        }
+                    }
+                    leaf = false;
+                    break;
+            }
+        }
+        r.close();
+
+        Scenario.Builder b = new Scenario.Builder();
+        if (system.containsKey("seed")) {
+            b.setSeed(getInt(system, "seed"));
+        }
+        b.setDuration(getInt(system, "duration"));
+        if (system.containsKey("values")) {
+            b.setValues(getInt(system, "values"));
+        }
+        b.setMixNodes(getInt(system, "mixNodes"));
+        b.setRtsThr(getInt(system, "RTSThr"));
+        b.setCtsToSelf(getChar(system, "ctsToSelf"));
+        b.setPhyLayer(getChar(system, "phyLayer"));
+        b.setResultsPath(get(system, "resultsPath"));
+        b.setOutResults(get(system, "outResults"));
+        if (system.containsKey("resultsFormat")) {
+            b.setResultsFormat(parseResultsFormat(system.get("resultsFormat")));
+        }
+        for (int ac = 0; ac < 4; ac++) {
+            b.setEdca(ac, getInt(system, "cwMinFact" + ac), getInt(system, "cwMaxFact" + ac), getInt(system, "aifs" + ac));
+        }
+        for (int i = 0; i < nodes.size(); i++) {
+            Map<String, String> n = nodes.get(i);
+            Scenario.Node nd = new Scenario.Node(getInt(n, "number"), getInt(n, "rate"), getInt(n, "coverage"),
+                    getInt(n, "xPosition"), getInt(n, "yPosition"), getInt(n, "AC"));
+            for (int j = 0; j < sources.get(i).size(); j++) {
+                Scenario.SourceConfig s = createSource(sources.get(i).get(j));
+                if (s != null) {
+                    nd = nd.withSource(s);
+                }
+            }
+            b.addNode(nd);
+        }
+        return b.build();
+    }
+
+    //Creates the source of a source element. Sources of unknown type are ignored.
+    static Scenario.SourceConfig createSource(Map<String, String> s) throws ConfigurationException {
+        int id = getInt(s, "id");
+        String type = get(s, "type");
+        if (type.equals("generic")) {
+            return new Scenario.GenericSourceConfig(id, getChar(s, "intArrDstr"), getFloat(s, "intArrTime"),
+                    getChar(s, "pktDist"), getFloat(s, "pktLngth"));
+        } else if (type.equals("ftp")) {
+            return new Scenario.FTPSourceConfig(id, getInt(s, "pktSize"), getFloat(s, "fileSizeMean"),
+                    getFloat(s, "fileSizeStDev"), getFloat(s, "fileSizeMax"), getFloat(s, "readingTime"));
+        } else if (type.equals("video")) {
+            return new Scenario.VideoSourceConfig(id, getInt(s, "frameRate"), getInt(s, "packetsPerFrame"),
+                    getFloat(s, "pktSize"), getFloat(s, "pktSizeMax"), getFloat(s, "pktIntArr"), getFloat(s, "pktIntArrMax"));
+        } else if (type.equals("http")) {
+            return new Scenario.HTTPSourceConfig(id, getInt(s, "pktSize"), getFloat(s, "mainObjectMean"),
+                    getFloat(s, "mainObjectStDev"), getFloat(s, "mainObjectMin"), getFloat(s, "mainObjectMax"),
+                    getFloat(s, "embObjectMean"), getFloat(s, "embObjectStDev"), getFloat(s, "embObjectMin"),
+                    getFloat(s, "embObjectMax"), getFloat(s, "NumOfEmbObjectsMean"), getFloat(s, "NumOfEmbObjectsMax"),
+                    getFloat(s, "readingTime"), getFloat(s, "parsingTime"));
+        }
+        return null;
+    }
+
+    /**
+     * Converts the value of the resultsFormat element: "binary", "both" or "text" (the default).
+     */
+    static int parseResultsFormat(String format) {
+        if (format.equals("binary")) {
+            return Simulator.BINARY_RESULTS;
+        } else if (format.equals("both")) {
+            return Simulator.TEXT_RESULTS | Simulator.BINARY_RESULTS;
+        }
+        return Simulator.TEXT_RESULTS;
+    }
+
+    private static String get(Map<String, String> values, String name) throws ConfigurationException {
+        String value = values.get(name);
+        if (value == null) {
+            throw new ConfigurationException("The parameter " + name + " is missing. Please check your network configuration file.");
+        }
+        return value;
+    }
+
+    private static int getInt(Map<String, String> values, String name) throws ConfigurationException {
+        try {
+            return Integer.parseInt(get(values, name));
+        } catch (NumberFormatException e) {
+            throw new ConfigurationException("The parameter " + name + " must be an integer. Please check your network configuration file.");
+        }
+    }
+
+    private static float getFloat(Map<String, String> values, String name) throws ConfigurationException {
+        try {
+            return Float.parseFloat(get(values, name));
+        } catch (NumberFormatException e) {
+            throw new ConfigurationException("The parameter " + name + " must be a number. Please check your network configuration file.");
+        }
+    }
+
+    private static char getChar(Map<String, String> values, String name) throws ConfigurationException {
+        String value = get(values, name);
+        if (value.length() == 0) {
+            throw new ConfigurationException("The parameter " + name + " is empty. Please check your network configuration file.");
+        }
+        return value.charAt(0);
+    }
+}
@@ -0,0 +1,58 @@
+package src.pamvotis.core;
+
+import java.io.Serializable;
+
+/**
+ * Holds the state that is shared by all the nodes and the sources of a simulation: the current time in slots,
+ * the slot duration and the random number generator. Each Simulator has its own context, so many simulations
+ * can run in parallel in the same JVM without interfering with each other.
+ * <p>
+ * A source is created before it is added to a node, so it takes the context of the simulator that was last
+ * created or configured in the same thread. When it is added to a node, it is bound to the context of the
+ * simulation of the node.
+ * @see src.pamvotis.sources.Source#setContext(SimulationContext)
+ * @see Simulator#confParams()
+ */
+public class SimulationContext implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The current time in slots. It has the same value for all nodes and sources.
+	 */
+	public long timer = 0;
+	/**
+	 * The time slot value according to the physical layer.
+	 */
+	public float slot = 0;
+	/**
+	 * Generator for generating random numbers.
+	 */
+	public java.util.Random generator = null;
+	/**
+	 * The counters of the simulation, or null if they are disabled.
+	 * @see Simulator#setMetricsEnabled(boolean)
+	 */
+	public SimulatorMetrics metrics = null;
+
+	private static final ThreadLocal<SimulationContext> current = new ThreadLocal<SimulationContext>() {
+		protected SimulationContext initialValue() {
+			return new SimulationContext();
+		}
+	};
+
+	/**
+	 * @return The context of the simulation that was last created or configured in the current thread.
+	 */
+	public static SimulationContext current() {
+		return current.get();
+	}
+
+	/**
+	 * Makes a context the current context of the calling thread.
+	 * @param context The context of the simulation.
+	 */
+	static void setCurrent(SimulationContext context) {
+		current.set(context);
+	}
+}
@@ -0,0 +1,136 @@
+package src.pamvotis.core;
+
+/**
+ * Controls a running simulation from another thread: pauses, resumes or cancels it and limits the wall-clock time
+ * or the number of slots it may run. The simulator checks the control at the start of each simulation interval
+ * and every few slots (see Simulator.setProgressInterval), never while a slot is simulated, so the simulation is
+ * always paused or stopped in a consistent state.
+ * <p>
+ * When a simulation is cancelled or its budget runs out, the current interval ends at the last slot simulated, its
+ * statistics are printed and the result files are flushed. The next calls of simulate() do nothing. The slot budget
+ * is applied exactly, so a simulation with a slot budget always stops at the same slot. A control can be shared by
+ * many simulations, e.g. by all the simulations of a sweep, in order to pause or cancel all of them at once. In this
+ * case the slot budget is shared too: each interval reserves its slots from the budget when it starts, so the
+ * simulations together never simulate more slots than the budget. Which simulation gets the last slots depends on
+ * the order their intervals start.
+ * @see Simulator#setControl(SimulationControl)
+ */
+public class SimulationControl {
+
+    private boolean paused = false;
+    private boolean cancelled = false;
+    private long deadline = Long.MAX_VALUE;	//The wall-clock time in milliseconds when the budget runs out.
+    private long slots = Long.MAX_VALUE;	//The number of slots that may still be simulated.
+
+    /**
+     * Pauses the simulations. They stop at the next check and wait until they are resumed or cancelled.
+     */
+    public synchronized void pause() {
+        paused = true;
+    }
+
+    /**
+     * Resumes the paused simulations.
+     */
+    public synchronized void resume() {
+        paused = false;
+        notifyAll();
+    }
+
+    /**
+     * Cancels the simulations. They stop at the next check, even if they are paused.
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+        notifyAll();
+    }
+
+    /**
+     * @return True if the simulations are paused.
+     */
+    public synchronized boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * @return True if the simulations were cancelled.
+     */
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Limits the wall-clock time of the simulations, from now on. The time that the simulations are paused is
+     * included.
+     * @param millis The time in milliseconds.
+     */
+    public synchronized void setTimeBudget(long millis) {
+        deadline = System.currentTimeMillis() + millis;
+    }
+
+    /**
+     * Limits the number of slots that the simulations may simulate, from now on.
+     * @param slots The number of slots.
+     */
+    public synchronized void setSlotBudget(long slots) {
+        this.slots = slots;
+    }
+
+    /**
+     * @return The number of slots that may still be simulated, or Long.MAX_VALUE if there is no slot budget. The
+     * slots reserved by the intervals that are running are not included.
+     */
+    public synchronized long getRemainingSlots() {
+        return Math.max(slots, 0);
+    }
+
+    /**
+     * @return True if the wall-clock time or the slots of the budget have run out.
+     */
+    public synchronized boolean isExpired() {
+        return (slots <= 0) || (System.currentTimeMillis() >= deadline);
+    }
+
+    /**
+     * Reserves the slots of an interval from the slot budget, at once.
+     * @param requested The number of slots of the interval.
+     * @return The number of slots reserved. Fewer than requested if the budget runs out.
+     */
+    synchronized long reserve(long requested) {
+        if (slots == Long.MAX_VALUE) {
+            return requested;
+        }
+        long reserved = Math.min(Math.max(slots, 0), requested);
+        slots -= reserved;
+        return reserved;
+    }
+
+    /**
+     * Gives back to the slot budget the reserved slots that were not simulated, because the interval stopped
+     * earlier.
+     * @param unused The number of slots.
+     */
+    synchronized void release(long unused) {
+        if (slots != Long.MAX_VALUE) {
+            slots += unused;
+        }
+    }
+
+    /**
+     * Called by the simulator between slots. Waits while the simulations are paused.
+     * @return False if the simulation must stop: it was cancelled, the time budget has run out or the thread was
+     * interrupted while paused. The slot budget is applied with reserve().
+     */
+    synchronized boolean proceed() {
+        while (paused && (cancelled == false) && (System.currentTimeMillis() < deadline)) {
+            try {
+                long wait = deadline - System.currentTimeMillis();
+                wait(deadline == Long.MAX_VALUE ? 0 : Math.max(wait, 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return (cancelled == false) && (System.currentTimeMillis() < deadline);
+    }
+}
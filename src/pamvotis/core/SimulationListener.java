@@ -0,0 +1,25 @@
+package src.pamvotis.core;
+
+/**
+ * Receives the progress of a simulation and the results of each simulation interval, as soon as they are
+ * available, instead of polling the simulator. The methods are called from the thread that runs simulate(),
+ * between slots, never while a slot is simulated.
+ * @see Simulator#addListener(SimulationListener)
+ */
+public interface SimulationListener {
+
+    /**
+     * Called every few slots (see Simulator.setProgressInterval) and at the end of each simulation interval.
+     * @param sim The simulator.
+     * @param progress The % progress of the whole simulation, like Simulator.getProgress().
+     * @param time The simulated time in seconds.
+     */
+    public void progress(Simulator sim, int progress, double time);
+
+    /**
+     * Called at the end of each simulation interval, after the statistics of the interval are printed.
+     * @param sim The simulator.
+     * @param results The statistics of the interval.
+     */
+    public void intervalFinished(Simulator sim, IntervalResults results);
+}
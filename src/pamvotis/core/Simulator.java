@@ -1,32 +1,34 @@
 package src.pamvotis.core;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Vector;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-
-import org.w3c.dom.DOMException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
-
 import src.pamvotis.exceptions.ConfigurationException;
 import src.pamvotis.exceptions.ElementDoesNotExistException;
 import src.pamvotis.exceptions.ElementExistsException;
-import src.pamvotis.exceptions.UnknownDistributionException;
-import src.pamvotis.sources.FTPSource;
-import src.pamvotis.sources.GenericSource;
-import src.pamvotis.sources.HTTPSource;
 import src.pamvotis.sources.Source;
-import src.pamvotis.sources.VideoSource;
 import src.pamvotis.core.utils.Generic;
 
 /**
@@ -37,7 +39,50 @@ import src.pamvotis.core.utils.Generic;
  * @Revision notes
  * Added reference to new package pamvotis.core.utils
  */
-public class Simulator {
+public class Simulator implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Results format: the statistic results are written to the tab-separated text files.
+     */
+    public static final int TEXT_RESULTS = 1;
+    /**
+     * Results format: the statistic results are written to the binary columnar file "Results.bin".
+     * @see BinaryResultsReader
+     */
+    public static final int BINARY_RESULTS = 2;
+    /**
+     * The key of the stream of the channel. The keys of the streams of the nodes are their IDs.
+     * @see #getRandomStream()
+     */
+    public static final long CHANNEL_STREAM = -1;
+    /**
+     * Delay histograms: the queuing delay, from the generation of a packet until its first transmission attempt.
+     * @see #getDelayHistogram(int, int)
+     */
+    public static final int QUEUING_DELAY = 0;
+    /**
+     * Delay histograms: the media access delay, from the first transmission attempt of a packet until its
+     * successful transmission.
+     * @see #getDelayHistogram(int, int)
+     */
+    public static final int MEDIA_ACCESS_DELAY = 1;
+    /**
+     * Delay histograms: the total delay, from the generation of a packet until its successful transmission.
+     * @see #getDelayHistogram(int, int)
+     */
+    public static final int TOTAL_DELAY = 2;
+    //The percentiles of the delays printed in the result files and in the report of ReplicationRunner.
+    static final double[] PERCENTILES = {50, 95, 99, 99.9};
+    static final String[] PERCENTILE_NAMES = {"50", "95", "99", "99.9"};
+    /**
+     * The key of the stream for selecting the backoff strategy.
+     * @see Strategy#setGenerator(java.util.Random)
+     */
+    public static final long STRATEGY_STREAM = -2;
+    private static final int CHECKPOINT_MAGIC = 0x5056434B;	//"PVCK"
+    private static final int CHECKPOINT_VERSION = 3;	//3: the parameters of SpecParams are saved before the simulation.
 
     /**
      * Creates a new simulation instance.
@@ -48,11 +93,14 @@ public class Simulator {
         SpecParams.ReadParameters();
         //Although all members of SpecParams are static, the ReadParameters function must be called once, in order
         //to read the xml file and initialize the members.
+        SimulationContext.setCurrent(context);
     }
     //Global parameters are defined here, visible to all methods of the class.
     private int seed = 0;	//Stores the seed from the xml file.
+    private boolean seedSet = false;	//True if the seed was set with setSeed and must not be read from the xml file.
     private long totalTime = 0;	//Stores the total time (not the duration of each simulation interval.
     //It is read from the xml file.
+    private int values = 1;	//The number of simulation intervals (values collected). Read from the xml file.
     private long simTime = 0;	//Stores the current simulation interval.
     private double currentTime = 0;	//Stores the current time in seconds. Used for the interface
     //or the program that calls an instance of Simulator class.
@@ -69,15 +117,36 @@ public class Simulator {
     private String resultsPath = null;	//The path to store the result files (read from the xml file).
     private String outResults = null;	//A string that defines which results the user chose.
     private short progress = 0;	//The percentage of the progress. Used for the progress bar.
-    private BufferedWriter out = null; //writer for the results files
-    private java.util.Random generator;	//An instance for generating random numbers.
+    private transient BufferedWriter out = null; //writer for the results files
+    private transient ResultsWriter results = new ResultsWriter(); //keeps the statistic result files open during the run
+    private int resultsFormat = TEXT_RESULTS;	//The formats of the results (TEXT_RESULTS, BINARY_RESULTS or both).
+    private BinaryResultsWriter binaryResults = null;	//Collects the results of the binary format.
+    private RandomStream generator;	//The stream of the simulation. The streams of the nodes, of their sources
+    //and of the channel are split from it (see getRandomStream).
+    private java.util.Random channelRandom;	//Generator for the transmission type (OFDM or DSSS) in mixed mode.
+    private SimulationContext context = new SimulationContext();	//The state shared by the nodes and
+    //the sources of this simulation (current slot, slot duration, random number generator).
     //Helpful global variables
     private boolean transmissionPending = false; //checks if a station is transmitting.
     private int transTimeRemaining = 0; //The time for a transmission to finish.
     private boolean transmitWithRTS = false;	//flag which shows if a station transmits with RTS/CTS.
     private static final int INT_MAX = 999999999;
+    //The kinds of the OFDM frame exchanges (see ofdmSlots).
+    private static final int RTS_CTS_DATA_ACK = 0;	//Successful transmission with RTS/CTS.
+    private static final int CTS_DATA_ACK = 1;	//Successful transmission with CTS-to-self.
+    private static final int DATA_ACK = 2;	//Successful transmission with basic access.
+    private static final int DATA = 3;	//Collision with basic access.
+    private static final int RTS_ACK = 4;	//Collision with RTS/CTS (until the ACK timeout).
+    private static final int CTS_ONLY = 5;	//Collision with CTS-to-self.
+    private transient DurationCache durations = new DurationCache();	//The durations of the OFDM frame exchanges.
     //The vector  that holds the nodes
     private Vector<MobileNode> nodesList = new Vector<MobileNode>();
+    //The position of each node in nodesList, by ID. Rebuilt when a checkpoint is loaded.
+    private transient IntIndex nodeIndex = new IntIndex();
+    //Which nodes are inside the coverage of each node. Rebuilt when the nodes change.
+    private CoverageMap coverageMap = new CoverageMap();
+    //The backoff counters and the flags of the nodes in dense arrays, for the slot loops. Rebuilt when the nodes change.
+    private NodeState nodeState = new NodeState(0);
     //802.11 parameters, needed for creating nodes:
     private int cwMinFact0 = 0;
     private int cwMinFact1 = 0;
@@ -93,8 +162,20 @@ public class Simulator {
     private int aifs3 = 0;
 //  private static int colls = 0;
     private int currentStrategy = -1;
+    private Strategy adaptiveStrategy = null;	//The adaptive strategy that selects currentStrategy, if any.
     private long collisionsForAllNodes = 0;//in a particular simulation interval
     private long successForAllNodes = 0;
+    private Trace trace = new Trace(4096);	//Records events for debugging. Off by default.
+    private SimulatorMetrics metrics = new SimulatorMetrics();	//The counters of the simulator.
+    //They are updated only when they are also set to the context (see setMetricsEnabled).
+    private boolean eventDriven = false;	//If enabled, the simulate function jumps over slots where
+    //nothing happens (see idleSlots), instead of simulating them one by one.
+    private transient List<SimulationListener> listeners = new ArrayList<SimulationListener>();	//Notified
+    //about the progress and the results of each interval.
+    private long progressSlots = 10000;	//The number of slots between two progress notifications.
+    //The progress is also the point where the control is checked.
+    private transient SimulationControl control = null;	//Pauses, cancels or limits the simulation.
+    private boolean stopped = false;	//True if the simulation was stopped by the control before its end.
 
     //*****************		FUNCTIONS FOLLOW		************************************
     ////////////////////////////////////////////////////////////////
@@ -109,34 +190,15 @@ public class Simulator {
         int transRequests = 0; //The number of nodes that want to transmit.
         int transNlos = 0;	//The number of stations that want to transmit
         // and are not in LOS with the transmitting stations.
-        int coverage = INT_MAX;	//Helpful variable.
+        int[] backoff = nodeState.backoff;	//The backoff counters of the nodes.
+        long[] transmitting = nodeState.transmitting;	//The 'nowTransmitting' flags of the nodes.
 
         //For each station except the transmitting one check if it has
         //a packet to send and if the backoff counter expired.
         //If so, set the 'requestTransmit' flag to enabled.
-        for (int i = 0; i < nmbrOfNodes; i++) {
-
-
-             //add debug
-             //Abiud/AYIENGA added nodeId to track status of each and every node.
-            // Also added the debug logs
-           int nodeId  = nodesList.elementAt(i).params.id;
-
-          //System.out.println("Transmission Status for node [" + nodeId + "]  collision block is : " + nodesList.elementAt(i).successfullyTransmitting);
-          //System.out.println("Number of successful transmissions for for node [" + nodeId + "] " +  nodesList.elementAt(i).successfulTransmissions);
-         // System.out.println("Does node with id  [" + nodeId + "] have packets to send ?" +  nodesList.elementAt(i).havePktToSend);
-         // System.out.println("Number of collisions node  [" + nodeId + "] has encountered are : " +  nodesList.elementAt(i).collisions);
-
-
-            if ((nodesList.elementAt(i).nowTransmitting == false) && (nodesList.elementAt(i).havePktToSend == true)
-                    && (nodesList.elementAt(i).backoffCounter == 0)) {
-                nodesList.elementAt(i).requestTransmit = true;
-            }
-
-            //Depending on the value of 'requestTransmit' find the
-            //number of stations that want to transmit in this slot.
-            transRequests = transRequests + ((nodesList.elementAt(i).requestTransmit) ? 1 : 0); //The last expression transforms the requestTransmit value to boolean
-        }
+        //Depending on the value of 'requestTransmit' find the
+        //number of stations that want to transmit in this slot.
+        transRequests = nodeState.requestTransmit();
 
         //If a transmission is in progress (successful or collision):
         if (transmissionPending == true) {
@@ -145,6 +207,7 @@ public class Simulator {
             //No hidden terminals exist. The TransWithRTS flag is initialized
             //by the SuccessfulTransmission procedure.
             if (transmitWithRTS == true) {
+                if (context.metrics != null) context.metrics.freezeSlots++;
                 freeze();
             } //If CTS-to_Self or simple transmission is used and
             //a transmission is in progress:
@@ -152,44 +215,28 @@ public class Simulator {
 
                 //Find the number of stations that want to transmit and are not
                 //in LOS with any of the transmitting stations.
-                for (int i = 0; i < nmbrOfNodes; i++) {
-                    distance = INT_MAX;
-
-                    //Find the minimum distance from station i to the transmitting
-                    // stations.
-                    for (int j = 0; j < nmbrOfNodes; j++) {
-                        if ((nodesList.elementAt(j).nowTransmitting == true)
-                                && (distance > nodesList.elementAt(i).params.DistFrom(nodesList.elementAt(j).params.x,
-                                nodesList.elementAt(j).params.y))) {
-                            distance = nodesList.elementAt(i).params.DistFrom(nodesList.elementAt(j).params.x,
-                                    nodesList.elementAt(j).params.y);
-                        }
-                    }
-
-                    //If the minimum distance is more than the coverage of the
-                    //station and if the station wants to transmit increase the number
-                    //of stations that want to transmit and are not in LOS
-                    //with any of the transmitting stations.
-                    coverage = nodesList.elementAt(i).params.coverage;
-                    if ((distance > coverage)
-                            && (nodesList.elementAt(i).requestTransmit == true)) {
-                        transNlos++;
-                    } //If the station is not transmitting, is not in line of sight
-                    //and is in backoff procedure, decrease its backoff counter.
-                    else if ((nodesList.elementAt(i).backoffCounter > 0)
-                            && (distance > coverage)
-                            && (nodesList.elementAt(i).nowTransmitting == false)) {
-                        nodesList.elementAt(i).backoffCounter--;
-                    }
+                coverageMap.markTransmitting(nodesList, nodeState);
+                long[] hidden = coverageMap.hidden();
+                //If no transmitting station is inside the coverage of the
+                //station and if the station wants to transmit increase the number
+                //of stations that want to transmit and are not in LOS
+                //with any of the transmitting stations.
+                for (int w = 0; w < hidden.length; w++) {
+                    transNlos += Long.bitCount(hidden[w] & nodeState.request[w]);
                 }
+                //If the station is not transmitting, is not in line of sight
+                //and is in backoff procedure, decrease its backoff counter.
+                nodeState.countDown(hidden);
 
                 //If there are hidden terminals that want to transmit then
                 //a collision occurs.
                 if (transNlos > 0) {
+                    if (context.metrics != null) context.metrics.collisionSlots++;
                     collision();
                 } //If no station wants to transmit or those who want to transmit
                 //are in LOS with some transmitting station then just Freeze.
                 else {
+                    if (context.metrics != null) context.metrics.freezeSlots++;
                     freeze();
                 }
             }
@@ -197,6 +244,7 @@ public class Simulator {
         else {
             //If no station wants to transmit then the slot is empty.
             if (transRequests == 0) {
+                if (context.metrics != null) context.metrics.emptySlots++;
                 emptySlot();
             } //If some stations want to transmit:
             else {
@@ -205,9 +253,11 @@ public class Simulator {
                 //is performed with RTS/CTS. This is used from the FightForSlot
                 //procedure.
                 if (transRequests == 1) {
+                    if (context.metrics != null) context.metrics.successfulSlots++;
                     transmitWithRTS = successfulTransmission();
                 } //If more than one station wants to transmit there is a collision.
                 else {
+                    if (context.metrics != null) context.metrics.collisionSlots++;
                     collision();
 
                 }
@@ -216,25 +266,17 @@ public class Simulator {
                 //hidden terminals which are in backoff procedure and decrease
                 //their backoff counter.
                 //(Those stations cannot hear the transmission).
+                //The distance from node i to the transmitting node is taken as the
+                //distance of the transmitting node from itself, which is zero if
+                //some node transmits.
+                distance = (nodeState.anyTransmitting() == true) ? 0 : INT_MAX;
+                int[] coverage = nodeState.coverage;
                 for (int i = 0; i < nmbrOfNodes; i++) {
-                    distance = INT_MAX;
-
-                    //Find the minimum distance from node i to the
-                    //transmitting node.
-                    for (int j = 0; j < nmbrOfNodes; j++) {
-                        if ((nodesList.elementAt(j).nowTransmitting == true)
-                                && (distance > nodesList.elementAt(i).params.DistFrom(nodesList.elementAt(j).params.x, nodesList.elementAt(j).params.y))) {
-                            distance =
-                                    nodesList.elementAt(j).params.DistFrom(nodesList.elementAt(j).params.x,
-                                    nodesList.elementAt(j).params.y);
-                        }
-                    }
                     //If the station is not transmitting, is not in line of sight
                     //and is in backoff procedure, decrease its backoff counter.
-                    coverage = nodesList.elementAt(i).params.coverage;
-                    if ((nodesList.elementAt(i).backoffCounter > 0) && (distance > coverage)
-                            && (nodesList.elementAt(i).nowTransmitting == false)) {
-                        nodesList.elementAt(i).backoffCounter--;
+                    if ((backoff[i] > 0) && (distance > coverage[i])
+                            && (NodeState.isSet(transmitting, i) == false)) {
+                        backoff[i]--;
                     }
                 }
             }
@@ -250,11 +292,7 @@ public class Simulator {
         //Decrease the backoff counter of each station and set
         //the value of transmissionPending to false
         //(no station will transmit in the next slot).
-        for (int i = 0; i < nmbrOfNodes; i++) {
-            if (nodesList.elementAt(i).backoffCounter > 0) {
-                nodesList.elementAt(i).backoffCounter--;
-            }
-        }
+        nodeState.countDown(nmbrOfNodes);
         transmissionPending = false;
     }
 
@@ -273,16 +311,17 @@ public class Simulator {
         int ACK = SpecParams.ACK, RTS = SpecParams.RTS, CTS = SpecParams.CTS, MAC = SpecParams.MAC;
         float OFDM_PHY = SpecParams.OFDM_PHY;
 
-        for (int i = 0; i < nmbrOfNodes; i++) {
+        for (int w = 0; w < nodeState.request.length; w++) {
             //Find the node which wants to transmit.
             //Enable the flag 'successfullyTransmitting'. This will be used
             //by the freeze procedure to find the transmitting station.
             //Disable the request transmit flag.
-            if (nodesList.elementAt(i).requestTransmit == true) {
-                transNode = i;
-                nodesList.elementAt(i).successfullyTransmitting = true;
-                nodesList.elementAt(i).nowTransmitting = true;
-                nodesList.elementAt(i).requestTransmit = false;
+            long request = nodeState.request[w];
+            if (request != 0) {
+                transNode = (w << 6) + 63 - Long.numberOfLeadingZeros(request);
+                nodeState.success[w] |= request;
+                nodeState.transmitting[w] |= request;
+                nodeState.request[w] = 0;
             }
         }
 
@@ -300,7 +339,7 @@ public class Simulator {
         //First generate a random number between 0 and 1. If the number is
         //<probOFDM then we have a success (OFDM transmission). Else we have
         //a failure (DSSS transmission).
-        float rand01 = generator.nextFloat();
+        float rand01 = channelRandom.nextFloat();
         if (phyLayer == 'm') {
             if (rand01 < probOFDM) {
                 transType = 'O';
@@ -326,23 +365,19 @@ public class Simulator {
                 if (ctsToSelf == 'n') {
                     transWithRTS = true;
                     transTimeRemaining = (int) ((nodesList.elementAt(transNode).params.aifsd + 3 * sifs + 4 * OFDM_PHY) / slot)
-                            + (RTS + CTS + MAC + payld + ACK + padBits(rate, RTS)
-                            + padBits(rate, CTS) + padBits(rate, MAC) + padBits(rate, payld)
-                            + padBits(rate, ACK)) / (int) (rate * slot);
+                            + ofdmSlots(RTS_CTS_DATA_ACK, rate, payld);
                 } //Transmission with CTS-to-Self
                 else {
                     transWithRTS = false;
                     transTimeRemaining = (int) ((nodesList.elementAt(transNode).params.aifsd + 2 * sifs + 3 * OFDM_PHY) / slot)
-                            + (CTS + MAC + payld + ACK + padBits(rate, CTS) + padBits(rate, MAC)
-                            + padBits(rate, payld) + padBits(rate, ACK)) / (int) (rate * slot);
+                            + ofdmSlots(CTS_DATA_ACK, rate, payld);
                 }
 
             } //Transmission with basic access
             else {
                 transWithRTS = false;
                 transTimeRemaining = (int) ((nodesList.elementAt(transNode).params.aifsd + sifs + 2 * OFDM_PHY) / slot)
-                        + (MAC + payld + ACK + padBits(rate, MAC) + padBits(rate, payld)
-                        + padBits(rate, ACK)) / (int) (rate * slot);
+                        + ofdmSlots(DATA_ACK, rate, payld);
             }
         }
 
@@ -394,7 +429,9 @@ public class Simulator {
     ////////////////////////////////////////////////////////////
     private void collision() {
 
-        System.out.println("CHECKING FOR COLLIDING__________________________________________________________________");
+        if (trace.level >= Trace.INFO) {
+            trace.record(Trace.INFO, context.timer, -1, Trace.COLLISION, 0, 0);
+        }
         int maxPld = 0;	//The maximum payload under transmission duration
         int maxLsThr = 0;	//The maximum payload smaller than RTS threshold
         float maxTrans = 0; //The maximum transmission time.
@@ -414,8 +451,6 @@ public class Simulator {
         //with the transmitting station.
         int rate = 0;	//Variable which stores  a node's data rate
         int payld = 0;	//Variable which stores a node's payload
-        int distance = -1;	//Helpful variable.
-        int coverage = INT_MAX; //Helpful variable.
 
         //Store the remaining time for the end of a transmission (if any) to a temporary
         //variable. If no transmission is in progress then this value is zero.
@@ -426,41 +461,25 @@ public class Simulator {
         //transmitting station  (if there is one) initialize the backoff counter
         //and calculate packet measures used for determining the collision duration.
         //The transmitting stations (if any) are excluded.
+        coverageMap.markTransmitting(nodesList, nodeState);
         for (int i = 0; i < nmbrOfNodes; i++) {
-            los = true; //If no station transmits we want the 'los' flag to be true by default.
-            distance = INT_MAX;
             //If a station transmits go to the next one.
-            if (nodesList.elementAt(i).nowTransmitting == true) {
+            if (NodeState.isSet(nodeState.transmitting, i) == true) {
                 continue;
             }
 
-            //Find the minimum distance from node i to the transmitting stations.
-            for (int j = 0; j < nmbrOfNodes; j++) {
-                if ((nodesList.elementAt(j).nowTransmitting == true)
-                        && (distance > nodesList.elementAt(i).params.DistFrom(nodesList.elementAt(j).params.x, nodesList.elementAt(j).params.y))) {
-                    distance =
-                            nodesList.elementAt(i).params.DistFrom(nodesList.elementAt(j).params.x,
-                            nodesList.elementAt(j).params.y);
-                }
-            }
-
-            //If the minimum distance is more than the coverage of the station or if
-            //no stations transmit (distance remains INT_MAX) then the station is not in LOS with some
+            //If no transmitting station is inside the coverage of the station or if
+            //no stations transmit then the station is not in LOS with some
             //of the stations transmitting, and the los flag is false.
-            coverage = nodesList.elementAt(i).params.coverage;
-            if ((distance > coverage) || (distance == INT_MAX)) {
-                los = false;
-            } else {
-                los = true;
-            }
+            los = !coverageMap.isHidden(i);
 
             //If a station wants to transmit and is in not in los with the transmitting
             //station (if any) then a collision occurs. If no station transmits then
             //the los flag is false by default which means that the station will transmit.
-            if ((nodesList.elementAt(i).requestTransmit == true) && (los == false)) {
+            if ((NodeState.isSet(nodeState.request, i) == true) && (los == false)) {
                 //The startTransmitting flag is used instead of the nowTransmitting
                 //in order the nowTransmitting flag to stay unaffected.
-                nodesList.elementAt(i).startTransmitting = true;
+                NodeState.set(nodeState.starting, i, true);
 
                 //Find the largest packet for transmission. This specifies
                 //the collision time.
@@ -502,15 +521,10 @@ public class Simulator {
                 //SIMON MODIFIED THIS CODE
                 //_______________________________________________________________________________________________________________________________________________
 
-                 System.out.println(" Initial value for Contwind was => " + nodesList.elementAt(i).contWind);
-
                 if (getCurrentStrategy() == 1) {
                     //The existing DCF strategy
                     if (nodesList.elementAt(i).contWind < nodesList.elementAt(i).params.cwMax) {
-                    	System.out.println("The Contention Window Min for 1 is:" + cwMin);
-                        nodesList.elementAt(i).contWind = Generic.getRandomNumber(1, cwMin);
-                        System.out.println("The Contention Window Using Strategy 1 is:" + nodesList.elementAt(i).contWind);
-                        System.out.println("The Contention Window Max for 1 is:" + nodesList.elementAt(i).params.cwMax);
+                        nodesList.elementAt(i).contWind = Generic.getRandomNumber(nodesList.elementAt(i).random, 1, cwMin);
                     } else //We add an else statement because in extreme cases (the user may choose cwmin=cwmax)
                     //cwmin may be bigger than cwmax if it gets double.
                     {
@@ -529,8 +543,7 @@ public class Simulator {
                         //cwMin = ((cwMin + 1)/2) - 1;
                         //cwMin = ((cwMin )/2);
                     	   
-                    	nodesList.elementAt(i).contWind = Generic.getRandomNumber(1, (cwMin/2));
-                    	 System.out.println("The Contention Window for Strategy 2 is:" + nodesList.elementAt(i).contWind);
+                    	nodesList.elementAt(i).contWind = Generic.getRandomNumber(nodesList.elementAt(i).random, 1, (cwMin/2));
                     } else {
                         nodesList.elementAt(i).contWind = nodesList.elementAt(i).params.cwMax;
                     }
@@ -538,7 +551,6 @@ public class Simulator {
                 } else if (getCurrentStrategy() == 3) {
                     //Selecting a fixed backoff of one slot.
                     if (nodesList.elementAt(i).contWind < nodesList.elementAt(i).params.cwMax) {  
-                    	System.out.println("The Contention Window for 3 is:" + nodesList.elementAt(i).contWind);
                     	//cwMin = (cwMin + 1)/4 - 1;
                           //int upper  = ((cwMin )/2) - 1;
                           //int lower  = ((cwMin )/4) - 1;
@@ -547,10 +559,7 @@ public class Simulator {
                           int upper  = ((cwMin )/2);
                           int lower  = ((cwMin )/4);
                         //cwMin  = Generic.getRandomNumber(lower, upper);
-                    	nodesList.elementAt(i).contWind = Generic.getRandomNumber(lower, upper);
-                    	System.out.println("The Contention Window Min for 3 is:" + cwMin);
-                    	System.out.println("The Contention Window for Strategy 3 is:" + nodesList.elementAt(i).contWind);
-                    	System.out.println("The Contention Window Max for 3 is:" + nodesList.elementAt(i).params.cwMax);
+                    	nodesList.elementAt(i).contWind = Generic.getRandomNumber(nodesList.elementAt(i).random, lower, upper);
                     } else {
                         nodesList.elementAt(i).contWind = nodesList.elementAt(i).params.cwMax;
                     }
@@ -559,20 +568,22 @@ public class Simulator {
                     //Selecting a fixed backoff of one slot.
                     if (nodesList.elementAt(i).contWind < nodesList.elementAt(i).params.cwMax) {
                         nodesList.elementAt(i).contWind = 8;
-                        System.out.println("The Contention Window for 4 is:" + nodesList.elementAt(i).contWind);
                     } else {
                         nodesList.elementAt(i).contWind = nodesList.elementAt(i).params.cwMax;
                     }
-                    System.out.println("USING 4a");
                }
 
                 //END OF SIMON'S MODIFICATIONS
 
                 //Initialize the backoff counter of the station.
-                nodesList.elementAt(i).backoffCounter = nodesList.elementAt(i).InitBackoff(nodesList.elementAt(i).contWind);
+                nodeState.backoff[i] = nodesList.elementAt(i).InitBackoff(nodesList.elementAt(i).contWind);
+                if (trace.level >= Trace.DEBUG) {
+                    trace.record(Trace.DEBUG, context.timer, nodesList.elementAt(i).params.id, Trace.COLLIDING_NODE,
+                            nodesList.elementAt(i).contWind, nodeState.backoff[i]);
+                }
 
                 //Disable the request transmit flag.
-                nodesList.elementAt(i).requestTransmit = false;
+                NodeState.set(nodeState.request, i, false);
 
                 //Increase the number of collisions.
                 nodesList.elementAt(i).collisions++;
@@ -610,8 +621,7 @@ public class Simulator {
             if (maxLsThr != 0) {
 
                 transTimeRemaining = (int) ((nodesList.elementAt(maxLsNode).params.aifsd + OFDM_PHY) / slot)
-                        + (MAC + payld + padBits(rate, MAC) + padBits(rate, payld))
-                        / (int) (rate * slot);
+                        + ofdmSlots(DATA, rate, payld);
             } //All stations transmit with protection mechanisms
             else {
                 //Transmission with RTS/CTS
@@ -621,11 +631,11 @@ public class Simulator {
                     //in order to use the medium.
                     //RTS/CTS is transmitted with the minimum data rate.
                     transTimeRemaining = (int) ((nodesList.elementAt(maxNode).params.aifsd + 2 * OFDM_PHY + sifs) / slot)
-                            + (RTS + ACK + padBits(6000000, RTS) + padBits(6000000, ACK)) / (int) (6000000 * slot);
+                            + ofdmSlots(RTS_ACK, 6000000, 0);
                 } //Transmission with CTS-to-Self
                 else {
                     transTimeRemaining = (int) ((nodesList.elementAt(maxNode).params.aifsd + OFDM_PHY) / slot)
-                            + (CTS + padBits(6000000, CTS)) / (int) (6000000 * slot);
+                            + ofdmSlots(CTS_ONLY, 6000000, 0);
                 }
             }
         } //802.11b or mixed 802.11g / 802.11b
@@ -665,17 +675,12 @@ public class Simulator {
 
         //Initialize the backoff counter of the transmitting stations (if any).
         for (int i = 0; i < nmbrOfNodes; i++) {
-           if(nodesList.elementAt(i).nowTransmitting==true)
+           if(NodeState.isSet(nodeState.transmitting, i)==true)
 			{
 				//Initialize the contention window of the station.
 				if(nodesList.elementAt(i).contWind < nodesList.elementAt(i).params.cwMax){
 					nodesList.elementAt(i).contWind *= 2;
-
-                                        System.out.println("The Contention Window Min for 1 is:" + cwMin);
                                         nodesList.elementAt(i).contWind *= 2;
-                                        System.out.println("The Contention Window for 1 is:" + nodesList.elementAt(i).contWind);
-                                        System.out.println("The Contention Window Max for 1 is:" + nodesList.elementAt(i).params.cwMax);
-
                             }
 
 				else
@@ -684,16 +689,20 @@ public class Simulator {
 					nodesList.elementAt(i).contWind = nodesList.elementAt(i).params.cwMax;
 
 				//Initialize the backoff counter of the station.
-				nodesList.elementAt(i).backoffCounter = nodesList.elementAt(i).InitBackoff(nodesList.elementAt(i).contWind);
+				nodeState.backoff[i] = nodesList.elementAt(i).InitBackoff(nodesList.elementAt(i).contWind);
+				if (trace.level >= Trace.DEBUG) {
+					trace.record(Trace.DEBUG, context.timer, nodesList.elementAt(i).params.id, Trace.TRANSMITTING_NODE,
+							nodesList.elementAt(i).contWind, nodeState.backoff[i]);
+				}
 
 				//Disable the request transmit flag.
-				nodesList.elementAt(i).requestTransmit = false;
+				NodeState.set(nodeState.request, i, false);
 
 				//Increase the number of collisions.
 				nodesList.elementAt(i).collisions ++;
 
 				//Disable the successfullyTransmitting flag of the station (if enabled).
-				nodesList.elementAt(i).successfullyTransmitting = false;
+				NodeState.set(nodeState.success, i, false);
 			}
 
 
@@ -764,11 +773,9 @@ public class Simulator {
         //The nowTransmitting flag is checked from outside procedures.
         //The startTransmitting flag is for internal use, for not affecting
         //the nowTransmitting flag.
-        for (int i = 0; i < nmbrOfNodes; i++) {
-            if (nodesList.elementAt(i).startTransmitting == true) {
-                nodesList.elementAt(i).startTransmitting = false;
-                nodesList.elementAt(i).nowTransmitting = true;
-            }
+        for (int w = 0; w < nodeState.starting.length; w++) {
+            nodeState.transmitting[w] |= nodeState.starting[w];
+            nodeState.starting[w] = 0;
         }
 
         //If the ramaining time for transmission is less than the new specified time
@@ -788,135 +795,202 @@ public class Simulator {
 
     //////////////////////////////////////////////////////////////////////
     //	*****			PrintStats			*****
-    //Prints statistic results to text files.
+    //Prints statistic results to text files. The files stay open and the rows
+    //are written to disk in batches (see ResultsWriter).
     //Each statistic is printed only if the user asks it (depending on the
     //containing characteristic two-character sets of the reslts string).
     //////////////////////////////////////////////////////////////////////
     private void printStats() {
 
         float result = 0;
+        StringBuilder b = null;
+
+        if ((resultsFormat & BINARY_RESULTS) != 0) {
+            printBinaryStats();
+        }
+        if ((resultsFormat & TEXT_RESULTS) == 0) {
+            return;
+        }
 
         float printTime = (float) (Math.round(currentTime * 10) / 10d);
         try {
+            results.setPath(resultsPath);
             //Depending on the results the user chose...
             if (outResults.contains("tb")) {
-                //Open the file
-                out = new BufferedWriter(new FileWriter(resultsPath + File.separator + "Throughput_bits.txt", true));
+                //Start a new row of the file
+                b = results.row("Throughput_bits.txt");
 
                 //Write the time
-                out.write(printTime + "\t\t");
+                b.append(printTime).append("\t\t");
 
                 //For each node
                 for (int i = 0; i < nmbrOfNodes; i++) {
                     //Write the statistic
-                    out.write(Integer.toString((int) getThrBps(nodesList.elementAt(i).params.id)) + "\t");
+                    b.append((int) thrBps(nodesList.elementAt(i))).append('\t');
                 }
                 //Print the total value and change line
-                out.write(Integer.toString((int) getSysThrBps()) + "\r\n");
-                out.close();
+                b.append((int) getSysThrBps()).append("\r\n");
+                results.endRow("Throughput_bits.txt");
             }
 
             if (outResults.contains("tp")) {
-                //Open the file
-                out = new BufferedWriter(new FileWriter(resultsPath + File.separator + "Throughput_Packets.txt", true));
-                out.write(printTime + "\t\t");
+                //Start a new row of the file
+                b = results.row("Throughput_Packets.txt");
+                b.append(printTime).append("\t\t");
 
                 for (int i = 0; i < nmbrOfNodes; i++) {
-                    out.write(Integer.toString((int) getThrPkts(nodesList.elementAt(i).params.id)) + "\t");
+                    b.append((int) thrPkts(nodesList.elementAt(i))).append('\t');
                 }
-                out.write(Integer.toString((int) getSysThrPkts()) + "\r\n");
-                out.close();
+                b.append((int) getSysThrPkts()).append("\r\n");
+                results.endRow("Throughput_Packets.txt");
             }
 
             if (outResults.contains("ut")) {
-                out = new BufferedWriter(new FileWriter(resultsPath + File.separator + "Utilization.txt", true));
-                out.write(printTime + "\t\t");
+                b = results.row("Utilization.txt");
+                b.append(printTime).append("\t\t");
 
                 for (int i = 0; i < nmbrOfNodes; i++) {
                     //Round the value in order to be printed correctly
-                    result = (float) (Math.round(getUtil(nodesList.elementAt(i).params.id) * 10000) / 10000d);
-                    out.write(Float.toString(result) + "\t");
+                    result = (float) (Math.round(util(nodesList.elementAt(i)) * 10000) / 10000d);
+                    b.append(result).append('\t');
                 }
                 result = (float) (Math.round(getSysUtil() * 10000) / 10000d);
-                out.write(Float.toString(result) + "\r\n");
-                out.close();
+                b.append(result).append("\r\n");
+                results.endRow("Utilization.txt");
             }
 
             if (outResults.contains("md")) {
-                out = new BufferedWriter(new FileWriter(resultsPath + File.separator + "Media_Access_Delay.txt", true));
-                out.write(printTime + "\t\t");
+                b = results.row("Media_Access_Delay.txt");
+                b.append(printTime).append("\t\t");
                 for (int i = 0; i < nmbrOfNodes; i++) {
-                    result = (float) (Math.round(getMDelay(nodesList.elementAt(i).params.id) * 100) / 100d);
-                    out.write(Float.toString(result) + "\t");
+                    result = (float) (Math.round(mDelay(nodesList.elementAt(i)) * 100) / 100d);
+                    b.append(result).append('\t');
                 }
-                out.write("\r\n");
-                out.close();
+                b.append("\r\n");
+                results.endRow("Media_Access_Delay.txt");
             }
 
             if (outResults.contains("qd")) {
-                out = new BufferedWriter(new FileWriter(resultsPath + File.separator + "Queuing_Delay.txt", true));
-                out.write(printTime + "\t\t");
+                b = results.row("Queuing_Delay.txt");
+                b.append(printTime).append("\t\t");
                 for (int i = 0; i < nmbrOfNodes; i++) {
                     //Round the value in order to be printed correctly
-                    result = (float) (Math.round(getQDelay(nodesList.elementAt(i).params.id) * 100) / 100d);
-                    out.write(Float.toString(result) + "\t");
+                    result = (float) (Math.round(qDelay(nodesList.elementAt(i)) * 100) / 100d);
+                    b.append(result).append('\t');
                 }
-                out.write("\r\n");
-                out.close();
+                b.append("\r\n");
+                results.endRow("Queuing_Delay.txt");
             }
 
             if (outResults.contains("td")) {
-                out = new BufferedWriter(new FileWriter(resultsPath + File.separator + "Total_Delay.txt", true));
-                out.write(printTime + "\t\t");
+                b = results.row("Total_Delay.txt");
+                b.append(printTime).append("\t\t");
                 for (int i = 0; i < nmbrOfNodes; i++) {
                     //Round the value in order to be printed correctly
-                    result = (float) (Math.round(getDelay(nodesList.elementAt(i).params.id) * 100) / 100d);
-                    out.write(Float.toString(result) + "\t");
+                    result = (float) (Math.round(delay(nodesList.elementAt(i)) * 100) / 100d);
+                    b.append(result).append('\t');
                 }
-                out.write("\r\n");
-                out.close();
+                b.append("\r\n");
+                results.endRow("Total_Delay.txt");
             }
 
             if (outResults.contains("dj")) {
-                out = new BufferedWriter(new FileWriter(resultsPath + File.separator + "Jitter.txt", true));
-                out.write(printTime + "\t\t");
+                b = results.row("Jitter.txt");
+                b.append(printTime).append("\t\t");
                 for (int i = 0; i < nmbrOfNodes; i++) {
                     //Round the value in order to be printed correctly
-                    result = (float) (Math.round(getJitter(nodesList.elementAt(i).params.id) * 100) / 100d);
-                    out.write(Float.toString(result) + "\t");
+                    result = (float) (Math.round(jitter(nodesList.elementAt(i)) * 100) / 100d);
+                    b.append(result).append('\t');
                 }
-                out.write("\r\n");
-                out.close();
+                b.append("\r\n");
+                results.endRow("Jitter.txt");
             }
             if (outResults.contains("ql")) {
-                out = new BufferedWriter(new FileWriter(resultsPath + File.separator + "Queue_Length.txt", true));
-                out.write(printTime + "\t\t");
+                b = results.row("Queue_Length.txt");
+                b.append(printTime).append("\t\t");
                 for (int i = 0; i < nmbrOfNodes; i++) {
-                    out.write(Integer.toString((int) getQLength(nodesList.elementAt(i).params.id)) + "\t");
+                    b.append((int) qLength(nodesList.elementAt(i))).append('\t');
                 }
-                out.write("\r\n");
-                out.close();
+                b.append("\r\n");
+                results.endRow("Queue_Length.txt");
             }
 
             if (outResults.contains("ra")) {
-                out = new BufferedWriter(new FileWriter(resultsPath + File.separator + "Retransmission_Attempts.txt", true));
-                out.write(printTime + "\t\t");
+                b = results.row("Retransmission_Attempts.txt");
+                b.append(printTime).append("\t\t");
                 for (int i = 0; i < nmbrOfNodes; i++) {
                     //Round the value in order to be printed correctly
-                    result = (float) (Math.round(getRatts(nodesList.elementAt(i).params.id) * 1000) / 1000d);
-                    out.write(Float.toString(result) + "\t");
+                    result = (float) (Math.round(ratts(nodesList.elementAt(i)) * 1000) / 1000d);
+                    b.append(result).append('\t');
+                }
+                b.append("\r\n");
+                results.endRow("Retransmission_Attempts.txt");
+            }
+
+            //The percentiles of the total delay are printed with the total delay.
+            if (outResults.contains("td")) {
+                b = results.row("Delay_Percentiles.txt");
+                b.append(printTime).append("\t\t");
+                for (int i = 0; i < nmbrOfNodes; i++) {
+                    appendPercentiles(b, nodesList.elementAt(i).delays[TOTAL_DELAY]);
                 }
-                out.write("\r\n");
-                out.close();
+                b.append("\r\n");
+                results.endRow("Delay_Percentiles.txt");
             }
         } catch (IOException e) {
             e.printStackTrace();
-        } catch (ElementDoesNotExistException e) {
-            e.printStackTrace();
-            System.exit(1);
         }
     }
 
+    //Appends the percentiles of a delay histogram in msec, rounded in order to be printed correctly.
+    private void appendPercentiles(StringBuilder b, DelayHistogram h) {
+        for (int p = 0; p < PERCENTILES.length; p++) {
+            float result = (float) (Math.round(toMsec(h.getValueAtPercentile(PERCENTILES[p])) * 100) / 100d);
+            b.append(result).append('\t');
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    //	*****		OfdmSlots		*****
+    //Calculates the duration in slots of the frames of an OFDM frame exchange,
+    //without the interframe spaces and the preambles. The durations are kept
+    //in a cache, as they depend only on the kind of the exchange, the data rate
+    //and the payload.
+    ////////////////////////////////////////////////////////////////////////
+    private int ofdmSlots(int kind, int rate, int payld) {
+        int slots = durations.get(kind, rate, payld);
+        if (slots != -1) {
+            return slots;
+        }
+        int RTS = SpecParams.RTS, CTS = SpecParams.CTS, MAC = SpecParams.MAC, ACK = SpecParams.ACK;
+        switch (kind) {
+            case RTS_CTS_DATA_ACK:
+                slots = (RTS + CTS + MAC + payld + ACK + padBits(rate, RTS)
+                        + padBits(rate, CTS) + padBits(rate, MAC) + padBits(rate, payld)
+                        + padBits(rate, ACK)) / (int) (rate * slot);
+                break;
+            case CTS_DATA_ACK:
+                slots = (CTS + MAC + payld + ACK + padBits(rate, CTS) + padBits(rate, MAC)
+                        + padBits(rate, payld) + padBits(rate, ACK)) / (int) (rate * slot);
+                break;
+            case DATA_ACK:
+                slots = (MAC + payld + ACK + padBits(rate, MAC) + padBits(rate, payld)
+                        + padBits(rate, ACK)) / (int) (rate * slot);
+                break;
+            case DATA:
+                slots = (MAC + payld + padBits(rate, MAC) + padBits(rate, payld))
+                        / (int) (rate * slot);
+                break;
+            case RTS_ACK:
+                slots = (RTS + ACK + padBits(rate, RTS) + padBits(rate, ACK)) / (int) (rate * slot);
+                break;
+            default:
+                slots = (CTS + padBits(rate, CTS)) / (int) (rate * slot);
+        }
+        durations.put(kind, rate, payld, slots);
+        return slots;
+    }
+
     ////////////////////////////////////////////////////////////////////////
     //	*****		PadBits		*****
     //Calculates the Pad bits of an OFDM transmission.
@@ -971,6 +1045,9 @@ public class Simulator {
             nodesList.elementAt(i).jitter = 0;
             nodesList.elementAt(i).queueLength = 0;
             nodesList.elementAt(i).collisions = 0;
+            for (int d = 0; d < nodesList.elementAt(i).delays.length; d++) {
+                nodesList.elementAt(i).delays[d].reset();
+            }
         }
     }
 
@@ -980,7 +1057,7 @@ public class Simulator {
     //when another node transmits.//////////////////////////////////////////////////////////////////////////
     ////////////////////////////////////////////////////////////////////////////////////////////////////////
     private void freeze() {
-        int thisDur = 0; // Helpful variable.
+        long thisDur = 0; // Helpful variable.
         MobileNode n = null;
         transTimeRemaining--;
         if (transTimeRemaining == 0) {
@@ -992,14 +1069,15 @@ public class Simulator {
             // the station transmitted with RTS/CTS enabled.
             transmitWithRTS = false;
 
-            for (int i = 0; i < nmbrOfNodes; i++) {
-                n = (MobileNode) nodesList.elementAt(i);
-                // Disable the nowTransmitting flag.
-                n.nowTransmitting = false;
+            // Disable the nowTransmitting flag.
+            NodeState.clear(nodeState.transmitting);
 
-                // If a station finishes a successful transmission:
-                if (n.successfullyTransmitting == true) {
-                    n.successfullyTransmitting = false;
+            // If a station finishes a successful transmission:
+            for (int w = 0; w < nodeState.success.length; w++) {
+                while (nodeState.success[w] != 0) {
+                    int i = (w << 6) + Long.numberOfTrailingZeros(nodeState.success[w]);
+                    n = (MobileNode) nodesList.elementAt(i);
+                    nodeState.success[w] &= nodeState.success[w] - 1;
                     // Increase the number of successfully
                     // transmitted packets and bits.
                     n.successfulTransmissions++;
@@ -1007,26 +1085,30 @@ public class Simulator {
 
                     // Calculate the duration of the transmission
                     // (media access delay) and add it to the statistic.
-                    n.transmissionDuration += MobileNode.timer - n.transmissionStart + 1;
+                    n.transmissionDuration += context.timer - n.transmissionStart + 1;
+                    n.delays[MEDIA_ACCESS_DELAY].record(context.timer - n.transmissionStart + 1);
 
                     // Calculate the total delay of the transmission,
-                    thisDur = (int) (MobileNode.timer - n.getPacketBuffer().firstPacket().generationTime);
+                    thisDur = context.timer - n.getPacketBuffer().firstGenerationTime();
+                    // (the queuing and the media access delay).
+                    n.delays[TOTAL_DELAY].record(thisDur + 1);
 
                     // find it's square and add it to the jitter statistic.
                     // This will be divided at the end with the mean total
-                    // delay to find the delay jitter.
-                    n.jitter += (int) Math.pow((double) thisDur, (double) 2);
+                    // delay to find the delay jitter. The square is a long,
+                    // as it overflows an int for delays above 46340 slots.
+                    n.jitter += thisDur * thisDur;
 
                     // Remove the packet from the packet queue.
                     n.getPacketBuffer().dequeue();
 
                     // Disable the 'have packet to send flag, which means
                     // that the station has no packet in the transmitter.
-                    n.havePktToSend = false;
+                    NodeState.set(nodeState.havePkt, i, false);
 
                     // Mark the time the packet was successfully
                     // transmitted. (used for the backoff procedure).
-                    n.lastPktTrans = MobileNode.timer;
+                    n.lastPktTrans = context.timer;
                 }
             }
         }
@@ -1042,33 +1124,228 @@ public class Simulator {
         MobileNode n = (MobileNode) nodesList.elementAt(i);
 
         // Get the length of the packet (holded in the queue, not the source).
-        n.pktLength = n.getPacketBuffer().firstPacket().length;
+        n.pktLength = n.getPacketBuffer().firstLength();
 
         // Calculate the queuing delay of the packet.
-        n.queuingDelay += MobileNode.timer - n.getPacketBuffer().firstPacket().generationTime;
+        n.queuingDelay += context.timer - n.getPacketBuffer().firstGenerationTime();
+        n.delays[QUEUING_DELAY].record(context.timer - n.getPacketBuffer().firstGenerationTime());
         // Do not yet remove the packet from the queue.
         // This will be done when its transmission is finished.
         // Initialize the contention window and the backoff counter
         // depending on the time the last packet was transmitted.
-        idleDur = (int) (MobileNode.timer - n.lastPktTrans);
+        idleDur = (int) (context.timer - n.lastPktTrans);
 
         // If the last packet was transmitted before a DIFS time
         if (idleDur > (int) (n.params.aifsd / slot)) {
             n.contWind = n.params.cwMin;
-            n.backoffCounter = 0;
+            nodeState.backoff[i] = 0;
         } else {
             n.contWind = n.params.cwMin;
-            n.backoffCounter = n.InitBackoff(n.params.cwMin);
+            nodeState.backoff[i] = n.InitBackoff(n.params.cwMin);
         }
 
         // Mark the time the packet is picked up from the queue for
         // transmission. Used for the calculation of the transmission
         // delay statistic.
-        n.transmissionStart = MobileNode.timer;
+        n.transmissionStart = context.timer;
 
         // Enable the flag 'have packet to send' which means that the node
         // has a packet for transmission in the transmitter.
-        n.havePktToSend = true;
+        NodeState.set(nodeState.havePkt, i, true);
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////
+    //		******	SimulateSlot	*******
+    //Simulates a single slot: configures the nodes (sources and packet buffers) and then
+    //the nodes compete for the medium.
+    /////////////////////////////////////////////////////////////////////////////////////
+    private void simulateSlot(long currentSlot) {
+        MobileNode n = null;
+        SimulatorMetrics metrics = context.metrics;
+        long start = (metrics != null) ? System.nanoTime() : 0;
+
+        // Synchronize the timer of each node with the current slot.
+        context.timer = currentSlot;
+
+        //Configure the nodes
+        for (int i = 0; i < nmbrOfNodes; i++) {
+            n = (MobileNode) nodesList.elementAt(i);
+
+            //Take a packet from each source, if exists, and put it to the packet buffer
+            n.pollPacketsFromSources(currentSlot);
+
+            // If no packet is under transmission and if a packet
+            // exists in the queue, take the packet from the queue
+            // for transmission.
+            if ((NodeState.isSet(nodeState.havePkt, i) == false) && (n.getPacketBuffer().isEmpty() == false)) {
+                takePacketFromQueue(i);
+            }
+
+            // Calculate the queue length.
+            // Add the current queue length to the statistic.
+            // At the end it will be divided with the number of slots in
+            // order to find the mean queue length.
+            n.queueLength += (float) n.getPacketBuffer().size();
+        }
+        long configured = (metrics != null) ? System.nanoTime() : 0;
+        // Begin to compete for the medium (empty slot, successful
+        // transmission or collision).
+        fightForSlot();
+        if (metrics != null) {
+            metrics.configureNanos += configured - start;
+            metrics.fightNanos += System.nanoTime() - configured;
+        }
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////
+    //		******	UpdateProgress	*******
+    //Updates the time and the progress that the GUI (or the program that calls the
+    //Simulator instance) reads, every progressSlots slots and at the end of each interval.
+    /////////////////////////////////////////////////////////////////////////////////////
+    private void updateProgress(long currentSlot) {
+        // This variable gives the time to the GUI for the interface or the
+        // program that calls the Simulator instance.
+        currentTime = (float) (currentSlot * slot);
+
+        // This variable gives the percentage progress to the GUI for the
+        // progress bar
+        progress = (short) (currentSlot * slot / (float) totalTime * 100);
+        // Some times rounding problems exist, causing progress to reach
+        // until 99%.
+        // The above statement solves the problem.
+        if (currentTime == (float) totalTime) {
+            progress = 100;
+        }
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////
+    //		******	IdleSlots	*******
+    //Used by the event-driven engine. Finds the number of slots, starting from currentSlot,
+    //in which nothing happens except from decreasing counters: no source generates a packet,
+    //no node picks up a packet from its queue, no node wants to transmit and no transmission
+    //ends. These slots can be simulated at once by skipSlots, with exactly the same results.
+    /////////////////////////////////////////////////////////////////////////////////////
+    private long idleSlots(long currentSlot, long maxSlots) {
+        long idle = maxSlots;
+        MobileNode n = null;
+
+        for (int i = 0; i < nmbrOfNodes && idle > 0; i++) {
+            n = nodesList.elementAt(i);
+            // A packet will be picked up from the queue.
+            if ((NodeState.isSet(nodeState.havePkt, i) == false) && (n.getPacketBuffer().isEmpty() == false)) {
+                return 0;
+            }
+            // The next packet of each source.
+            idle = Math.min(idle, n._srcManager.idleSlots(currentSlot));
+        }
+
+        // If no transmission is in progress, every node decreases its backoff counter.
+        // The first node whose counter expires will try to transmit.
+        if (transmissionPending == false) {
+            for (int i = 0; i < nmbrOfNodes && idle > 0; i++) {
+                if ((NodeState.isSet(nodeState.request, i) == true)
+                        || (NodeState.isSet(nodeState.transmitting, i) == true)) {
+                    return 0;
+                }
+                if (NodeState.isSet(nodeState.havePkt, i) == true) {
+                    idle = Math.min(idle, nodeState.backoff[i]);
+                }
+            }
+        } //If a transmission is in progress, all nodes freeze until it ends, except from
+        //the hidden terminals that still decrease their backoff counters. If one of them
+        //wants to transmit a collision occurs.
+        else {
+            idle = Math.min(idle, transTimeRemaining - 1);
+            if (transmitWithRTS == false) {
+                coverageMap.markTransmitting(nodesList, nodeState);
+                for (int i = 0; i < nmbrOfNodes && idle > 0; i++) {
+                    if ((NodeState.isSet(nodeState.transmitting, i) == false) && (coverageMap.isHidden(i) == true)) {
+                        if (NodeState.isSet(nodeState.request, i) == true) {
+                            return 0;
+                        }
+                        if (NodeState.isSet(nodeState.havePkt, i) == true) {
+                            idle = Math.min(idle, nodeState.backoff[i]);
+                        }
+                    }
+                }
+            }
+        }
+        return (idle > 0) ? idle : 0;
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////
+    //		******	SkipSlots	*******
+    //Used by the event-driven engine. Simulates a number of idle slots (see idleSlots)
+    //at once. The state of the nodes and the statistics are the same as if the slots
+    //were simulated one by one.
+    /////////////////////////////////////////////////////////////////////////////////////
+    private void skipSlots(long currentSlot, long slots) {
+        MobileNode n = null;
+        long lastSlot = currentSlot + slots - 1;
+        SimulatorMetrics metrics = context.metrics;
+        long start = (metrics != null) ? System.nanoTime() : 0;
+
+        context.timer = lastSlot;
+
+        for (int i = 0; i < nmbrOfNodes; i++) {
+            n = nodesList.elementAt(i);
+            n._srcManager.skipSlots(slots);
+            n.queueLength = addQueueLength(n.queueLength, n.getPacketBuffer().size(), slots);
+        }
+
+        //Empty slots
+        int[] backoff = nodeState.backoff;
+        if (transmissionPending == false) {
+            for (int i = 0; i < nmbrOfNodes; i++) {
+                backoff[i] = (int) Math.max(0, backoff[i] - slots);
+            }
+        } //Freeze
+        else {
+            coverageMap.markTransmitting(nodesList, nodeState);
+            for (int i = 0; i < nmbrOfNodes; i++) {
+                boolean transmitting = NodeState.isSet(nodeState.transmitting, i);
+                //The nodes whose backoff counter has expired, keep on requesting to transmit.
+                if ((transmitting == false) && (NodeState.isSet(nodeState.havePkt, i) == true)
+                        && (backoff[i] == 0)) {
+                    NodeState.set(nodeState.request, i, true);
+                }
+                //The hidden terminals decrease their backoff counters.
+                if ((transmitWithRTS == false) && (transmitting == false)
+                        && (backoff[i] > 0) && (coverageMap.isHidden(i) == true)) {
+                    backoff[i] = (int) Math.max(0, backoff[i] - slots);
+                }
+            }
+            transTimeRemaining -= slots;
+        }
+
+        if (metrics != null) {
+            if (transmissionPending == false) {
+                metrics.emptySlots += slots;
+            } else {
+                metrics.freezeSlots += slots;
+            }
+            metrics.skippedSlots += slots;
+            metrics.skipNanos += System.nanoTime() - start;
+        }
+    }
+
+    /////////////////////////////////////////////////////////////////////////////////////
+    //		******	AddQueueLength	*******
+    //Adds the queue size to the queue length statistic once for each slot. The statistic
+    //is updated with float arithmetic in simulateSlot, so the result is rounded the same way.
+    /////////////////////////////////////////////////////////////////////////////////////
+    private static long addQueueLength(long queueLength, int size, long slots) {
+        //Float values up to 2^24 are exact.
+        if (queueLength + slots * size <= (1L << 24)) {
+            return queueLength + slots * size;
+        }
+        if (size == 0) {
+            return (long) (float) queueLength;
+        }
+        for (long k = 0; k < slots; k++) {
+            queueLength += (float) size;
+        }
+        return queueLength;
     }
 
     ///////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -1092,6 +1369,9 @@ public class Simulator {
             n.totSuccessfulTransmissions += n.successfulTransmissions;
             successForAllNodes += n.successfulTransmissions;//added by simon
             n.totTransmissionDurations += n.transmissionDuration;
+            for (int d = 0; d < n.delays.length; d++) {
+                n.totDelays[d].add(n.delays[d]);
+            }
 
         }
     }
@@ -1103,34 +1383,35 @@ public class Simulator {
      * @throws ElementDoesNotExistException
      */
     public MobileNode getNode(int nodeId) throws ElementDoesNotExistException {
-        MobileNode nd = null;
-        for (int i = 0; i < nodesList.size(); i++) {
-            if (nodesList.elementAt(i).params.id == nodeId) {
-                nd = nodesList.elementAt(i);
-                break;
-            }
-        }
-        if (nd == null) {
+        int position = nodeIndex.get(nodeId);
+        if (position == -1) {
             throw new ElementDoesNotExistException("Node " + nodeId + " does not exist.");
         }
-        return nd;
+        return nodesList.elementAt(position);
     }
 
     /**
      * Simulates a specific time interval. First, this interval is simulated and then results are
      * collected. These results refer to this interval only. Be careful on how to call the simulate function.
      * e.g. For simulating from 0 to 10sec: simulate(1,10000). For simulating from 10sec to 20sec: simulate(10001,20000)
+     * If the simulation has a control (see setControl), the interval may end earlier, when the simulation is cancelled
+     * or its budget runs out.
      * @param startTime The start time of the simulation interval in miliseconds.
      * @param endTime The end time of the simulation interval in miliseconds.
      */
     public void simulate(long startTime, long endTime) {
-        MobileNode n = null;
+        // A stopped simulation does not continue.
+        if (stopped || ((control != null) && ((control.proceed() == false) || (control.getRemainingSlots() == 0)))) {
+            stopped = true;
+            return;
+        }
         // Reset the counters that hold the simulation results.
         // Useful only if the simulate() method is called many times from the
         // interface. It has no effect
         // if the simulator is called only once (like the original version of
         // Pamvotis).
         resetResultCounters();
+        nodeState.update(nodesList);
         collisionsForAllNodes = 0;
         successForAllNodes = 0;
         // Calculate the duration if the current simulation interval.
@@ -1138,63 +1419,54 @@ public class Simulator {
         simTime = (long) ((endTime - startTime + 1) / slot / 1000);
 
         // Transform startTime and endTime in slots.
-        startTime = (long) ((startTime - 1) / slot / 1000 + 1);
-        endTime = (long) (endTime / slot / 1000);
-        Vector<Packet> newPackets = null;
+        long firstSlot = (long) ((startTime - 1) / slot / 1000 + 1);
+        long lastSlot = (long) (endTime / slot / 1000);
+        // The slot budget is applied exactly, by reserving the slots of the interval
+        // and ending the interval earlier if they are not enough.
+        if (control != null) {
+            long reserved = control.reserve(lastSlot - firstSlot + 1);
+            if (reserved < lastSlot - firstSlot + 1) {
+                lastSlot = firstSlot + reserved - 1;
+                stopped = true;
+            }
+        }
+        // The progress is updated every progressSlots slots, between slots.
+        long nextProgress = firstSlot + progressSlots;
         // Start the simulation
-        for (long currentSlot = startTime; currentSlot <= endTime; currentSlot++) {
-
-            // Synchronize the timer of each node with the current slot.
-            // nodesList.elementAt(i).timer = currentSlot;
-            MobileNode.timer = currentSlot;
-            Source.timer = currentSlot;
-
-            //Configure the nodes
-            for (int i = 0; i < nmbrOfNodes; i++) {
-                n = (MobileNode) nodesList.elementAt(i);
-                for (int j = 0; j < n._srcManager._vActiveSources.size(); j++) {
-                    n._srcManager._vActiveSources.elementAt(j).synchronize();
-                }
-
-                //Take a packet from each source, if exists
-                newPackets = n.pollPacketsFromSources();
-
-                //Put the polled packets to the packet buffer
-                if (!newPackets.isEmpty()) {
-                    n.getPacketBuffer().enqueue(newPackets);
-                }
-
-                // If no packet is under transmission and if a packet
-                // exists in the queue, take the packet from the queue
-                // for transmission.
-                if ((n.havePktToSend == false) && (n.getPacketBuffer().isEmpty() == false)) {
-                    takePacketFromQueue(i);
-                }
-
-                // Calculate the queue length.
-                // Add the current queue length to the statistic.
-                // At the end it will be divided with the number of slots in
-                // order to find the mean queue length.
-                n.queueLength += (float) n.getPacketBuffer().size();
+        for (long currentSlot = firstSlot; currentSlot <= lastSlot;) {
+            // In the event-driven mode, jump over the slots where nothing
+            // happens. Otherwise simulate the slot.
+            long idle = 0;
+            if (eventDriven) {
+                idle = idleSlots(currentSlot, lastSlot - currentSlot + 1);
             }
-            // Begin to compete for the medium (empty slot, successful
-            // transmission or collision).
-            fightForSlot();
-
-            // This variable gives the time to the GUI for the interface or the
-            // program that calls the Simulator instance.
-            currentTime = (float) (currentSlot * slot);
-
-            // This variable gives the percentage progress to the GUI for the
-            // progress bar
-            progress = (short) (currentSlot * slot / (float) totalTime * 100);
-            // Some times rounding problems exist, causing progress to reach
-            // until 99%.
-            // The above statement solves the problem.
-            if (currentTime == (float) totalTime) {
-                progress = 100;
+            if (idle > 0) {
+                skipSlots(currentSlot, idle);
+                currentSlot += idle;
+            } else {
+                simulateSlot(currentSlot);
+                currentSlot++;
+            }
+            if ((currentSlot >= nextProgress) && (currentSlot <= lastSlot)) {
+                updateProgress(currentSlot - 1);
+                fireProgress();
+                nextProgress = currentSlot + progressSlots;
+                // Pause here, or end the interval at this slot if the simulation must stop.
+                if ((control != null) && (control.proceed() == false)) {
+                    control.release(lastSlot - currentSlot + 1);
+                    lastSlot = currentSlot - 1;
+                    stopped = true;
+                }
             }
         }
+        if (lastSlot >= firstSlot) {
+            updateProgress(lastSlot);
+            fireProgress();
+        }
+        // The statistics of a stopped interval concern only the slots simulated.
+        if (stopped) {
+            simTime = lastSlot - firstSlot + 1;
+        }
 
         // Add the values of the result counters to the counters that hold the
         // total results
@@ -1203,6 +1475,103 @@ public class Simulator {
         updateMeanResults();
         // Print the statistics of the current simulation interval to the files.
         printStats();
+        fireIntervalFinished(startTime, endTime);
+        if (stopped) {
+            try {
+                results.flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    //The duration of the simulation in seconds, for the mean values. If the simulation was
+    //stopped, only the time simulated counts.
+    private float meanDuration() {
+        return stopped ? (float) currentTime : (float) totalTime;
+    }
+
+    //Notifies the listeners about the progress.
+    private void fireProgress() {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).progress(this, progress, currentTime);
+        }
+    }
+
+    //Notifies the listeners about the end of an interval, with the statistics of the interval.
+    private void fireIntervalFinished(long startTime, long endTime) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        float[] system = {getSysThrBps(), getSysThrPkts(), getSysUtil()};
+        IntervalResults results = new IntervalResults(startTime, endTime, currentTime, currentStrategy,
+                successForAllNodes, collisionsForAllNodes, getNodeIds(), getAllStatistics(), system);
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).intervalFinished(this, results);
+        }
+    }
+
+    //////////////////////////////////////////////////////////////////////
+    //	*****			PrintBinaryStats			*****
+    //Adds the statistic results of the last interval to the binary results.
+    //The values are not rounded. The file is written by printMeanValues.
+    //////////////////////////////////////////////////////////////////////
+    private void printBinaryStats() {
+        if (binaryResults == null) {
+            startBinaryResults();
+        }
+        binaryResults.addRow((float) currentTime);
+        try {
+            for (int c = 0; c < binaryResults.getColumns(); c++) {
+                binaryResults.set(c, getStatistic(binaryResults.getMetric(c), binaryResults.getNode(c)));
+            }
+        } catch (ElementDoesNotExistException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    //Starts collecting the binary results of the current scenario.
+    private void startBinaryResults() {
+        binaryResults = new BinaryResultsWriter(seed, totalTime, values, slot, phyLayer, rtsThr, ctsToSelf,
+                mixNodes, nodesList, outResults);
+    }
+
+    //Finds the value of a statistic of the last interval, by its two-character code.
+    private float getStatistic(String metric, int nodeId) throws ElementDoesNotExistException {
+        if (nodeId == BinaryResultsReader.SYSTEM) {
+            if (metric.equals("tb")) {
+                return getSysThrBps();
+            } else if (metric.equals("tp")) {
+                return getSysThrPkts();
+            }
+            return getSysUtil();
+        }
+        return statistic(BinaryResultsReader.metricIndex(metric), getNode(nodeId));
+    }
+
+    //Finds the value of a statistic of a node for the last interval, by its index in BinaryResultsReader.METRICS.
+    private float statistic(int metric, MobileNode n) {
+        switch (metric) {
+            case 0:
+                return thrBps(n);
+            case 1:
+                return thrPkts(n);
+            case 2:
+                return util(n);
+            case 3:
+                return mDelay(n);
+            case 4:
+                return qDelay(n);
+            case 5:
+                return delay(n);
+            case 6:
+                return jitter(n);
+            case 7:
+                return qLength(n);
+            default:
+                return ratts(n);
+        }
     }
 
     /**
@@ -1213,116 +1582,139 @@ public class Simulator {
      */
     public void printHeaders() {
 
+        if ((resultsFormat & BINARY_RESULTS) != 0) {
+            startBinaryResults();
+        }
+        if ((resultsFormat & TEXT_RESULTS) == 0) {
+            return;
+        }
+
+        StringBuilder b = null;
         try {
+            results.setPath(resultsPath);
             //Print the headers of the 'throughput in bits' file.
             if (outResults.contains("tb")) {
-                out = new BufferedWriter(new FileWriter(resultsPath + File.separator + "Throughput_bits.txt"));
+                b = results.header("Throughput_bits.txt");
 
                 //MAJOR: USE \r\n INSTEAD OF \n
 
-                out.write("\t\t\t*****\t Throughput (Kbits/s)\t*****\r\n\r\n\r\n");
-                out.write("Time (sec)\t");
+                b.append("\t\t\t*****\t Throughput (Kbits/s)\t*****\r\n\r\n\r\n");
+                b.append("Time (sec)\t");
                 for (int i = 1; i <= nmbrOfNodes; i++) {
-                    out.write("Node " + i + "\t");
+                    b.append("Node ").append(i).append('\t');
                 }
-                out.write("System\r\n");
-                out.close();
+                b.append("System\r\n");
+                results.endRow("Throughput_bits.txt");
             }
 
             //Print the headers of the 'throughput in packets' file.
             if (outResults.contains("tp")) {
-                out = new BufferedWriter(new FileWriter(resultsPath + File.separator + "Throughput_Packets.txt"));
-                out.write("\t\t\t*****\t Throughput (packets/s)\t*****\r\n\r\n\r\n");
-                out.write("Time (sec)\t");
+                b = results.header("Throughput_Packets.txt");
+                b.append("\t\t\t*****\t Throughput (packets/s)\t*****\r\n\r\n\r\n");
+                b.append("Time (sec)\t");
                 for (int i = 1; i <= nmbrOfNodes; i++) {
-                    out.write("Node " + i + "\t");
+                    b.append("Node ").append(i).append('\t');
                 }
-                out.write("System\r\n");
-                out.close();
+                b.append("System\r\n");
+                results.endRow("Throughput_Packets.txt");
             }
 
             //Print the headers of the 'utilization' file.
             if (outResults.contains("ut")) {
-                out = new BufferedWriter(new FileWriter(resultsPath + File.separator + "Utilization.txt"));
-                out.write("\t\t\t*****\t Utilization\t*****\r\n\r\n\r\n");
-                out.write("Time (sec)\t");
+                b = results.header("Utilization.txt");
+                b.append("\t\t\t*****\t Utilization\t*****\r\n\r\n\r\n");
+                b.append("Time (sec)\t");
                 for (int i = 1; i <= nmbrOfNodes; i++) {
-                    out.write("Node " + i + "\t");
+                    b.append("Node ").append(i).append('\t');
                 }
-                out.write("System\r\n");
-                out.close();
+                b.append("System\r\n");
+                results.endRow("Utilization.txt");
             }
 
             //Print the headers of the 'media access delay' file.
             if (outResults.contains("md")) {
-                out = new BufferedWriter(new FileWriter(resultsPath + File.separator + "Media_Access_Delay.txt"));
-                out.write("\t\t\t*****\t Media Access Delay (msec) \t*****\r\n\r\n\r\n");
-                out.write("Time (sec)\t");
+                b = results.header("Media_Access_Delay.txt");
+                b.append("\t\t\t*****\t Media Access Delay (msec) \t*****\r\n\r\n\r\n");
+                b.append("Time (sec)\t");
                 for (int i = 1; i <= nmbrOfNodes; i++) {
-                    out.write("Node " + i + "\t");
+                    b.append("Node ").append(i).append('\t');
                 }
-                out.write("\r\n");
-                out.close();
+                b.append("\r\n");
+                results.endRow("Media_Access_Delay.txt");
             }
 
             //Print the headers of the 'queuing delay' file.
             if (outResults.contains("qd")) {
-                out = new BufferedWriter(new FileWriter(resultsPath + File.separator + "Queuing_Delay.txt"));
-                out.write("\t\t\t*****\t Queuing Delay (msec) \t*****\r\n\r\n\r\n");
-                out.write("Time (sec)\t");
+                b = results.header("Queuing_Delay.txt");
+                b.append("\t\t\t*****\t Queuing Delay (msec) \t*****\r\n\r\n\r\n");
+                b.append("Time (sec)\t");
                 for (int i = 1; i <= nmbrOfNodes; i++) {
-                    out.write("Node " + i + "\t");
+                    b.append("Node ").append(i).append('\t');
                 }
-                out.write("\r\n");
-                out.close();
+                b.append("\r\n");
+                results.endRow("Queuing_Delay.txt");
             }
 
             //Print the headers of the 'total delay' file.
             if (outResults.contains("td")) {
-                out = new BufferedWriter(new FileWriter(resultsPath + File.separator + "Total_Delay.txt"));
-                out.write("\t\t\t*****\t Total Packet Delay (msec) \t*****\r\n\r\n\r\n");
-                out.write("Time (sec)\t");
+                b = results.header("Total_Delay.txt");
+                b.append("\t\t\t*****\t Total Packet Delay (msec) \t*****\r\n\r\n\r\n");
+                b.append("Time (sec)\t");
                 for (int i = 1; i <= nmbrOfNodes; i++) {
-                    out.write("Node " + i + "\t");
+                    b.append("Node ").append(i).append('\t');
                 }
-                out.write("\r\n");
-                out.close();
+                b.append("\r\n");
+                results.endRow("Total_Delay.txt");
             }
 
             //Print the headers of the 'delay Jitter' file.
             if (outResults.contains("dj")) {
-                out = new BufferedWriter(new FileWriter(resultsPath + File.separator + "Jitter.txt"));
-                out.write("\t\t\t*****\t Delay Jitter (msec) \t*****\r\n\r\n\r\n");
-                out.write("Time (sec)\t");
+                b = results.header("Jitter.txt");
+                b.append("\t\t\t*****\t Delay Jitter (msec) \t*****\r\n\r\n\r\n");
+                b.append("Time (sec)\t");
                 for (int i = 1; i <= nmbrOfNodes; i++) {
-                    out.write("Node " + i + "\t");
+                    b.append("Node ").append(i).append('\t');
                 }
-                out.write("\r\n");
-                out.close();
+                b.append("\r\n");
+                results.endRow("Jitter.txt");
             }
 
             //Print the headers of the 'queue length' file.
             if (outResults.contains("ql")) {
-                out = new BufferedWriter(new FileWriter(resultsPath + File.separator + "Queue_Length.txt"));
-                out.write("\t\t\t*****\t Packet Queue Length\t*****\r\n\r\n\r\n");
-                out.write("Time (sec)\t");
+                b = results.header("Queue_Length.txt");
+                b.append("\t\t\t*****\t Packet Queue Length\t*****\r\n\r\n\r\n");
+                b.append("Time (sec)\t");
                 for (int i = 1; i <= nmbrOfNodes; i++) {
-                    out.write("Node " + i + "\t");
+                    b.append("Node ").append(i).append('\t');
                 }
-                out.write("\r\n");
-                out.close();
+                b.append("\r\n");
+                results.endRow("Queue_Length.txt");
             }
 
             //Print the headers of the 'Retransmission Attempts' file.
             if (outResults.contains("ra")) {
-                out = new BufferedWriter(new FileWriter(resultsPath + File.separator + "Retransmission_Attempts.txt"));
-                out.write("\t\t\t*****\t Retransmission Attempts\t*****\r\n\r\n\r\n");
-                out.write("Time (sec)\t");
+                b = results.header("Retransmission_Attempts.txt");
+                b.append("\t\t\t*****\t Retransmission Attempts\t*****\r\n\r\n\r\n");
+                b.append("Time (sec)\t");
+                for (int i = 1; i <= nmbrOfNodes; i++) {
+                    b.append("Node ").append(i).append('\t');
+                }
+                b.append("\r\n");
+                results.endRow("Retransmission_Attempts.txt");
+            }
+
+            //Print the headers of the 'delay percentiles' file, printed with the total delay.
+            if (outResults.contains("td")) {
+                b = results.header("Delay_Percentiles.txt");
+                b.append("\t\t\t*****\t Total Packet Delay Percentiles (msec) \t*****\r\n\r\n\r\n");
+                b.append("Time (sec)\t");
                 for (int i = 1; i <= nmbrOfNodes; i++) {
-                    out.write("Node " + i + "\t");
+                    for (int p = 0; p < PERCENTILES.length; p++) {
+                        b.append("Node ").append(i).append(" p").append(PERCENTILE_NAMES[p]).append('\t');
+                    }
                 }
-                out.write("\r\n");
-                out.close();
+                b.append("\r\n");
+                results.endRow("Delay_Percentiles.txt");
             }
         } catch (IOException e) {
             e.printStackTrace();
@@ -1332,32 +1724,47 @@ public class Simulator {
 
     /**
      * Prints the mean statistic results to text file. These mean results concern the whole simulation
-     * and all the times the simulate() method was called.
+     * and all the times the simulate() method was called. If the binary results format is enabled, the
+     * binary results file is written too.
      */
     public void printMeanValues() {
 
+        boolean text = (resultsFormat & TEXT_RESULTS) != 0;
         float thrBt = 0, thrPkt = 0, util = 0, mDel = 0, qDel = 0, tDel = 0, jitter = 0, rAtts = 0, qLngth = 0;
         float thrTotBt = 0;
         float thrTotPkt = 0;
         float utilTot = 0;
 
         try {
-            out = new BufferedWriter(new FileWriter(resultsPath + File.separator + "Mean_Values.txt"));
-            //Open the file and print the headers
-            out.write("\t\t\t*****\t Mean Statistic Values\t*****\r\n\r\n");
-            out.write("Node\tThroughput\tThroughput\t");
-            out.write("Utilization\tMedia Access Delay\t");
-            out.write("Queuing Delay\tTotal Packet Delay\tDelay Jitter\t");
-            out.write("Queue Length\tRetransmission Attempts\r\n");
-            out.write("\t(Kbits/s)\t(packets/s)\t\t\t(msec)\t\t\t(msec)");
-            out.write("\t\t(msec)\t\t\t(msec)\r\n");
+            //Write the remaining rows of the statistic files
+            results.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        if (((resultsFormat & BINARY_RESULTS) != 0) && (binaryResults == null)) {
+            startBinaryResults();
+        }
+
+        try {
+            if (text) {
+                out = new BufferedWriter(new FileWriter(resultsPath + File.separator + "Mean_Values.txt"));
+                //Open the file and print the headers
+                out.write("\t\t\t*****\t Mean Statistic Values\t*****\r\n\r\n");
+                out.write("Node\tThroughput\tThroughput\t");
+                out.write("Utilization\tMedia Access Delay\t");
+                out.write("Queuing Delay\tTotal Packet Delay\tDelay Jitter\t");
+                out.write("Queue Length\tRetransmission Attempts\r\n");
+                out.write("\t(Kbits/s)\t(packets/s)\t\t\t(msec)\t\t\t(msec)");
+                out.write("\t\t(msec)\t\t\t(msec)\r\n");
+            }
 
             //Fore each node...
             for (int i = 0; i < nmbrOfNodes; i++) {
                 //Calculate each statistic
-                thrBt = (float) nodesList.elementAt(i).totSuccessfulBits / (float) totalTime / 1000;
+                thrBt = (float) nodesList.elementAt(i).totSuccessfulBits / meanDuration() / 1000;
                 thrTotBt += thrBt;
-                thrPkt = (float) nodesList.elementAt(i).totSuccessfulTransmissions / (float) totalTime;
+                thrPkt = (float) nodesList.elementAt(i).totSuccessfulTransmissions / meanDuration();
                 thrTotPkt += thrPkt;
                 util = (float) thrBt * 1000 / (float) nodesList.elementAt(i).params.rate;
                 utilTot += util;
@@ -1373,9 +1780,16 @@ public class Simulator {
                         - (float) Math.pow((float) tDel, 2);
                 jitter = (float) Math.sqrt((float) jitter);
                 jitter = jitter * slot * 1000;
-                qLngth = (float) nodesList.elementAt(i).totQueueLength / (float) totalTime * slot;
+                qLngth = (float) nodesList.elementAt(i).totQueueLength / meanDuration() * slot;
                 rAtts = (float) nodesList.elementAt(i).totCollisions
                         / (float) nodesList.elementAt(i).totSuccessfulTransmissions;
+                //The binary file keeps the values as they are
+                if (binaryResults != null) {
+                    float[] means = {thrBt, thrPkt, util, mDel, qDel, tDel, jitter, qLngth, rAtts};
+                    for (int m = 0; m < means.length; m++) {
+                        binaryResults.setMean(i, m, means[m]);
+                    }
+                }
                 //Round the values in order to be printed correctly
                 thrBt = (float) Math.round(thrBt);
                 thrPkt = (float) Math.round(thrPkt);
@@ -1387,10 +1801,22 @@ public class Simulator {
                 rAtts = (float) (Math.round(rAtts * 1000) / 1000d);
 
                 //Print the values to the file
-                out.write(i + 1 + "\t" + (int) thrBt + "\t\t");
-                out.write((int) thrPkt + "\t\t" + util + "\t\t");
-                out.write(mDel + "\t\t\t" + qDel + "\t\t" + tDel + "\t\t\t");
-                out.write(jitter + "\t\t" + (int) qLngth + "\t\t" + rAtts + "\r\n");
+                if (text) {
+                    out.write(i + 1 + "\t" + (int) thrBt + "\t\t");
+                    out.write((int) thrPkt + "\t\t" + util + "\t\t");
+                    out.write(mDel + "\t\t\t" + qDel + "\t\t" + tDel + "\t\t\t");
+                    out.write(jitter + "\t\t" + (int) qLngth + "\t\t" + rAtts + "\r\n");
+                }
+            }
+
+            if (binaryResults != null) {
+                binaryResults.setMean(nmbrOfNodes, 0, thrTotBt);
+                binaryResults.setMean(nmbrOfNodes, 1, thrTotPkt);
+                binaryResults.setMean(nmbrOfNodes, 2, utilTot);
+                binaryResults.write(new File(resultsPath, "Results.bin"));
+            }
+            if (text == false) {
+                return;
             }
 
             //Round the values of the global utilization statistics
@@ -1404,11 +1830,64 @@ public class Simulator {
 
             //close the file
             out.close();
+
+            if (outResults.contains("td")) {
+                printMeanPercentiles();
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    //Prints the percentiles of the delays in the whole simulation, for each node, for each access category
+    //that has nodes and for the whole system.
+    private void printMeanPercentiles() throws IOException {
+        StringBuilder b = new StringBuilder();
+        b.append("\t\t\t*****\t Delay Percentiles (msec)\t*****\r\n\r\n");
+        b.append("Node\tQueuing Delay\t\t\t\tMedia Access Delay\t\t\t\tTotal Packet Delay\r\n");
+        for (int d = 0; d < 3; d++) {
+            for (int p = 0; p < PERCENTILES.length; p++) {
+                b.append("\tp").append(PERCENTILE_NAMES[p]);
+            }
+        }
+        b.append("\r\n");
+        DelayHistogram[][] acs = new DelayHistogram[4][];
+        DelayHistogram[] sys = MobileNode.createHistograms();
+        for (int i = 0; i < nmbrOfNodes; i++) {
+            MobileNode n = nodesList.elementAt(i);
+            //As in addNode, a node with an invalid access category is assumed best effort.
+            int ac = ((n.params.ac >= 0) && (n.params.ac < acs.length)) ? n.params.ac : 0;
+            if (acs[ac] == null) {
+                acs[ac] = MobileNode.createHistograms();
+            }
+            b.append(i + 1).append('\t');
+            for (int d = 0; d < n.totDelays.length; d++) {
+                appendPercentiles(b, n.totDelays[d]);
+                acs[ac][d].add(n.totDelays[d]);
+                sys[d].add(n.totDelays[d]);
+            }
+            b.append("\r\n");
+        }
+        b.append("\r\n");
+        for (int ac = 0; ac < acs.length; ac++) {
+            if (acs[ac] != null) {
+                b.append("AC ").append(ac).append('\t');
+                for (int d = 0; d < acs[ac].length; d++) {
+                    appendPercentiles(b, acs[ac][d]);
+                }
+                b.append("\r\n");
+            }
+        }
+        b.append("System\t");
+        for (int d = 0; d < sys.length; d++) {
+            appendPercentiles(b, sys[d]);
+        }
+        b.append("\r\n");
+        out = new BufferedWriter(new FileWriter(resultsPath + File.separator + "Mean_Delay_Percentiles.txt"));
+        out.write(b.toString());
+        out.close();
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////////////
     //		*****	GET FUNCTIONS FOR THE RESULTS		**********
     //The following functions calculate the results for each statistic.
@@ -1418,17 +1897,61 @@ public class Simulator {
     //This is why they are public.
     ///////////////////////////////////////////////////////////////////////////////////////////////////////
     /**
-     * @return The % progress of the simulation
+     * Gives access to the trace of the simulator, which records the collisions and the contention windows of
+     * the colliding nodes. It is off by default.
+     * @return The trace of the simulator.
      */
-    public int getProgress() {
-        return progress;
+    public Trace getTrace() {
+        return trace;
     }
 
     /**
-     * @return The simulation time in seconds
+     * Enables or disables the counters of the simulator. They are disabled by default. When they are
+     * disabled, they keep their values.
+     * @param enabled True for counting the slots and packets and timing the phases of each slot.
+     * @see #getMetrics()
+     * @see MetricsMonitor
      */
-    public long getTime() {
-        return Math.round(currentTime);
+    public void setMetricsEnabled(boolean enabled) {
+        context.metrics = enabled ? metrics : null;
+    }
+
+    /**
+     * @return True if the counters of the simulator are enabled.
+     */
+    public boolean isMetricsEnabled() {
+        return context.metrics != null;
+    }
+
+    /**
+     * @return A snapshot of the counters of the simulator.
+     */
+    public SimulatorMetrics getMetrics() {
+        return metrics.snapshot();
+    }
+
+    /**
+     * Sets all counters of the simulator to zero.
+     */
+    public void resetMetrics() {
+        metrics = new SimulatorMetrics();
+        if (context.metrics != null) {
+            context.metrics = metrics;
+        }
+    }
+
+    /**
+     * @return The % progress of the simulation
+     */
+    public int getProgress() {
+        return progress;
+    }
+
+    /**
+     * @return The simulation time in seconds
+     */
+    public long getTime() {
+        return Math.round(currentTime);
 
     }
 
@@ -1439,7 +1962,11 @@ public class Simulator {
      * @throws ElementDoesNotExistException
      */
     public float getThrBps(int node) throws ElementDoesNotExistException {
-        return (float) (getNode(node).successfulBits
+        return thrBps(getNode(node));
+    }
+
+    private float thrBps(MobileNode n) {
+        return (float) (n.successfulBits
                 / (simTime * slot * 1000));
     }
 
@@ -1463,7 +1990,11 @@ public class Simulator {
      * @throws ElementDoesNotExistException
      */
     public float getThrPkts(int node) throws ElementDoesNotExistException {
-        return (float) (getNode(node).successfulTransmissions
+        return thrPkts(getNode(node));
+    }
+
+    private float thrPkts(MobileNode n) {
+        return (float) (n.successfulTransmissions
                 / (double) simTime) / slot;
     }
 
@@ -1487,8 +2018,12 @@ public class Simulator {
      * @throws ElementDoesNotExistException
      */
     public float getUtil(int node) throws ElementDoesNotExistException {
-        return (float) (getNode(node).successfulBits
-                / (simTime * slot * getNode(node).params.rate));
+        return util(getNode(node));
+    }
+
+    private float util(MobileNode n) {
+        return (float) (n.successfulBits
+                / (simTime * slot * n.params.rate));
     }
 
     /**
@@ -1514,9 +2049,13 @@ public class Simulator {
      * @throws ElementDoesNotExistException
      */
     public float getMDelay(int node) throws ElementDoesNotExistException {
+        return mDelay(getNode(node));
+    }
+
+    private float mDelay(MobileNode n) {
         try {
-            float result = (float) (getNode(node).transmissionDuration
-                    / getNode(node).successfulTransmissions);
+            float result = (float) (n.transmissionDuration
+                    / n.successfulTransmissions);
             return result * slot * 1000;
         } catch (ArithmeticException e) {
             return 0;
@@ -1532,9 +2071,13 @@ public class Simulator {
      * @throws ElementDoesNotExistException
      */
     public float getQDelay(int node) throws ElementDoesNotExistException {
+        return qDelay(getNode(node));
+    }
+
+    private float qDelay(MobileNode n) {
         try {
-            float result = (float) (getNode(node).queuingDelay
-                    / getNode(node).successfulTransmissions);
+            float result = (float) (n.queuingDelay
+                    / n.successfulTransmissions);
             return result * slot * 1000;
         } catch (ArithmeticException e) {
             return 0;
@@ -1549,7 +2092,11 @@ public class Simulator {
      * @throws ElementDoesNotExistException
      */
     public float getDelay(int node) throws ElementDoesNotExistException {
-        return getMDelay(node) + getQDelay(node);
+        return delay(getNode(node));
+    }
+
+    private float delay(MobileNode n) {
+        return mDelay(n) + qDelay(n);
     }
 
     /**
@@ -1559,10 +2106,14 @@ public class Simulator {
      * @throws ElementDoesNotExistException
      */
     public float getJitter(int node) throws ElementDoesNotExistException {
+        return jitter(getNode(node));
+    }
+
+    private float jitter(MobileNode n) {
         try {
-            float result = (float) (getNode(node).jitter
-                    / getNode(node).successfulTransmissions)
-                    - (float) Math.pow((float) getDelay(node), 2);
+            float result = (float) (n.jitter
+                    / n.successfulTransmissions)
+                    - (float) Math.pow((float) delay(n), 2);
             result = (float) Math.sqrt((float) result);
             result = (float) (result * slot * 1000);
             return result;
@@ -1578,7 +2129,11 @@ public class Simulator {
      * @throws ElementDoesNotExistException
      */
     public float getQLength(int node) throws ElementDoesNotExistException {
-        return (float) (getNode(node).queueLength / simTime);
+        return qLength(getNode(node));
+    }
+
+    private float qLength(MobileNode n) {
+        return (float) (n.queueLength / simTime);
     }
 
     /**
@@ -1588,14 +2143,248 @@ public class Simulator {
      * @throws ElementDoesNotExistException
      */
     public float getRatts(int node) throws ElementDoesNotExistException {
+        return ratts(getNode(node));
+    }
+
+    private float ratts(MobileNode n) {
         try {
-            return (float) getNode(node).collisions
-                    / (float) getNode(node).successfulTransmissions;
+            return (float) n.collisions
+                    / (float) n.successfulTransmissions;
         } catch (ArithmeticException e) {
             return 0;
         }
     }
 
+    /**
+     * @return The IDs of all nodes, in the order of the values returned by getStatistics.
+     */
+    public int[] getNodeIds() {
+        int[] ids = new int[nmbrOfNodes];
+        for (int i = 0; i < nmbrOfNodes; i++) {
+            ids[i] = nodesList.elementAt(i).params.id;
+        }
+        return ids;
+    }
+
+    /**
+     * Gets a statistic of all nodes for the last simulation interval at once, in one pass over the nodes,
+     * instead of calling the getter of the statistic for each node.
+     * @param metric The two-character code of the statistic, one of BinaryResultsReader.METRICS, e.g. "tb".
+     * @return The value of each node, in the order of getNodeIds().
+     */
+    public float[] getStatistics(String metric) {
+        int m = BinaryResultsReader.metricIndex(metric);
+        if (m == -1) {
+            throw new IllegalArgumentException("Unknown statistic " + metric);
+        }
+        float[] v = new float[nmbrOfNodes];
+        for (int i = 0; i < nmbrOfNodes; i++) {
+            v[i] = statistic(m, nodesList.elementAt(i));
+        }
+        return v;
+    }
+
+    /**
+     * Gets all the statistics of all nodes for the last simulation interval at once, in one pass over the nodes.
+     * @return The values of each statistic of BinaryResultsReader.METRICS, in the same order, and for each
+     * statistic the value of each node, in the order of getNodeIds().
+     */
+    public float[][] getAllStatistics() {
+        float[][] v = new float[BinaryResultsReader.METRICS.length][nmbrOfNodes];
+        for (int i = 0; i < nmbrOfNodes; i++) {
+            MobileNode n = nodesList.elementAt(i);
+            for (int m = 0; m < v.length; m++) {
+                v[m][i] = statistic(m, n);
+            }
+        }
+        return v;
+    }
+
+    /**
+     * Get the throughput of the system for the whole simulation.
+     * @return The throughput of the system in Kb/s
+     */
+    public float getMeanSysThrBps() {
+        float result = 0;
+        for (int i = 0; i < nmbrOfNodes; i++) {
+            result += (float) nodesList.elementAt(i).totSuccessfulBits / meanDuration() / 1000;
+        }
+        return result;
+    }
+
+    /**
+     * Get the throughput of the system for the whole simulation.
+     * @return The throughput of the system in packets/s
+     */
+    public float getMeanSysThrPkts() {
+        float result = 0;
+        for (int i = 0; i < nmbrOfNodes; i++) {
+            result += (float) nodesList.elementAt(i).totSuccessfulTransmissions / meanDuration();
+        }
+        return result;
+    }
+
+    /**
+     * Get the utilization of the system for the whole simulation.
+     * @return The utilization of the system in a percentage value
+     */
+    public float getMeanSysUtil() {
+        float result = 0;
+        for (int i = 0; i < nmbrOfNodes; i++) {
+            result += (float) nodesList.elementAt(i).totSuccessfulBits / meanDuration()
+                    / (float) nodesList.elementAt(i).params.rate;
+        }
+        return result;
+    }
+
+    /**
+     * Get the media access delay of all the packets transmitted in the whole simulation.
+     * @return The mean media access delay in miliseconds.
+     * @see #getMDelay(int)
+     */
+    public float getMeanMDelay() {
+        long durations = 0;
+        long transmissions = 0;
+        for (int i = 0; i < nmbrOfNodes; i++) {
+            durations += nodesList.elementAt(i).totTransmissionDurations;
+            transmissions += nodesList.elementAt(i).totSuccessfulTransmissions;
+        }
+        if (transmissions == 0) {
+            return 0;
+        }
+        return (float) durations / (float) transmissions * slot * 1000;
+    }
+
+    /**
+     * Get the queuing delay of all the packets transmitted in the whole simulation.
+     * @return The mean queuing delay in miliseconds.
+     * @see #getQDelay(int)
+     */
+    public float getMeanQDelay() {
+        long delays = 0;
+        long transmissions = 0;
+        for (int i = 0; i < nmbrOfNodes; i++) {
+            delays += nodesList.elementAt(i).totQueuingDelay;
+            transmissions += nodesList.elementAt(i).totSuccessfulTransmissions;
+        }
+        if (transmissions == 0) {
+            return 0;
+        }
+        return (float) delays / (float) transmissions * slot * 1000;
+    }
+
+    /**
+     * Get the total delay of all the packets transmitted in the whole simulation.
+     * @return The mean total delay in miliseconds.
+     * @see #getDelay(int)
+     */
+    public float getMeanDelay() {
+        return getMeanMDelay() + getMeanQDelay();
+    }
+
+    /**
+     * Get the average number of retransmission attempts of all the packets transmitted in the whole simulation.
+     * @return The average number of retransmission attempts (pure value).
+     * @see #getRatts(int)
+     */
+    public float getMeanRatts() {
+        long collisions = 0;
+        long transmissions = 0;
+        for (int i = 0; i < nmbrOfNodes; i++) {
+            collisions += nodesList.elementAt(i).totCollisions;
+            transmissions += nodesList.elementAt(i).totSuccessfulTransmissions;
+        }
+        if (transmissions == 0) {
+            return 0;
+        }
+        return (float) collisions / (float) transmissions;
+    }
+
+    /**
+     * Get the histogram of a delay of a node for the last simulation interval.
+     * @param node The node for which we ask for the histogram.
+     * @param delay The delay: QUEUING_DELAY, MEDIA_ACCESS_DELAY or TOTAL_DELAY.
+     * @return A copy of the histogram, with the delays of the packets in slots.
+     * @throws ElementDoesNotExistException
+     * @see #getDelayPercentile(int, double)
+     */
+    public DelayHistogram getDelayHistogram(int node, int delay) throws ElementDoesNotExistException {
+        return getNode(node).delays[delay].copy();
+    }
+
+    /**
+     * Get the histogram of a delay of a node for the whole simulation.
+     * @param node The node for which we ask for the histogram.
+     * @param delay The delay: QUEUING_DELAY, MEDIA_ACCESS_DELAY or TOTAL_DELAY.
+     * @return A copy of the histogram, with the delays of the packets in slots.
+     * @throws ElementDoesNotExistException
+     */
+    public DelayHistogram getMeanDelayHistogram(int node, int delay) throws ElementDoesNotExistException {
+        return getNode(node).totDelays[delay].copy();
+    }
+
+    /**
+     * Get the histogram of a delay of all the nodes of an access category for the whole simulation.
+     * @param ac The 802.11e access category 0,1,2,3.
+     * @param delay The delay: QUEUING_DELAY, MEDIA_ACCESS_DELAY or TOTAL_DELAY.
+     * @return The histogram, with the delays of the packets in slots. Empty if no node uses the access category.
+     */
+    public DelayHistogram getMeanDelayHistogramForAC(int ac, int delay) {
+        DelayHistogram h = new DelayHistogram();
+        for (int i = 0; i < nmbrOfNodes; i++) {
+            if (nodesList.elementAt(i).params.ac == ac) {
+                h.add(nodesList.elementAt(i).totDelays[delay]);
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Get the histogram of a delay of all the nodes for the whole simulation.
+     * @param delay The delay: QUEUING_DELAY, MEDIA_ACCESS_DELAY or TOTAL_DELAY.
+     * @return The histogram, with the delays of the packets in slots.
+     */
+    public DelayHistogram getMeanSysDelayHistogram(int delay) {
+        DelayHistogram h = new DelayHistogram();
+        for (int i = 0; i < nmbrOfNodes; i++) {
+            h.add(nodesList.elementAt(i).totDelays[delay]);
+        }
+        return h;
+    }
+
+    /**
+     * Get a percentile of the total delay of a node for the last simulation interval, e.g. the 99th percentile.
+     * @param node The node for which we ask for the delay.
+     * @param percentile The percentile, from 0 to 100.
+     * @return The delay in miliseconds, with a relative error below 1%.
+     * @throws ElementDoesNotExistException
+     */
+    public float getDelayPercentile(int node, double percentile) throws ElementDoesNotExistException {
+        return toMsec(getNode(node).delays[TOTAL_DELAY].getValueAtPercentile(percentile));
+    }
+
+    /**
+     * Get a percentile of the total delay of a node for the whole simulation.
+     * @param node The node for which we ask for the delay.
+     * @param percentile The percentile, from 0 to 100.
+     * @return The delay in miliseconds, with a relative error below 1%.
+     * @throws ElementDoesNotExistException
+     * @see #getDelayPercentile(int, double)
+     */
+    public float getMeanDelayPercentile(int node, double percentile) throws ElementDoesNotExistException {
+        return toMsec(getNode(node).totDelays[TOTAL_DELAY].getValueAtPercentile(percentile));
+    }
+
+    /**
+     * Converts a delay of a histogram to miliseconds.
+     * @param slots The delay in slots.
+     * @return The delay in miliseconds.
+     * @see DelayHistogram#getValueAtPercentile(double)
+     */
+    public float toMsec(long slots) {
+        return slots * slot * 1000;
+    }
+
     /**
      * Changes the parameters of a node. Can be called anywhere on the simulation. This method is useful
      * if a mobility or signal strength pattern was implemented, currently not supported in Pamvotis.
@@ -1619,27 +2408,49 @@ public class Simulator {
         if (yPosition != -1) {
             n.params.y = yPosition;
         }
+        coverageMap.invalidate();
+        nodeState.invalidate();
     }
 
     /**
      * Configures system and node parameters according to the "config/NtConf.xml" configuration file.
      * If this method is used externally, pay attention on where to store the xml file.
+     * @see Scenario#load(String)
      */
     public void confParams() {
-
         try {
-            DocumentBuilder db = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-            Document doc = db.parse("config" + File.separator + "NtConf.xml");
+            confParams(Scenario.load("config" + File.separator + "NtConf.xml"));
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (ConfigurationException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
 
+    /**
+     * Configures system and node parameters according to a scenario. The sources of the nodes are created
+     * from the parameters of the scenario, so the scenario can be used by other simulations as well.
+     * @param scenario The network configuration.
+     */
+    public void confParams(Scenario scenario) {
+
+        //The sources created from now on in this thread belong to this simulation.
+        SimulationContext.setCurrent(context);
+        try {
             // First read the system parameters.
-            seed = Integer.parseInt(doc.getElementsByTagName("seed").item(0).getTextContent());
-            totalTime = Integer.parseInt(doc.getElementsByTagName("duration").item(0).getTextContent());
-            mixNodes = Integer.parseInt(doc.getElementsByTagName("mixNodes").item(0).getTextContent());
-            rtsThr = Integer.parseInt(doc.getElementsByTagName("RTSThr").item(0).getTextContent());
-            ctsToSelf = doc.getElementsByTagName("ctsToSelf").item(0).getTextContent().charAt(0);
-            phyLayer = doc.getElementsByTagName("phyLayer").item(0).getTextContent().charAt(0);
-            resultsPath = doc.getElementsByTagName("resultsPath").item(0).getTextContent();
-            outResults = doc.getElementsByTagName("outResults").item(0).getTextContent();
+            if (seedSet == false) {
+                seed = scenario.getSeed();
+            }
+            totalTime = scenario.getDuration();
+            values = scenario.getValues();
+            mixNodes = scenario.getMixNodes();
+            rtsThr = scenario.getRtsThr();
+            ctsToSelf = scenario.getCtsToSelf();
+            phyLayer = scenario.getPhyLayer();
+            resultsPath = scenario.getResultsPath();
+            outResults = scenario.getOutResults();
+            resultsFormat = scenario.getResultsFormat();
 
             // Depending on the physical layer define the value of each
             // parameter.
@@ -1661,116 +2472,47 @@ public class Simulator {
             }
 
             // Read the 802.11e parameters
-            cwMinFact0 = Integer.parseInt(doc.getElementsByTagName("cwMinFact0").item(0).getTextContent());
-            cwMinFact1 = Integer.parseInt(doc.getElementsByTagName("cwMinFact1").item(0).getTextContent());
-            cwMinFact2 = Integer.parseInt(doc.getElementsByTagName("cwMinFact2").item(0).getTextContent());
-            cwMinFact3 = Integer.parseInt(doc.getElementsByTagName("cwMinFact3").item(0).getTextContent());
-
-            cwMaxFact0 = Integer.parseInt(doc.getElementsByTagName("cwMaxFact0").item(0).getTextContent());
-            cwMaxFact1 = Integer.parseInt(doc.getElementsByTagName("cwMaxFact1").item(0).getTextContent());
-            cwMaxFact2 = Integer.parseInt(doc.getElementsByTagName("cwMaxFact2").item(0).getTextContent());
-            cwMaxFact3 = Integer.parseInt(doc.getElementsByTagName("cwMaxFact3").item(0).getTextContent());
-
-            aifs0 = Integer.parseInt(doc.getElementsByTagName("aifs0").item(0).getTextContent());
-            aifs1 = Integer.parseInt(doc.getElementsByTagName("aifs1").item(0).getTextContent());
-            aifs2 = Integer.parseInt(doc.getElementsByTagName("aifs2").item(0).getTextContent());
-            aifs3 = Integer.parseInt(doc.getElementsByTagName("aifs3").item(0).getTextContent());
-
-            // Then we must get the number of nodes.
-            NodeList nodes = doc.getElementsByTagName("node");
-            //nmbrOfNodes = nodes.getLength();
+            cwMinFact0 = scenario.getCwMinFact(0);
+            cwMinFact1 = scenario.getCwMinFact(1);
+            cwMinFact2 = scenario.getCwMinFact(2);
+            cwMinFact3 = scenario.getCwMinFact(3);
+
+            cwMaxFact0 = scenario.getCwMaxFact(0);
+            cwMaxFact1 = scenario.getCwMaxFact(1);
+            cwMaxFact2 = scenario.getCwMaxFact(2);
+            cwMaxFact3 = scenario.getCwMaxFact(3);
+
+            aifs0 = scenario.getAifs(0);
+            aifs1 = scenario.getAifs(1);
+            aifs2 = scenario.getAifs(2);
+            aifs3 = scenario.getAifs(3);
+
             nmbrOfNodes = 0;
             //Initialize the random number generator. This must be done before creating the node
             //because we pass the generator as an argument to its constructor.
-            generator = new java.util.Random((long) (seed));
-
-            // Set static parameters required by all Source types
-            Source.generator = generator;
-            MobileNode.generator = generator;
-            Source.slot = slot;
-
-            // For each node we must read it's parameters and store them.
-            for (int i = 0; i < nodes.getLength(); i++) {
-
-                // Read the node's parameters
-                Node node = nodes.item(i);
-                Element ndElement = (Element) node;
-                NamedNodeMap attrs = node.getAttributes();
-                int id = Integer.parseInt(attrs.getNamedItem("number").getNodeValue());
-                int rate = Integer.parseInt(ndElement.getElementsByTagName("rate").item(0).getTextContent());
-                int coverage = Integer.parseInt(ndElement.getElementsByTagName("coverage").item(0).getTextContent());
-                int xPosition = Integer.parseInt(ndElement.getElementsByTagName("xPosition").item(0).getTextContent());
-                int yPosition = Integer.parseInt(ndElement.getElementsByTagName("yPosition").item(0).getTextContent());
-                int ac = Integer.parseInt(ndElement.getElementsByTagName("AC").item(0).getTextContent());
+            generator = new RandomStream((long) (seed));
+            channelRandom = generator.split(CHANNEL_STREAM);
+
+            // Set the parameters required by all nodes and Source types
+            context.generator = generator;
+            context.slot = slot;
+            durations.clear();
+
+            // Add each node with its sources.
+            List<Scenario.Node> nodes = scenario.getNodes();
+            for (int i = 0; i < nodes.size(); i++) {
+                Scenario.Node node = nodes.get(i);
+                int id = node.getId();
                 try {
-                    addNode(id, rate, coverage, xPosition, yPosition, ac);
+                    addNode(id, node.getRate(), node.getCoverage(), node.getXPosition(), node.getYPosition(), node.getAc());
                 } catch (ElementExistsException e) {
                     throw new ConfigurationException("You have already configured a node with ID " + id + ". Please check your network configuration file.");
                 }
-                //Read the node's sources
-                NodeList sourceList = ndElement.getElementsByTagName("source");
-                for (int j = 0; j < sourceList.getLength(); j++) {
-
-                    Node source = sourceList.item(j);
-                    Element sourceElement = (Element) source;
-                    NamedNodeMap attributes = source.getAttributes();
-                    int sourceId = Integer.parseInt(attributes.getNamedItem("id").getNodeValue());
+                List<Scenario.SourceConfig> sourceList = node.getSources();
+                for (int j = 0; j < sourceList.size(); j++) {
+                    int sourceId = sourceList.get(j).getId();
                     try {
-                        if (attributes.getNamedItem("type").getNodeValue().equals("generic")) {
-                            float pktLnght = Float.parseFloat(sourceElement.getElementsByTagName("pktLngth").item(0).getTextContent());
-                            float intArr = Float.parseFloat(sourceElement.getElementsByTagName("intArrTime").item(0).getTextContent());
-                            char pktDist = sourceElement.getElementsByTagName("pktDist").item(0).getTextContent().charAt(0);
-                            char intArrDstr = sourceElement.getElementsByTagName("intArrDstr").item(0).getTextContent().charAt(0);
-                            //Add a generic source to the node
-                            GenericSource s = null;
-                            try {
-                                s = new GenericSource(sourceId, intArrDstr, intArr, pktDist, pktLnght);
-                            } catch (UnknownDistributionException ex) {
-                                throw new ConfigurationException("The packet length or/and the packet interarrival time distribution(s) you have configured are invalid. Only 'c','u' and 'e' are allowed.");
-                            }
-
-                            appendNewSource(id, s);
-                        } else if (attributes.getNamedItem("type").getNodeValue().equals("ftp")) {
-                            int pktSize = Integer.parseInt(sourceElement.getElementsByTagName("pktSize").item(0).getTextContent());
-                            float fileSizeMean = Float.parseFloat(sourceElement.getElementsByTagName("fileSizeMean").item(0).getTextContent());
-                            float fileSizeStDev = Float.parseFloat(sourceElement.getElementsByTagName("fileSizeStDev").item(0).getTextContent());
-                            float fileSizeMax = Float.parseFloat(sourceElement.getElementsByTagName("fileSizeMax").item(0).getTextContent());
-                            float readingTime = Float.parseFloat(sourceElement.getElementsByTagName("readingTime").item(0).getTextContent());
-
-                            //Add an FTP source to the node
-                            FTPSource s = new FTPSource(sourceId, pktSize, fileSizeMean, fileSizeStDev, fileSizeMax, readingTime);
-                            appendNewSource(id, s);
-                        } else if (attributes.getNamedItem("type").getNodeValue().equals("video")) {
-                            int frameRate = Integer.parseInt(sourceElement.getElementsByTagName("frameRate").item(0).getTextContent());
-                            int packetsPerFrame = Integer.parseInt(sourceElement.getElementsByTagName("packetsPerFrame").item(0).getTextContent());
-                            float pktSize = Float.parseFloat(sourceElement.getElementsByTagName("pktSize").item(0).getTextContent());
-                            float pktSizeMax = Float.parseFloat(sourceElement.getElementsByTagName("pktSizeMax").item(0).getTextContent());
-                            float pktIntArr = Float.parseFloat(sourceElement.getElementsByTagName("pktIntArr").item(0).getTextContent());
-                            float pktIntArrMax = Float.parseFloat(sourceElement.getElementsByTagName("pktIntArrMax").item(0).getTextContent());
-
-                            //Add a video source to the node
-                            VideoSource s = new VideoSource(sourceId, frameRate, packetsPerFrame, pktSize, pktSizeMax, pktIntArr, pktIntArrMax);
-                            appendNewSource(id, s);
-                        } else if (attributes.getNamedItem("type").getNodeValue().equals("http")) {
-                            int pktSize = Integer.parseInt(sourceElement.getElementsByTagName("pktSize").item(0).getTextContent());
-                            float mainObjectMean = Float.parseFloat(sourceElement.getElementsByTagName("mainObjectMean").item(0).getTextContent());
-                            float mainObjectStDev = Float.parseFloat(sourceElement.getElementsByTagName("mainObjectStDev").item(0).getTextContent());
-                            float mainObjectMin = Float.parseFloat(sourceElement.getElementsByTagName("mainObjectMin").item(0).getTextContent());
-                            float mainObjectMax = Float.parseFloat(sourceElement.getElementsByTagName("mainObjectMax").item(0).getTextContent());
-                            float embObjectMean = Float.parseFloat(sourceElement.getElementsByTagName("embObjectMean").item(0).getTextContent());
-                            float embObjectStDev = Float.parseFloat(sourceElement.getElementsByTagName("embObjectStDev").item(0).getTextContent());
-                            float embObjectMin = Float.parseFloat(sourceElement.getElementsByTagName("embObjectMin").item(0).getTextContent());
-                            float embObjectMax = Float.parseFloat(sourceElement.getElementsByTagName("embObjectMax").item(0).getTextContent());
-                            float NumOfEmbObjectsMean = Float.parseFloat(sourceElement.getElementsByTagName("NumOfEmbObjectsMean").item(0).getTextContent());
-                            float NumOfEmbObjectsMax = Float.parseFloat(sourceElement.getElementsByTagName("NumOfEmbObjectsMax").item(0).getTextContent());
-                            float readingTime = Float.parseFloat(sourceElement.getElementsByTagName("readingTime").item(0).getTextContent());
-                            float parsingTime = Float.parseFloat(sourceElement.getElementsByTagName("parsingTime").item(0).getTextContent());
-
-                            //Add an HTTP source to the node
-                            HTTPSource s = new HTTPSource(sourceId, pktSize, mainObjectMean, mainObjectStDev, mainObjectMin, mainObjectMax, embObjectMean,
-                                    embObjectStDev, embObjectMin, embObjectMax, NumOfEmbObjectsMean, NumOfEmbObjectsMax, readingTime, parsingTime);
-                            appendNewSource(id, s);
-                        }
+                        appendNewSource(id, sourceList.get(j).create());
                     } catch (ElementExistsException ex) {
                         throw new ConfigurationException("You have already configured a source with ID " + sourceId + ". Check your network configuration file.");
                     } catch (ElementDoesNotExistException ex) {
@@ -1779,16 +2521,6 @@ public class Simulator {
                 }
             }
 
-        } catch (NumberFormatException e) {
-            e.printStackTrace();
-        } catch (DOMException e) {
-            e.printStackTrace();
-        } catch (ParserConfigurationException e) {
-            e.printStackTrace();
-        } catch (SAXException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
         } catch (ConfigurationException e) {
             e.printStackTrace();
             System.exit(1);
@@ -1808,18 +2540,10 @@ public class Simulator {
      * @throws ElementExistsException
      */
     public void addNode(int id, int rate, int coverage, int xPosition, int yPosition, int ac) throws ElementExistsException {
-        boolean nodeExists = false;
-        for (int i = 0; i < nodesList.size(); i++) {
-            if (nodesList.elementAt(i).params.id == id) {
-                nodeExists = true;
-
-                break;
-            }
-        }
-        if (nodeExists) {
+        if (nodeIndex.get(id) != -1) {
             throw new ElementExistsException("Node " + id + " already exists.");
         } else {
-            MobileNode nd = new MobileNode();
+            MobileNode nd = new MobileNode(context);
             // Initialize the 802.11e parameters depending on the node's AC
             // Those parameters will be used in initParams function to
             // initialize the params class member variables.
@@ -1856,8 +2580,14 @@ public class Simulator {
             nd.params.InitParams(id, rate, xPosition, yPosition, coverage, ac, nAifsd,
                     nCwMin, nCwMax);
             nd.contWind = nd.params.cwMin;
+            if (generator != null) {
+                nd.setStreams(generator.split(id));
+            }
             nodesList.addElement(nd);
+            nodeIndex.put(id, nodesList.size() - 1);
             nmbrOfNodes++;
+            coverageMap.invalidate();
+            nodeState.invalidate();
         }
     }
 
@@ -1868,16 +2598,18 @@ public class Simulator {
      * @throws ElementDoesNotExistException
      */
     public boolean removeNode(int nodeId) throws ElementDoesNotExistException {
-        int position = -1;
-        for (int i = 0; i < nodesList.size(); i++) {
-            if (nodesList.elementAt(i).params.id == nodeId) {
-                position = i;
-                break;
-            }
-        }
+        int position = nodeIndex.get(nodeId);
         if (position != -1) {
+            nodesList.elementAt(position).detachState();
             nodesList.removeElementAt(position);
+            //The next nodes move one position back.
+            nodeIndex.remove(nodeId);
+            for (int i = position; i < nodesList.size(); i++) {
+                nodeIndex.put(nodesList.elementAt(i).params.id, i);
+            }
             nmbrOfNodes--;
+            coverageMap.invalidate();
+            nodeState.invalidate();
             return true;
         } else {
             throw new ElementDoesNotExistException("Node " + nodeId + " does not exist.");
@@ -1888,8 +2620,14 @@ public class Simulator {
      * Removes all nodes from the system
      */
     public void removeAllNodes() {
+        for (int i = 0; i < nodesList.size(); i++) {
+            nodesList.elementAt(i).detachState();
+        }
         nodesList.clear();
+        nodeIndex.clear();
         nmbrOfNodes = 0;
+        coverageMap.invalidate();
+        nodeState.invalidate();
     }
 
     /**
@@ -1964,6 +2702,303 @@ public class Simulator {
         this.currentStrategy = currentStrategy;
     }
 
+    /**
+     * Returns the stream of the simulation, which is created from the seed by confParams(). All the random numbers
+     * of the simulation come from streams split from it: each node has a stream split with its ID as key, and the
+     * generator of the node and the generators of its sources are split from the stream of the node. So the results
+     * depend only on the seed, not on the order the nodes and sources are created or processed.
+     * @return The stream of the simulation, or null before confParams() is called.
+     * @see RandomStream#split(long)
+     * @see #CHANNEL_STREAM
+     */
+    public RandomStream getRandomStream() {
+        return generator;
+    }
+
+    /**
+     * @return The seed of the random number generator.
+     */
+    public int getSeed() {
+        return seed;
+    }
+
+    /**
+     * Sets the seed of the random number generator. Must be called before confParams(), and overrides the
+     * seed of the configuration file. Useful for running many replications of the same scenario.
+     * @param seed The seed.
+     * @see #confParams()
+     */
+    public void setSeed(int seed) {
+        this.seed = seed;
+        seedSet = true;
+    }
+
+    /**
+     * @return The total duration of the simulation in seconds, as read from the configuration file.
+     */
+    public long getDuration() {
+        return totalTime;
+    }
+
+    /**
+     * @return The number of values (simulation intervals) to be collected, as read from the configuration file.
+     */
+    public int getValues() {
+        return values;
+    }
+
+    /**
+     * Sets the path where the result files are stored. Must be called after confParams(), and overrides the
+     * path of the configuration file.
+     * @param resultsPath The path of the result files.
+     */
+    public void setResultsPath(String resultsPath) {
+        this.resultsPath = resultsPath;
+    }
+
+    /**
+     * Selects the result files that are printed. Must be called after confParams(), and overrides the
+     * selection of the configuration file.
+     * @param outResults A string containing the two-character code of each result, e.g. "tbtpmd".
+     * An empty string disables all result files except from the mean values. With the total delay ("td"), the
+     * percentiles of the packet delays are printed too, to "Delay_Percentiles.txt" and "Mean_Delay_Percentiles.txt".
+     */
+    public void setOutResults(String outResults) {
+        this.outResults = outResults;
+    }
+
+    /**
+     * Selects the formats of the statistic results. By default only the text files are written.
+     * @param resultsFormat TEXT_RESULTS, BINARY_RESULTS or both of them (TEXT_RESULTS | BINARY_RESULTS).
+     * @see BinaryResultsReader
+     */
+    public void setResultsFormat(int resultsFormat) {
+        this.resultsFormat = resultsFormat;
+    }
+
+    /**
+     * @return The formats of the statistic results.
+     */
+    public int getResultsFormat() {
+        return resultsFormat;
+    }
+
+    /**
+     * Registers a listener, which is notified about the progress of the simulation and the results of each
+     * simulation interval. The listeners are not copied by fork() and they are not saved in checkpoints.
+     * @param listener The listener.
+     */
+    public void addListener(SimulationListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     * @param listener The listener.
+     */
+    public void removeListener(SimulationListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Sets how often the progress (getProgress() and getTime()) is updated and the listeners are notified about
+     * it, during a simulation interval. It is always updated at the end of each interval.
+     * @param slots The number of slots between two updates. The default is 10000.
+     */
+    public void setProgressInterval(long slots) {
+        this.progressSlots = Math.max(1, slots);
+    }
+
+    /**
+     * Sets the control that can pause, cancel or limit the simulation from another thread. The control is checked
+     * at the start of each simulation interval and every few slots (see setProgressInterval). The control is not
+     * copied by fork() and it is not saved in checkpoints.
+     * @param control The control, or null for no control.
+     * @see #isStopped()
+     */
+    public void setControl(SimulationControl control) {
+        this.control = control;
+    }
+
+    /**
+     * @return The control of the simulation, or null.
+     */
+    public SimulationControl getControl() {
+        return control;
+    }
+
+    /**
+     * Checks if the simulation was stopped by its control, because it was cancelled or its budget ran out. The
+     * last interval simulated ended earlier and its statistics, like the mean values, concern only the time
+     * simulated. The next calls of simulate() do nothing.
+     * @return True if the simulation was stopped.
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * @return True if the event-driven engine is enabled.
+     */
+    public boolean isEventDriven() {
+        return eventDriven;
+    }
+
+    /**
+     * Enables or disables the event-driven engine. By default the simulate() method simulates every slot.
+     * The event-driven engine jumps directly from one slot where something happens (a packet is generated,
+     * a backoff counter expires, a transmission ends) to the next, and is much faster in lightly loaded
+     * networks. The results are exactly the same in both cases.
+     * @param eventDriven True for enabling the event-driven engine.
+     * @see #simulate(long, long)
+     */
+    public void setEventDriven(boolean eventDriven) {
+        this.eventDriven = eventDriven;
+    }
+
+    /**
+     * Sets the adaptive strategy that selects the strategy of this simulation, so that its ranks are saved with
+     * the checkpoints and copied by fork(). A simulation loaded from a checkpoint continues with the strategy
+     * returned by getAdaptiveStrategy().
+     * @param adaptiveStrategy The strategy, or null if the strategy is not adaptive.
+     * @see BatchRunner#createStrategy(Simulator)
+     */
+    public void setAdaptiveStrategy(Strategy adaptiveStrategy) {
+        this.adaptiveStrategy = adaptiveStrategy;
+    }
+
+    /**
+     * @return The adaptive strategy that selects the strategy of this simulation, or null.
+     * @see #setAdaptiveStrategy(Strategy)
+     */
+    public Strategy getAdaptiveStrategy() {
+        return adaptiveStrategy;
+    }
+
+    /**
+     * Writes the whole state of the simulation to a file: the nodes with their counters, packet buffers and
+     * sources (including their pending sessions and timers), the state of the channel, the statistics, the
+     * binary results, the state of all random number generators and the adaptive strategy with its ranks (see
+     * setAdaptiveStrategy). The simulation can be resumed later, from exactly the same state, with loadCheckpoint.
+     * The parameters of the "config/SpecParams.xml" file are saved too, so that they are checked on resume.
+     * The file is compressed.
+     * <p>
+     * It should be called between two calls of simulate(). The result files are flushed, so that a resumed
+     * simulation adds its rows after the rows written so far. The file is written to a temporary file first,
+     * so an existing checkpoint is replaced only when the new one is complete, with an atomic move where
+     * the file system supports it.
+     * @param file The path of the checkpoint file.
+     * @throws IOException If the file cannot be written.
+     * @see #loadCheckpoint(String)
+     */
+    public void saveCheckpoint(String file) throws IOException {
+        results.flush();
+        File target = new File(file);
+        File temp = new File(target.getPath() + ".tmp");
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            data.writeInt(CHECKPOINT_MAGIC);
+            data.writeInt(CHECKPOINT_VERSION);
+            double[] spec = SpecParams.getValues();
+            data.writeInt(spec.length);
+            for (int i = 0; i < spec.length; i++) {
+                data.writeDouble(spec[i]);
+            }
+            data.flush();
+            ObjectOutputStream objects = new ObjectOutputStream(new GZIPOutputStream(data, 64 * 1024));
+            objects.writeObject(this);
+            objects.close();
+        } finally {
+            data.close();
+        }
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Creates a simulation from a checkpoint file. The simulation continues from the state it had when
+     * the checkpoint was saved and gives exactly the same results, as if it had never stopped. The sources and
+     * the nodes created from now on in this thread belong to this simulation.
+     * <p>
+     * The parameters of SpecParams are not read again if they have been read already, so the simulations that
+     * run are not affected. If they differ from the parameters the checkpoint was saved with, e.g. because the
+     * "config/SpecParams.xml" file has changed, the checkpoint is refused, as it could not be resumed exactly.
+     * @param file The path of the checkpoint file.
+     * @return The simulation.
+     * @throws IOException If the file cannot be read, it is not a checkpoint of this version of the simulator or
+     * it was saved with other parameters of SpecParams.
+     * @see #saveCheckpoint(String)
+     */
+    public static Simulator loadCheckpoint(String file) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if ((data.readInt() != CHECKPOINT_MAGIC) || (data.readInt() != CHECKPOINT_VERSION)) {
+                throw new IOException(file + " is not a checkpoint of this version of the simulator");
+            }
+            double[] spec = new double[data.readInt()];
+            for (int i = 0; i < spec.length; i++) {
+                spec[i] = data.readDouble();
+            }
+            SpecParams.ReadParametersOnce();
+            if (Arrays.equals(spec, SpecParams.getValues()) == false) {
+                throw new IOException(file + " was saved with other parameters of the config/SpecParams.xml file");
+            }
+            ObjectInputStream objects = new ObjectInputStream(new GZIPInputStream(data, 64 * 1024));
+            Simulator sim = (Simulator) objects.readObject();
+            SimulationContext.setCurrent(sim.context);
+            return sim;
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Invalid checkpoint " + file + ": " + e.getMessage(), e);
+        } finally {
+            data.close();
+        }
+    }
+
+    /**
+     * Creates a copy of the simulation, which continues independently from the same state: the nodes with their
+     * counters, packet buffers and sources, the state of the channel, the statistics and the state of all random
+     * number generators are copied. It is used for simulating a warm-up period once and then running several
+     * branches from it, e.g. with a different strategy (setCurrentStrategy) for each branch. As the random number
+     * generators are copied too, branches without changes give exactly the same results.
+     * <p>
+     * It should be called between two calls of simulate(). Each branch can be simulated in its own thread. The
+     * current simulation of the calling thread does not change; the sources added to the nodes of the copy are
+     * bound to the copy (see Source.setContext). The copy writes its result files in the same results path, so branches that print
+     * results should be given their own path (setResultsPath) or no result files (setOutResults("")).
+     * @return The copy of the simulation.
+     * @see #saveCheckpoint(String)
+     */
+    public Simulator fork() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+            ObjectOutputStream objects = new ObjectOutputStream(bytes);
+            objects.writeObject(this);
+            objects.close();
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+            return (Simulator) in.readObject();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot copy the simulation: " + e.getMessage(), e);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Cannot copy the simulation: " + e.getMessage(), e);
+        }
+    }
+
+    //The result files, the caches and the listeners are not saved in checkpoints.
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        results = new ResultsWriter();
+        durations = new DurationCache();
+        listeners = new ArrayList<SimulationListener>();
+        nodeIndex = new IntIndex();
+        for (int i = 0; i < nodesList.size(); i++) {
+            nodeIndex.put(nodesList.elementAt(i).params.id, i);
+        }
+    }
+
     /**
      * @return the collisionsForAllNodes
      */
@@ -0,0 +1,141 @@
+package src.pamvotis.core;
+
+import java.io.Serializable;
+
+/**
+ * Counters of the work done by a simulator: how many slots were empty, successful transmissions, collisions
+ * or freezes, how many packets the sources generated and how many of them were added to the packet buffers
+ * or dropped because the buffers were full, and how much time was spent in each phase of a slot.
+ * <p>
+ * The counters are updated only while they are enabled, and their cost is very small. The simulator returns
+ * a copy of them (a snapshot), so the values do not change while the caller reads them.
+ * @see Simulator#setMetricsEnabled(boolean)
+ * @see Simulator#getMetrics()
+ */
+public class SimulatorMetrics implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    long emptySlots = 0;	//Slots where no node transmitted.
+    long successfulSlots = 0;	//Slots where a successful transmission started.
+    long collisionSlots = 0;	//Slots where a collision started.
+    long freezeSlots = 0;	//Slots during a transmission.
+    long skippedSlots = 0;	//Slots simulated at once by the event-driven engine. They are also counted as empty or freeze slots.
+    long packetsGenerated = 0;	//Packets generated by the sources.
+    long packetsEnqueued = 0;	//Packets added to the packet buffers.
+    long packetsDropped = 0;	//Packets dropped because the packet buffer was full.
+    long configureNanos = 0;	//Time spent for configuring the nodes (sources and packet buffers).
+    long fightNanos = 0;	//Time spent for the competition for the medium.
+    long skipNanos = 0;	//Time spent by the event-driven engine for skipping idle slots.
+
+    /**
+     * @return A copy of the counters.
+     */
+    SimulatorMetrics snapshot() {
+        SimulatorMetrics copy = new SimulatorMetrics();
+        copy.emptySlots = emptySlots;
+        copy.successfulSlots = successfulSlots;
+        copy.collisionSlots = collisionSlots;
+        copy.freezeSlots = freezeSlots;
+        copy.skippedSlots = skippedSlots;
+        copy.packetsGenerated = packetsGenerated;
+        copy.packetsEnqueued = packetsEnqueued;
+        copy.packetsDropped = packetsDropped;
+        copy.configureNanos = configureNanos;
+        copy.fightNanos = fightNanos;
+        copy.skipNanos = skipNanos;
+        return copy;
+    }
+
+    /**
+     * @return The number of simulated slots.
+     */
+    public long getSlots() {
+        return emptySlots + successfulSlots + collisionSlots + freezeSlots;
+    }
+
+    /**
+     * @return The number of slots where no node transmitted.
+     */
+    public long getEmptySlots() {
+        return emptySlots;
+    }
+
+    /**
+     * @return The number of slots where a successful transmission started.
+     */
+    public long getSuccessfulSlots() {
+        return successfulSlots;
+    }
+
+    /**
+     * @return The number of slots where a collision started.
+     */
+    public long getCollisionSlots() {
+        return collisionSlots;
+    }
+
+    /**
+     * @return The number of slots during a transmission, where the nodes froze.
+     */
+    public long getFreezeSlots() {
+        return freezeSlots;
+    }
+
+    /**
+     * @return The number of slots that the event-driven engine simulated at once. They are included in the
+     * empty and freeze slots.
+     */
+    public long getSkippedSlots() {
+        return skippedSlots;
+    }
+
+    /**
+     * @return The number of packets generated by the sources.
+     */
+    public long getPacketsGenerated() {
+        return packetsGenerated;
+    }
+
+    /**
+     * @return The number of packets added to the packet buffers.
+     */
+    public long getPacketsEnqueued() {
+        return packetsEnqueued;
+    }
+
+    /**
+     * @return The number of packets dropped because the packet buffer was full.
+     */
+    public long getPacketsDropped() {
+        return packetsDropped;
+    }
+
+    /**
+     * @return The time spent for configuring the nodes (sources and packet buffers) in nanoseconds.
+     */
+    public long getConfigureNanos() {
+        return configureNanos;
+    }
+
+    /**
+     * @return The time spent for the competition for the medium in nanoseconds.
+     */
+    public long getFightNanos() {
+        return fightNanos;
+    }
+
+    /**
+     * @return The time spent by the event-driven engine for skipping idle slots in nanoseconds.
+     */
+    public long getSkipNanos() {
+        return skipNanos;
+    }
+
+    public String toString() {
+        return "slots=" + getSlots() + " empty=" + emptySlots + " successful=" + successfulSlots
+                + " collision=" + collisionSlots + " freeze=" + freezeSlots + " skipped=" + skippedSlots
+                + " generated=" + packetsGenerated + " enqueued=" + packetsEnqueued + " dropped=" + packetsDropped
+                + " configureNanos=" + configureNanos + " fightNanos=" + fightNanos + " skipNanos=" + skipNanos;
+    }
+}
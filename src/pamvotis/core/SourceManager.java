@@ -1,5 +1,8 @@
 package src.pamvotis.core;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.Vector;
 
 import src.pamvotis.exceptions.ElementDoesNotExistException;
@@ -8,15 +11,26 @@ import src.pamvotis.sources.Source;
 
 
 /**
- * Manages the sources of a node. Polls packets from every source and returns them
- * in a vector of packets through the pollPacketsFromSources function.
+ * Manages the sources of a node. Polls packets from every source and puts them
+ * directly to the packet buffer of the node through the pollPacketsFromSources function.
+ * <p>
+ * The source manager knows how many slots will pass until the next source generates a packet
+ * or changes its state, so in the slots between it does not visit the sources at all. The
+ * interarrival timers of the sources are decreased with the elapsed slots only when they are
+ * needed again.
  * @author Vassilis Zafeiris
  */
-public class SourceManager {
+public class SourceManager implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	MobileNode _node = null;
 	Vector<Source> _vActiveSources = new Vector<Source>();
-	long _lastTimerValue = 0;
+	transient IntIndex _sourceIndex = new IntIndex(); // The position of each source in _vActiveSources, by ID
+	long _lastTimerValue = 0; // The last slot that was polled
+	long _pendingSlots = 0; // Slots that have not been subtracted from the interarrival timers yet
+	long _idleSlots = 0; // Slots after _lastTimerValue during which no source fires
+	boolean _idleSlotsValid = false; // False if the sources changed since _idleSlots was calculated
 
 	public SourceManager(MobileNode node) {
 		_node = node;
@@ -27,9 +41,12 @@ public class SourceManager {
 	 * is decreased by  1
 	 * 
 	 * @return a vector of packets polled from sources
+	 * @see #pollPacketsFromSources(PacketBuffer, long)
 	 */
 	public Vector<Packet> pollPacketsFromSources() {
 
+		applyPendingSlots();
+		_idleSlotsValid = false;
 		Vector<Packet> newPackets = new Vector<Packet>();
 		Packet tmpPkt = null;
 		// Take packets from each available source
@@ -43,6 +60,109 @@ public class SourceManager {
 		return newPackets;
 	}
 
+	/**
+	 * Simulates the sources for one slot: synchronizes them, decreases their interarrival
+	 * timers by 1 and adds the generated packets to the end of a packet buffer. If the buffer
+	 * is full the packets are dropped. No objects are created. If no source fires in this
+	 * slot, the sources are not visited at all.
+	 * 
+	 * @param buffer The packet buffer of the node.
+	 * @param currentSlot The slot that is simulated.
+	 */
+	public void pollPacketsFromSources(PacketBuffer buffer, long currentSlot) {
+
+		prepare(currentSlot);
+		_lastTimerValue = currentSlot;
+		if (_idleSlots > 0) {
+			_idleSlots--;
+			_pendingSlots++;
+			return;
+		}
+		applyPendingSlots();
+		for (int i = 0; i < _vActiveSources.size(); i++) {
+			_vActiveSources.elementAt(i).synchronize();
+		}
+		Source s = null;
+		SimulatorMetrics metrics = _node.context.metrics;
+		for (int i = 0; i < _vActiveSources.size(); i++) {
+			s = _vActiveSources.elementAt(i);
+			s.interArTime -= 1;
+			if (s.interArTime <= 0) {
+				if (s.packetToBeTransmittedID != -1) {
+					boolean enqueued = buffer.enqueue(_node.context.timer, s.pktLength, s.packetToBeTransmittedID);
+					if (metrics != null) {
+						metrics.packetsGenerated++;
+						if (enqueued) metrics.packetsEnqueued++;
+						else metrics.packetsDropped++;
+					}
+				}
+				s.getNextPacket();
+			}
+		}
+		_idleSlots = Math.max(0, findIdleSlots(currentSlot + 1));
+	}
+
+	/**
+	 * Makes sure that _idleSlots concerns the slots starting from 'currentSlot'. If the slots are
+	 * not consecutive (the simulator may leave out or repeat a slot between two intervals) or
+	 * the sources have changed, the idle slots are calculated again.
+	 */
+	private void prepare(long currentSlot) {
+		if ((_idleSlotsValid == false) || (currentSlot != _lastTimerValue + 1)) {
+			applyPendingSlots();
+			_idleSlots = Math.max(0, findIdleSlots(currentSlot));
+			_lastTimerValue = currentSlot - 1;
+			_idleSlotsValid = true;
+		}
+	}
+
+	/**
+	 * Decreases the interarrival timers of the sources with the slots that passed without
+	 * visiting them.
+	 */
+	void applyPendingSlots() {
+		if (_pendingSlots > 0) {
+			for (int i = 0; i < _vActiveSources.size(); i++) {
+				_vActiveSources.elementAt(i).skip(_pendingSlots);
+			}
+			_pendingSlots = 0;
+		}
+	}
+
+	/**
+	 * Finds the number of slots, starting from 'currentSlot', during which no source generates a packet.
+	 * 
+	 * @param currentSlot The first slot to be simulated.
+	 * @return The minimum number of idle slots of all sources.
+	 * @see pamvotis.sources.Source#idleSlots(long)
+	 */
+	public long idleSlots(long currentSlot) {
+		prepare(currentSlot);
+		return _idleSlots;
+	}
+
+	/**
+	 * Advances all sources over a number of idle slots. The interarrival timers are
+	 * decreased the next time the sources are visited.
+	 * 
+	 * @param slots The number of slots to skip. Must not be more than the value returned by idleSlots().
+	 * @see pamvotis.sources.Source#skip(long)
+	 */
+	public void skipSlots(long slots) {
+		_pendingSlots += slots;
+		_idleSlots -= slots;
+		_lastTimerValue += slots;
+	}
+
+	//Finds the idle slots of all sources, starting from 'currentSlot'.
+	private long findIdleSlots(long currentSlot) {
+		long idle = Long.MAX_VALUE;
+		for (int i = 0; i < _vActiveSources.size(); i++) {
+			idle = Math.min(idle, _vActiveSources.elementAt(i).idleSlots(currentSlot));
+		}
+		return idle;
+	}
+
 	/**
 	 * Add a source to the node's source manager.
 	 * 
@@ -51,15 +171,13 @@ public class SourceManager {
 	 * @throws ElementExistsException 
 	 */
 	public void addSource(Source s) throws ElementExistsException {
-		boolean sourceExists=false;
-		for(int i=0;i<_vActiveSources.size();i++){
-			if(_vActiveSources.elementAt(i)._sourceId==s._sourceId){
-				sourceExists=true;
-				break;
-			}
+		if(_sourceIndex.get(s._sourceId)!=-1) throw new ElementExistsException("Source "+s._sourceId+" already exists.");
+		else {
+			applyPendingSlots();
+			_idleSlotsValid = false;
+			_vActiveSources.add(s);
+			_sourceIndex.put(s._sourceId, _vActiveSources.size()-1);
 		}
-		if(sourceExists) throw new ElementExistsException("Source "+s._sourceId+" already exists.");
-		else _vActiveSources.add(s);
 	}
 
 	/**
@@ -78,7 +196,7 @@ public class SourceManager {
 			if (s.packetToBeTransmittedID != -1) {
 				p = new Packet();
 				p.length = s.pktLength;
-				p.generationTime = MobileNode.timer;
+				p.generationTime = _node.context.timer;
 				p.id = s.packetToBeTransmittedID;
 			}
 			s.getNextPacket();
@@ -94,15 +212,16 @@ public class SourceManager {
 	 * @throws ElementDoesNotExistException 
 	 */
 	public boolean removeSource(int sourceId) throws ElementDoesNotExistException{
-		int position=-1;
-		for(int i=0;i<_vActiveSources.size(); i++){
-			if(_vActiveSources.elementAt(i)._sourceId==sourceId){
-				position = i;
-				break;
-			}
-		}
+		int position=_sourceIndex.get(sourceId);
 		if(position!=-1){
+			applyPendingSlots();
+			_idleSlotsValid = false;
 			_vActiveSources.removeElementAt(position);
+			// The next sources move one position back.
+			_sourceIndex.remove(sourceId);
+			for(int i=position;i<_vActiveSources.size(); i++){
+				_sourceIndex.put(_vActiveSources.elementAt(i)._sourceId, i);
+			}
 			return true;
 		}
 		else throw new ElementDoesNotExistException("Source "+sourceId+" does not exist.");
@@ -115,15 +234,12 @@ public class SourceManager {
 	 * @throws ElementDoesNotExistException 
 	 */
 	public Source getSource(int id) throws ElementDoesNotExistException {
-		Source s=null;		
-		for(int i=0;i<_vActiveSources.size(); i++){
-			if(_vActiveSources.elementAt(i)._sourceId==id){
-				s=_vActiveSources.elementAt(i);
-				break;
-			}
-		}
-		if(s==null) throw new ElementDoesNotExistException("Source"+id+"does not exist.");
-		return s;
+		int position=_sourceIndex.get(id);
+		if(position==-1) throw new ElementDoesNotExistException("Source"+id+"does not exist.");
+		// The caller may read or change the state of the source.
+		applyPendingSlots();
+		_idleSlotsValid = false;
+		return _vActiveSources.elementAt(position);
 	}
 	
 	/**
@@ -131,6 +247,18 @@ public class SourceManager {
 	 *
 	 */
 	public void clear(){
+		_pendingSlots = 0;
+		_idleSlotsValid = false;
 		_vActiveSources.clear();
+		_sourceIndex.clear();
+	}
+
+	// The index is not saved in checkpoints.
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		_sourceIndex = new IntIndex();
+		for(int i=0;i<_vActiveSources.size(); i++){
+			_sourceIndex.put(_vActiveSources.elementAt(i)._sourceId, i);
+		}
 	}
 }
@@ -86,17 +86,24 @@ public class SpecParams {
 	 */
 	public static int MAX_PKT_QUEUE_LNGTH;
 	
+	private static long readModified = 0; //The modification time of the file when it was last read.
+	private static long readLength = -1; //The length of the file when it was last read.
+	
 	//
 	/**
 	 * Reads the parameters of the SpecParams.xml file and stores them to the static members.
+	 * The file is read again only if it has changed since the last time it was read.
 	 */
-	public static void ReadParameters(){
+	public static synchronized void ReadParameters(){
 		
 		String str=null;
+		File file = new File("config"+File.separator+"SpecParams.xml");
+		if((readModified!=0)&&(file.lastModified()==readModified)&&(file.length()==readLength)) return;
 		
 		//Open the file
 		try {
-			File file = new File("config"+File.separator+"SpecParams.xml");
+			long modified = file.lastModified();
+			long length = file.length();
 			DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
 			Document doc;
 			DocumentBuilder db = dbf.newDocumentBuilder();
@@ -200,6 +207,8 @@ public class SpecParams {
 			ndlst = elmnt.getChildNodes();
 			str = ((Node) ndlst.item(0)).getNodeValue();
 			MAX_PKT_QUEUE_LNGTH = Integer.parseInt(str);
+			readModified = modified;
+			readLength = length;
 		} catch (NumberFormatException e) {
 			e.printStackTrace();
 		} catch (DOMException e) {
@@ -212,4 +221,21 @@ public class SpecParams {
 			e.printStackTrace();
 		}
 	}
+	
+	/**
+	 * Reads the parameters of the SpecParams.xml file, only if they have not been read yet. Unlike ReadParameters,
+	 * it never changes the parameters used by the simulations that already run, even if the file has changed.
+	 */
+	static synchronized void ReadParametersOnce(){
+		if(readModified==0) ReadParameters();
+	}
+	
+	/**
+	 * @return The values of all the parameters, in the order they are declared. Used for checking that a checkpoint
+	 * is resumed with the same parameters it was saved with.
+	 */
+	static synchronized double[] getValues(){
+		return new double[] {SLOT_ERP, SLOT_NON_ERP, SIFS_A, SIFS_G, LONG_PHY, SHORT_PHY, OFDM_PHY, CW_MIN_DSSS,
+				CW_MIN_OFDM, CW_MAX, ACK, RTS, CTS, MAC, MAX_PKT, MAX_PKT_QUEUE_LNGTH};
+	}
 }
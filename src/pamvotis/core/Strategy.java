@@ -4,15 +4,40 @@
  */
 package src.pamvotis.core;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Random;
 
 /**
  *
  * @author Simon
  */
-public class Strategy {
+public class Strategy implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private ArrayList<Canditate> canditates = new ArrayList<Canditate>();
+    private Trace trace = null;
+    private Random generator = null;
+
+    /**
+     * Records the selected strategies to a trace, e.g. the trace of the simulator.
+     * @param trace The trace, or null for not recording them.
+     * @see Simulator#getTrace()
+     */
+    public void setTrace(Trace trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * Sets the generator for breaking the ties between strategies with the same rank. Without a generator,
+     * Math.random() is used and the selections can not be reproduced.
+     * @param generator The generator, e.g. a stream of the simulator.
+     * @see Simulator#STRATEGY_STREAM
+     */
+    public void setGenerator(Random generator) {
+        this.generator = generator;
+    }
 
     public void addCandidate(String name, int id, int rank) {
         canditates.add(new Canditate(name, id, rank));
@@ -80,12 +105,17 @@ public class Strategy {
             }
         }
         if (bestCands.size() > 1) {
-            int randId = bestCands.get((int) (Math.random() * bestCands.size())).getId();
-            System.out.println(bestCands.size()+" have same best rank=" + bestRank + ", selecting one strategy randomly = " + getCandidate(randId).getName());
+            double rand01 = (generator != null) ? generator.nextDouble() : Math.random();
+            int randId = bestCands.get((int) (rand01 * bestCands.size())).getId();
+            if (trace != null) {
+                trace.record(Trace.INFO, -1, randId, Trace.STRATEGY, bestCands.size(), 0);
+            }
             getCandidate(randId).setNumOfTimeUsed(getCandidate(randId).getNumOfTimeUsed() + 1);
             return randId;
         }
-        System.out.println("Selecting the best rank=" + bestRank + " strategy " + getCandidate(bestId).getName());
+        if (trace != null) {
+            trace.record(Trace.INFO, -1, bestId, Trace.STRATEGY, 1, 0);
+        }
         getCandidate(bestId).setNumOfTimeUsed(getCandidate(bestId).getNumOfTimeUsed() + 1);
         return bestId;
 
@@ -112,7 +142,10 @@ public class Strategy {
          */
     }
 
-    private class Canditate {
+    private class Canditate implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
 
         private String name = null;
         private int id;
@@ -0,0 +1,180 @@
+package src.pamvotis.core;
+
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.util.BitSet;
+
+/**
+ * Records events of a simulation, for debugging. Each record holds the slot, the node, the event and the
+ * contention window and backoff counter of the node. The records are kept in a ring of primitive arrays,
+ * which are allocated once, when the trace is enabled. When the ring is full, the oldest records are
+ * overwritten. The records are printed on demand with dump().
+ * <p>
+ * Each event has a level. Only the events whose level is up to the level of the trace are recorded, and
+ * only for the nodes of the node filter, if one is set. When the trace is off (the default) recording
+ * costs only a comparison.
+ * @see Simulator#getTrace()
+ */
+public class Trace implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Level: nothing is recorded.
+     */
+    public static final int OFF = 0;
+    /**
+     * Level: the collisions and the strategy selections are recorded.
+     */
+    public static final int INFO = 1;
+    /**
+     * Level: the new contention window and backoff counter of each node after a collision are recorded too.
+     */
+    public static final int DEBUG = 2;
+    /**
+     * Event: a collision starts. The node is -1.
+     */
+    public static final int COLLISION = 1;
+    /**
+     * Event: a node that wanted to transmit collided and initialized its contention window (according to the
+     * backoff strategy) and its backoff counter.
+     */
+    public static final int COLLIDING_NODE = 2;
+    /**
+     * Event: a node that was transmitting collided with a hidden node and doubled its contention window.
+     */
+    public static final int TRANSMITTING_NODE = 3;
+    /**
+     * Event: a backoff strategy was selected. The node is the ID of the strategy, the contention window is the
+     * number of strategies that had the best rank and the slot is -1.
+     */
+    public static final int STRATEGY = 4;
+    private static final String[] EVENT_NAMES = {"", "COLLISION", "COLLIDING_NODE", "TRANSMITTING_NODE", "STRATEGY"};
+    int level = OFF;	//Package-private, so that the simulator can check it quickly.
+    private BitSet nodeFilter = null;	//The IDs of the nodes that are traced, or null for all nodes.
+    private int capacity = 0;	//The number of records of the ring.
+    private long[] slots = null;
+    private int[] nodes = null;
+    private int[] events = null;
+    private int[] cws = null;
+    private int[] backoffs = null;
+    private int next = 0;	//The position of the next record.
+    private long count = 0;	//The number of records since the trace was cleared.
+
+    /**
+     * Creates a trace that is off.
+     * @param capacity The maximum number of records that are kept.
+     */
+    public Trace(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Sets the level of the trace. The ring is allocated the first time the trace is enabled.
+     * @param level OFF, INFO or DEBUG.
+     */
+    public void setLevel(int level) {
+        if ((level > OFF) && (slots == null)) {
+            slots = new long[capacity];
+            nodes = new int[capacity];
+            events = new int[capacity];
+            cws = new int[capacity];
+            backoffs = new int[capacity];
+        }
+        this.level = level;
+    }
+
+    /**
+     * @return The level of the trace.
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Traces only some nodes. The events that do not concern a node are always traced.
+     * @param nodeIds The IDs of the nodes, or null for tracing all nodes.
+     */
+    public void setNodeFilter(int[] nodeIds) {
+        if (nodeIds == null) {
+            nodeFilter = null;
+            return;
+        }
+        nodeFilter = new BitSet();
+        for (int i = 0; i < nodeIds.length; i++) {
+            nodeFilter.set(nodeIds[i]);
+        }
+    }
+
+    /**
+     * Checks if an event will be recorded.
+     * @param level The level of the event.
+     * @param node The ID of the node, or -1.
+     * @return True if the event will be recorded.
+     */
+    public boolean isEnabled(int level, int node) {
+        return (level <= this.level) && ((node < 0) || (nodeFilter == null) || nodeFilter.get(node));
+    }
+
+    /**
+     * Records an event, if its level and node are enabled.
+     * @param level The level of the event.
+     * @param slot The current slot.
+     * @param node The ID of the node, or -1.
+     * @param event The event, e.g. COLLIDING_NODE.
+     * @param cw The contention window of the node.
+     * @param backoff The backoff counter of the node.
+     */
+    public void record(int level, long slot, int node, int event, int cw, int backoff) {
+        if (isEnabled(level, node) == false) {
+            return;
+        }
+        slots[next] = slot;
+        nodes[next] = node;
+        events[next] = event;
+        cws[next] = cw;
+        backoffs[next] = backoff;
+        next = (next + 1) % capacity;
+        count++;
+    }
+
+    /**
+     * @return The number of records that are kept.
+     */
+    public int size() {
+        return (int) Math.min(count, capacity);
+    }
+
+    /**
+     * @return The number of records since the trace was cleared, including the overwritten ones.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Removes all records.
+     */
+    public void clear() {
+        next = 0;
+        count = 0;
+    }
+
+    /**
+     * Prints the records that are kept, from the oldest to the newest, one per line.
+     * @param out Where the records are printed, e.g. System.out.
+     */
+    public void dump(PrintStream out) {
+        int size = size();
+        int first = (next - size + capacity) % capacity;
+        StringBuilder b = new StringBuilder();
+        b.append("Slot\tNode\tEvent\tCW\tBackoff\n");
+        for (int k = 0; k < size; k++) {
+            int i = (first + k) % capacity;
+            b.append(slots[i]).append('\t').append(nodes[i]).append('\t').append(EVENT_NAMES[events[i]])
+                    .append('\t').append(cws[i]).append('\t').append(backoffs[i]).append('\n');
+        }
+        out.print(b);
+        out.flush();
+    }
+}
@@ -1,5 +1,7 @@
 package src.pamvotis.core;
 
+import java.io.Serializable;
+
 /**
  * Simulates a packet generated from a session. Be careful, this packet is not yet generated. It is just a prediction
  * of what the source will generate. More specifically, when we want to generate a session of packets, then a
@@ -8,7 +10,10 @@ package src.pamvotis.core;
  * @see pamvotis.sources.Source#getNextPacket()
  * @author Dimitris El. Vassis
  */
-public class VirtualPacket {
+public class VirtualPacket implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * The packet length in bits.
 	 */
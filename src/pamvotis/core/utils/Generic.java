@@ -27,18 +27,44 @@ public class Generic {
       return secureNumber;
    }
 
+     /**
+      * @deprecated Uses Math.random(), so the results can not be reproduced. Use getRandomNumber(Random, int).
+      */
+     @Deprecated
      public static int getRandomNumber (int bound){
 
 
          return (int) (Math.random() * bound);
      }
 
+     /**
+      * Returns a random number between 0 (inclusive) and bound (exclusive).
+      * @param random The generator, e.g. the generator of a node.
+      * @param bound The upper bound (exclusive).
+      */
+     public static int getRandomNumber (Random random, int bound){
+         return (int) (random.nextDouble() * bound);
+     }
 
-
+       /**
+        * @deprecated Creates a new unseeded Random in each call, so the results can not be reproduced.
+        * Use getRandomNumber(Random, int, int).
+        */
+       @Deprecated
        public static int getRandomNumber (int lowerBound, int upperBound){
 
 
              Random random  = new Random();
+             return getRandomNumber(random, lowerBound, upperBound);
+     }
+
+       /**
+        * Returns a random number between lowerBound and upperBound (both inclusive).
+        * @param random The generator, e.g. the generator of a node.
+        * @param lowerBound The lower bound.
+        * @param upperBound The upper bound.
+        */
+       public static int getRandomNumber (Random random, int lowerBound, int upperBound){
              int upper = upperBound + 1;
 
             int R = random.nextInt(upper-lowerBound) + lowerBound;
@@ -7,7 +7,6 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.Toolkit;
 import java.io.File;
-import java.io.IOException;
 
 import javax.swing.JButton;
 import javax.swing.JFrame;
@@ -15,17 +14,11 @@ import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JProgressBar;
 import javax.swing.JTextArea;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-
-import org.w3c.dom.DOMException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
+import src.pamvotis.core.BatchRunner;
+import src.pamvotis.core.IntervalResults;
+import src.pamvotis.core.SimulationControl;
+import src.pamvotis.core.SimulationListener;
 import src.pamvotis.core.Simulator;
 import src.pamvotis.core.Strategy;
 
@@ -33,7 +26,6 @@ public class Run extends JFrame {
 
 	Pamvotis pm = null;
 	SimThread st = null;
-	private Task task;
 	private static final long serialVersionUID = 1L;
 	private JPanel jCPaneRun = null;
 	private JTextArea jTxtArRun = null;
@@ -63,8 +55,6 @@ public class Run extends JFrame {
 		this.setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
 		st = new SimThread();
 		st.start();
-		task = new Task();
-		task.start();
 	}
 
 	private JPanel getJCPaneRun() {
@@ -126,11 +116,10 @@ public class Run extends JFrame {
 		jBtRun.setText("Stop");
 		jBtRun.addActionListener(new java.awt.event.ActionListener() {
 
-			@SuppressWarnings("deprecation")
 			public void actionPerformed(java.awt.event.ActionEvent e) {
 				if (jBtRun.getText().equals("Stop")) {
-					task.stop();
-					st.stop();
+					// The simulation stops at the next check and prints the results so far.
+					st.control.cancel();
 					jBtRun.setText("Close");
 					jTxtArRun.setText(jTxtArRun.getText()
 							+ "Simulation interrupted.\n");
@@ -151,17 +140,14 @@ public class Run extends JFrame {
 		jBtPause.setText("Pause");
 		jBtPause.addActionListener(new java.awt.event.ActionListener() {
 
-			@SuppressWarnings("deprecation")
 			public void actionPerformed(java.awt.event.ActionEvent e) {
 				if (jBtPause.getText().equals("Pause")) {
-					st.suspend();
-					task.suspend();
+					st.control.pause();
 					jBtPause.setText("Resume");
 					jTxtArRun.setText(jTxtArRun.getText()
 							+ "Simulation Paused.\n");
 				} else {
-					st.resume();
-					task.resume();
+					st.control.resume();
 					jBtPause.setText("Pause");
 					jTxtArRun.setText(jTxtArRun.getText()
 							+ "Simulation Resumed.\n");
@@ -171,97 +157,44 @@ public class Run extends JFrame {
 		return jBtPause;
 	}
 
-	class Task extends Thread {
-
-		public void run() {
-			long start = System.currentTimeMillis();
-			long elapsedTimeMillis = 0;
-			int elapsedTimeSec = 0;
-			int elapsedTimeMin = 0;
-			while (st.getSimProgress() < 100) {
-				try {
-					Thread.sleep(10);
-					jProgressBar.setValue(st.getSimProgress());
-					jProgressBar.setString(st.getSimProgress() + "%");
-					jLblSim.setText("Time Simulated: " + st.getSimTime()
-							+ " seconds.");
-
-					elapsedTimeMillis = System.currentTimeMillis() - start;
-					elapsedTimeSec = (int) ((elapsedTimeMillis / 1000F) % 60);
-					elapsedTimeMin = (int) (elapsedTimeMillis / (60 * 1000F));
-					jLblEl.setText("Time Elapsed: " + elapsedTimeMin + ":"
-							+ elapsedTimeSec + " seconds");
-					if (jBtRun.getText().equals("Close")) {
-
-						break;
-					}
-				} catch (InterruptedException e1) {
-					e1.printStackTrace();
-				}
-			}
-			if (!jBtRun.getText().equals("Close")) {
-				jBtRun.setText("Close");
-				jTxtArRun.setText(jTxtArRun.getText()
-						+ "Simulation finished.\n");
-			}
-			jBtPause.setEnabled(false);
-		}
-	}
-
 	class SimThread extends Thread {
 
 		private Simulator sim = new Simulator();
-		Strategy strats = new Strategy();
-
-		public int getSimTime() {
-			return (int) sim.getTime();
-		}
-
-		public int getSimProgress() {
-			return sim.getProgress();
-		}
+		SimulationControl control = new SimulationControl();	// Pauses or stops the simulation.
+		Strategy strats = null;
+		private long start = 0;	// The real time the simulation started.
 
 		// This function makes all the job.
 		public void run() {
 
-			int simTime = 0;
-			int values = 0; // Read from the xml file.
+			start = System.currentTimeMillis();
 			jTxtArRun.setText(jTxtArRun.getText() + "Simulation Started.\n");
+			// The simulator notifies the window about its progress.
+			sim.addListener(new SimulationListener() {
 
-			// Read the total duration and the number of collected values from
-			// the xml file
-			try {
-				String str = null;
-				File file = new File("config" + File.separator + "NtConf.xml");
-				DocumentBuilderFactory dbf = DocumentBuilderFactory
-						.newInstance();
-				DocumentBuilder db = dbf.newDocumentBuilder();
-				Document doc = db.parse(file);
-				NodeList ndlst;
-				Element elmnt;
+				public void progress(Simulator sim, int progress, double time) {
+					jProgressBar.setValue(progress);
+					jProgressBar.setString(progress + "%");
+					jLblSim.setText("Time Simulated: " + Math.round(time)
+							+ " seconds.");
 
-				ndlst = doc.getElementsByTagName("duration");
-				elmnt = (Element) ndlst.item(0);
-				ndlst = elmnt.getChildNodes();
-				str = ((Node) ndlst.item(0)).getNodeValue();
-				simTime = Integer.parseInt(str);
+					long elapsedTimeMillis = System.currentTimeMillis() - start;
+					int elapsedTimeSec = (int) ((elapsedTimeMillis / 1000F) % 60);
+					int elapsedTimeMin = (int) (elapsedTimeMillis / (60 * 1000F));
+					jLblEl.setText("Time Elapsed: " + elapsedTimeMin + ":"
+							+ elapsedTimeSec + " seconds");
+				}
 
-				ndlst = doc.getElementsByTagName("values");
-				elmnt = (Element) ndlst.item(0);
-				ndlst = elmnt.getChildNodes();
-				str = ((Node) ndlst.item(0)).getNodeValue();
-				values = Integer.parseInt(str);
-			} catch (NumberFormatException e) {
-				e.printStackTrace();
-			} catch (DOMException e) {
-				e.printStackTrace();
-			} catch (ParserConfigurationException e) {
-				e.printStackTrace();
-			} catch (SAXException e) {
-				e.printStackTrace();
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
+				public void intervalFinished(Simulator sim, IntervalResults results) {
+				}
+			});
+
+			// First configure the parameters of the simulation. The total duration and
+			// the number of collected values are read from the xml file too.
+			sim.confParams();
+			sim.setControl(control);
+			long simTime = sim.getDuration();
+			int values = sim.getValues();
 
 			// We separate the total time in a number of intervals equal to the
 			// values the
@@ -272,66 +205,52 @@ public class Run extends JFrame {
 			// simulator class for more details). We also transform the total
 			// time to
 			// milliseconds for more accuracy.
-			int interval = simTime * 1000 / values;
+			int interval = (int) (simTime * 1000 / values);
 
 			// Some times the division is not exact and a modular arises. We
 			// should simulate this too!
-			int modInterval = (simTime * 1000) % values;
+			int modInterval = (int) ((simTime * 1000) % values);
 			int j = 0;
 
-			// First configure the parameters of the simulation.
-			sim.confParams();
-
 			// Then print the headers of the statistic files.
 			sim.printHeaders();
-			boolean reward = true;
-			//Choose the number strategies
-			strats.addCandidate("Strategy 1", 1, 0);
-			strats.addCandidate("Strategy 2", 2, 0);
-			strats.addCandidate("Strategy 3", 3, 0);
-			strats.addCandidate("Strategy 4", 4, 0);
+			// The strategies 1 to 4 are selected adaptively, like in the command line runner.
+			strats = BatchRunner.createStrategy(sim);
 			// Call the simulator to simulate the time intervals we defined
 			for (int i = 1; i <= values; i++) {
 
 				System.out.println(strats.reportRanks());
-				sim.setCurrentStrategy(strats.selectStrategy());
-				// System.out.println("Now using stratategy " +
-				// sim.getCurrentStrategy());
 				// If we are not in the last interval
 				if (i != values) {
-					sim.simulate(j + 1, j + interval);
+					BatchRunner.simulateInterval(sim, strats, j + 1, j + interval);
 				} // If we are in the last interval we should simulate the
 					// modular too.
 				else {
-
-					// If there is not a modular...
-					if (modInterval == 0) {
-						sim.simulate(j + 1, j + interval);
-					} // If there is...
-					else {
-						sim.simulate(j + 1, j + interval + modInterval);
-					}
+					BatchRunner.simulateInterval(sim, strats, j + 1, j + interval + modInterval);
+				}
+				// If the simulation was stopped, print the results so far.
+				if (sim.isStopped()) {
+					break;
 				}
 				int currentStrategy = sim.getCurrentStrategy();
-				
+
 				System.out.println("All are using  "+currentStrategy);
-				if (reward) {
-					long successs = sim.getSuccessForAllNodes();
-					long collisions =  sim.getCollisionsForAllNodes();
-					
-					System.out.println("Rewarding strategy '"+currentStrategy+"' by adding: "+successs);
-					System.out.println("Penalizing strategy '"+currentStrategy+"' by subtracting : "+collisions);
-					
-					
-					strats.penalise(currentStrategy, collisions);
-					strats.reward(currentStrategy,successs);
-				}// Increase the bounds of the next simulation interval
+				System.out.println("Rewarding strategy '"+currentStrategy+"' by adding: "+sim.getSuccessForAllNodes());
+				System.out.println("Penalizing strategy '"+currentStrategy+"' by subtracting : "+sim.getCollisionsForAllNodes());
+				// Increase the bounds of the next simulation interval
 				j += interval;
 			}
 			System.out.println(strats.report());
 
 			// Print the mean values to a file.
 			sim.printMeanValues();
+
+			if (!jBtRun.getText().equals("Close")) {
+				jBtRun.setText("Close");
+				jTxtArRun.setText(jTxtArRun.getText()
+						+ "Simulation finished.\n");
+			}
+			jBtPause.setEnabled(false);
 		}
 	}
 }
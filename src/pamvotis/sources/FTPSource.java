@@ -1,7 +1,5 @@
 package src.pamvotis.sources;
 
-import src.pamvotis.core.VirtualPacket;
-
 
 /**
  * This class represents an FTP source according 3GPP TR 25.892 V6.0.0.
@@ -9,6 +7,8 @@ import src.pamvotis.core.VirtualPacket;
  */
 public class FTPSource extends Source {
 
+	private static final long serialVersionUID = 1L;
+
 	float _ftpFSizeMean=2000000*8; //Ftp traffic parameters
 	float _ftpFSizeStdDev=722000*8; //Ftp traffic parameters
 	float _ftpFSizeMax=5000000*8; //Ftp traffic parameters
@@ -16,6 +16,9 @@ public class FTPSource extends Source {
 	int _pktSize = 8000;
 	int generatedRTime=0; //The reading time (off period) between the current and the next session
 	int lastPacketID = 0; //The ID of the last packet of the session
+	PacketTrain file = new PacketTrain(); //The packets of the file that have not been generated yet
+	int nextPacketID = 0; //The ID of the next packet of the file
+	boolean reading = false; //True if the reading time of the session has not been generated yet
 	
 
 	/**
@@ -40,60 +43,56 @@ public class FTPSource extends Source {
 	}
 	
 	/**
-	 * Creates an FTP sesion.
+	 * Creates an FTP sesion. Only the file size and the reading time are generated. The packets of the file are
+	 * generated one at a time by getNextPacket().
 	 */
 	private void createSession() {
-
-		//If the user changed the default packet size (1500Bytes) set a flag. See start of the for loop.
-		boolean packetSizeChanged=false; if(_pktSize!=12000) packetSizeChanged=true;
 		// set file size
-		int file = (int) genRv('l', _ftpFSizeMean, _ftpFSizeStdDev,_ftpFSizeMax,-1);
+		int size = (int) genRv('l', _ftpFSizeMean, _ftpFSizeStdDev,_ftpFSizeMax,-1);
 		// set reading time
 		generatedRTime = (int) genRv('e', _ftpReadingTime);
-		// Calculate the packets to be transmitted
-		//According to 3GPP, 74% of packets use 1500Bytes MSDU while 24% use 576Butes MSDU.
-		//If the user did not change the default packet size, set the packet size randomly, according to the above. 
-		int pktSize=0; int pktSizeRand = 0; int pkts = 0;
-		if(packetSizeChanged) pkts = (int) (file / _pktSize);
-		else pkts = (int) (file/(0.24*1500*8+0.76*576*8));
-
-		// Add the packets to the session queue and mark their ids.
-		for (int i = 0; i < pkts; i++) {
-			if(packetSizeChanged) pktSize = _pktSize;
-			else{
-				pktSizeRand = (int) generator.nextFloat();
-				if(pktSizeRand>0.24f) pktSize = 1500*8;
-				else pktSize = 576*8;
-			}
-			session.addElement(new VirtualPacket(pktSize, 1, i + 1));
-		}
+		file.start(size, _pktSize);
+		nextPacketID = 1;
 		// Mark the id of the last packet to be transmitted. When this will
 		// be transmitted, off session will be generated
-		lastPacketID = pkts;
-		// This is a dummy packet.
-		// Ihterarrival is a very long dummy interval. Will be changed by
-		// the setReadingTime
-		// ID is -1 in order to check it and not add it to the packet queue
-		// for transmission
-		session.addElement(new VirtualPacket(1, generatedRTime, -1));
+		lastPacketID = nextPacketID + file.remaining() - 1;
+		reading = true;
 	}
 
+	/**
+	 * Drops the current session, so that a new one is created with the new generator.
+	 */
+	protected void restart() {
+		file.clear();
+		reading = false;
+		super.restart();
+	}
 
 	/**
-	 * If a session is empty, a new one is created. Then the first packet of the session is picked up
-	 * in order to be born when its interarrival counter expires.
+	 * If a session is over, a new one is created. Then the next packet of the session is generated
+	 * in order to be born when its interarrival counter expires. After the last packet of the file,
+	 * a dummy packet with the reading time as interarrival is generated.
 	 */
-	public void getNextPacket() {		
-		if (session.isEmpty()){
+	public void getNextPacket() {
+		if (file.isEmpty() && (reading == false)){
 			createSession();
 		}
-		interArTime = session.firstElement().interarrival;
-		pktLength = session.firstElement().length;
-		packetToBeTransmittedID = session.firstElement().id;
-		session.removeElementAt(0);
+		if (!file.isEmpty()) {
+			pktLength = file.next(generator);
+			interArTime = 1;
+			packetToBeTransmittedID = nextPacketID++;
+		} else {
+			// This is a dummy packet.
+			// ID is -1 in order to check it and not add it to the packet queue
+			// for transmission
+			pktLength = 1;
+			interArTime = generatedRTime;
+			packetToBeTransmittedID = -1;
+			reading = false;
+		}
 	}
-	
-	
+
+
 	/**
 	 * This function is not needed for the case of FTP.
 	 */
@@ -9,6 +9,8 @@ import src.pamvotis.exceptions.UnknownDistributionException;
  */
 public class GenericSource extends Source {
 
+	private static final long serialVersionUID = 1L;
+
 	char _intArrDstr; // The packet interarrival time distribution
 
 	int _avgIntArr = 0; // The packet interarrival time (sec)
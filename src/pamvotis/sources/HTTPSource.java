@@ -1,13 +1,14 @@
 package src.pamvotis.sources;
 
-import src.pamvotis.core.VirtualPacket;
-
 /**
  * This class represents an HTTP source according to 3GPP TR 25.892 V6.0.0.
  * @author Dimitris El. Vassis
  *
  */
 public class HTTPSource extends Source{
+
+	private static final long serialVersionUID = 1L;
+
 	int _pktSize = 12000;
 	float _mainObjectMean = 10710*8;
 	float _mainObjectStDev = 25032*8;
@@ -22,6 +23,12 @@ public class HTTPSource extends Source{
 	float _readingTime = 30f/slot;
 	float _parsingTime = 0.13f/slot;
 	int id=0;
+	PacketTrain file = new PacketTrain(); //The packets of the current object that have not been generated yet
+	int embObjects = 0; //The number of the embedded objects of the session that have not been started yet
+	int stage = NONE; //The part of the session that is generated
+	private static final int NONE = 0; //No session, or the reading time of the last session has been generated
+	private static final int MAIN = 1; //The main object is being generated
+	private static final int EMBEDDED = 2; //The parsing time or an embedded object has been generated
 	
 	
 	/**
@@ -64,73 +71,75 @@ public class HTTPSource extends Source{
 	}
 	
 	/**
-	 * Creates a new HTTP session
+	 * Creates a new HTTP session. Only the number of embedded objects and the size of the main object are
+	 * generated. The rest of the session is generated by getNextPacket(), one packet at a time, in the order of
+	 * the session: the main object, the parsing time, the embedded objects and the reading time.
 	 */
 	private void createSession(){
 		id=0; //The counter that marks the id of each packet
 		//Generate the number of embedded objects
-		int nd = (int) genRv('p',_NumOfEmbObjectsMean,_NumOfEmbObjectsMax,-1);
-		
-		//Generate a main object file and add it to the session 
-		addFile('m');
+		embObjects = (int) genRv('p',_NumOfEmbObjectsMean,_NumOfEmbObjectsMax,-1);
 		
-		//Add a dummy packet to simulate the parsing time
-		int pTime = (int)genRv('e',_parsingTime,Float.MAX_VALUE,1);
-		session.addElement(new VirtualPacket(_pktSize, pTime, -1));
-		
-		//generate nd embedded object files and add them to the session
-		for(int i=0;i<nd;i++){
-			addFile('e');
-		}
-		//Add a dummy packet that simulates the reading time
-		int rTime = (int)genRv('e',_readingTime,Float.MAX_VALUE,1);
-		session.addElement(new VirtualPacket(_pktSize, rTime, -1));
+		//Generate a main object file
+		startFile('m');
+		stage = MAIN;
 	}
 	
 	/**
-	 * Helper function that generates a file, splits it to packets and adds it to the session
+	 * Helper function that generates the size of a file, in order to split it to packets
 	 */
-	private void addFile(char type){
-		int file=0;
+	private void startFile(char type){
+		int size=0;
 		//If it is a main object...
-		if(type=='m') file = (int) genRv('l',_mainObjectMean,_mainObjectStDev,_mainObjectMax,_mainObjectMin);
+		if(type=='m') size = (int) genRv('l',_mainObjectMean,_mainObjectStDev,_mainObjectMax,_mainObjectMin);
 		//If it is an embedded object...
-		else file = (int) genRv('l',_embObjectMean,_embObjectStDev,_embObjectMax,_embObjectMin);
-		
-		//If the user changed the default packet size (1500Bytes) set a flag. See start of the for loop.
-		boolean packetSizeChanged=false; if(_pktSize!=12000) packetSizeChanged=true;
-		
-		// Calculate the packets to be transmitted
-		//According to 3GPP, 74% of packets use 1500Bytes MSDU while 24% use 576Butes MSDU.
-		//If the user did not change the default packet size, set the packet size randomly, according to the above. 
-		int pktSize=0; int pktSizeRand = 0; int pkts = 0;
-		if(packetSizeChanged) pkts = (int) (file / _pktSize);
-		else pkts = (int) (file/(0.24*1500*8+0.76*576*8));
+		else size = (int) genRv('l',_embObjectMean,_embObjectStDev,_embObjectMax,_embObjectMin);
+		file.start(size, _pktSize);
+	}
 
-		// Add the packets to the session queue and mark their ids.
-		for (int i = 0; i < pkts; i++) {
-			if(packetSizeChanged) pktSize = _pktSize;
-			else{
-				pktSizeRand = (int) generator.nextFloat();
-				if(pktSizeRand>0.24f) pktSize = 1500*8;
-				else pktSize = 576*8;
-			}
-			session.addElement(new VirtualPacket(pktSize, 1, ++id));
-		}
+	/**
+	 * Drops the current session, so that a new one is created with the new generator.
+	 */
+	protected void restart() {
+		file.clear();
+		stage = NONE;
+		super.restart();
 	}
 	
 	/**
-	 * If a session is empty, a new one is created. Then the first packet of the session is picked up and
-	 * in order to be born when its interarrival counter expires.
+	 * If a session is over, a new one is created. Then the next packet of the session is generated
+	 * in order to be born when its interarrival counter expires. The parsing and the reading times are
+	 * simulated by dummy packets.
 	 */
 	public void getNextPacket() {		
-		if (session.isEmpty()){
-			createSession();
+		while (file.isEmpty()) {
+			if (stage == NONE) {
+				createSession();
+			} else if (stage == MAIN) {
+				//Add a dummy packet to simulate the parsing time
+				setDummyPacket((int)genRv('e',_parsingTime,Float.MAX_VALUE,1));
+				stage = EMBEDDED;
+				return;
+			} else if (embObjects > 0) {
+				//generate the next embedded object file
+				embObjects--;
+				startFile('e');
+			} else {
+				//Add a dummy packet that simulates the reading time
+				setDummyPacket((int)genRv('e',_readingTime,Float.MAX_VALUE,1));
+				stage = NONE;
+				return;
+			}
 		}
-		interArTime = session.firstElement().interarrival;
-		pktLength = session.firstElement().length;
-		packetToBeTransmittedID = session.firstElement().id;
-		session.removeElementAt(0);
+		pktLength = file.next(generator);
+		interArTime = 1;
+		packetToBeTransmittedID = ++id;
+	}
+
+	private void setDummyPacket(int time) {
+		pktLength = _pktSize;
+		interArTime = time;
+		packetToBeTransmittedID = -1;
 	}
 	
 	/**
@@ -0,0 +1,71 @@
+package src.pamvotis.sources;
+
+import java.io.Serializable;
+import java.util.Random;
+
+/**
+ * A file that is split to packets, which are generated one at a time, when the source needs them. Only the
+ * number of the remaining packets and the packet size rule are kept, so the memory of a source does not depend
+ * on the size of the files it transmits. Used by the FTP and HTTP sources.
+ */
+class PacketTrain implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private int remaining = 0;	//The number of packets that have not been generated yet.
+	private int pktSize = 0;	//The size of the packets in bits, or 0 for the 3GPP mix of packet sizes.
+
+	/**
+	 * Splits a new file to packets. The packets of the previous file that were not generated are dropped.
+	 * @param file The size of the file in bits.
+	 * @param pktSize The packet size of the source in bits. 12000 (the default) means the 3GPP mix of packet sizes.
+	 */
+	void start(int file, int pktSize) {
+		//If the user changed the default packet size (1500Bytes) all packets have this size.
+		//According to 3GPP, 74% of packets use 1500Bytes MSDU while 24% use 576Butes MSDU.
+		//If the user did not change the default packet size, set the packet size randomly, according to the above.
+		if (pktSize != 12000) {
+			this.pktSize = pktSize;
+			remaining = (int) (file / pktSize);
+		} else {
+			this.pktSize = 0;
+			remaining = (int) (file / (0.24 * 1500 * 8 + 0.76 * 576 * 8));
+		}
+	}
+
+	/**
+	 * @return True if all the packets of the file have been generated.
+	 */
+	boolean isEmpty() {
+		return remaining <= 0;
+	}
+
+	/**
+	 * @return The number of packets that have not been generated yet.
+	 */
+	int remaining() {
+		return Math.max(remaining, 0);
+	}
+
+	/**
+	 * Generates the next packet of the file.
+	 * @param generator The generator of the source, for the 3GPP mix of packet sizes.
+	 * @return The length of the packet in bits.
+	 */
+	int next(Random generator) {
+		remaining--;
+		if (pktSize != 0) {
+			return pktSize;
+		}
+		int pktSizeRand = (int) generator.nextFloat();
+		if (pktSizeRand > 0.24f) return 1500 * 8;
+		else return 576 * 8;
+	}
+
+	/**
+	 * Drops the packets that have not been generated.
+	 */
+	void clear() {
+		remaining = 0;
+	}
+}
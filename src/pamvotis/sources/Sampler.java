@@ -0,0 +1,225 @@
+package src.pamvotis.sources;
+
+import java.io.Serializable;
+import java.util.Random;
+
+/**
+ * Generates random variables obeying one of the distributions of Source.genRv, with fixed parameters. The
+ * parameters of the distribution (e.g. the parameters of the normal distribution that underlies a lognormal one)
+ * are calculated once, when the sampler is created, and not for every variable.
+ * <p>
+ * The truncated uniform and exponential distributions are sampled by inverting their cumulative distribution
+ * function, so no variable is rejected. The exponential and normal variables are generated with the ziggurat
+ * method of Marsaglia and Tsang, which needs one random long and a table lookup in about 99% of the cases.
+ * The lognormal distribution is still truncated using the accept/reject method, but each try costs one normal
+ * variable and one exponentiation.
+ * @see Source#genRv(char, float, float, float, float)
+ */
+public final class Sampler implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final double UNIT = 1.0 / (1L << 53);
+	//Tables of the ziggurat for the normal distribution (128 layers).
+	private static final double NORMAL_R = 3.442619855899;
+	private static final long[] kn = new long[128];
+	private static final double[] wn = new double[128];
+	private static final double[] fn = new double[128];
+	//Tables of the ziggurat for the exponential distribution (256 layers).
+	private static final double EXP_R = 7.697117470131487;
+	private static final long[] ke = new long[256];
+	private static final double[] we = new double[256];
+	private static final double[] fe = new double[256];
+
+	static {
+		double m1 = 2147483648.0, m2 = 4294967296.0;
+		double dn = NORMAL_R, tn = dn, vn = 9.91256303526217e-3;
+		double q = vn / Math.exp(-0.5 * dn * dn);
+		kn[0] = (long) ((dn / q) * m1);
+		kn[1] = 0;
+		wn[0] = q / m1;
+		wn[127] = dn / m1;
+		fn[0] = 1.0;
+		fn[127] = Math.exp(-0.5 * dn * dn);
+		for (int i = 126; i >= 1; i--) {
+			dn = Math.sqrt(-2.0 * Math.log(vn / dn + Math.exp(-0.5 * dn * dn)));
+			kn[i + 1] = (long) ((dn / tn) * m1);
+			tn = dn;
+			fn[i] = Math.exp(-0.5 * dn * dn);
+			wn[i] = dn / m1;
+		}
+		double de = EXP_R, te = de, ve = 3.949659822581572e-3;
+		q = ve / Math.exp(-de);
+		ke[0] = (long) ((de / q) * m2);
+		ke[1] = 0;
+		we[0] = q / m2;
+		we[255] = de / m2;
+		fe[0] = 1.0;
+		fe[255] = Math.exp(-de);
+		for (int i = 254; i >= 1; i--) {
+			de = -Math.log(ve / de + Math.exp(-de));
+			ke[i + 1] = (long) ((de / te) * m2);
+			te = de;
+			fe[i] = Math.exp(-de);
+			we[i] = de / m2;
+		}
+	}
+
+	private final char distr;
+	private final float mean, stDev, max, min;	//The arguments of genRv.
+	private double lower = 0, upper = 0;	//The bounds of the truncated distribution.
+	private double tail = 0;	//Exponential: the probability of a variable above the upper bound, before truncation.
+	private double mu = 0, sigma = 0;	//Lognormal: the parameters of the underlying normal distribution.
+
+	/**
+	 * Creates a sampler.
+	 * @param distr The distribution: 'c' for constant, 'u' for uniform, 'e' for exponential, 'p' for Pareto,
+	 * 'l' for lognormal.
+	 * @param mean Mean value of the distribution.
+	 * @param stDev Standard deviation of the distribution (only for lognormal).
+	 * @param max Maximum value. Not applied to Pareto.
+	 * @param min Minimum value. Not applied to Pareto.
+	 */
+	public Sampler(char distr, float mean, float stDev, float max, float min) {
+		this.distr = distr;
+		this.mean = mean;
+		this.stDev = stDev;
+		this.max = max;
+		this.min = min;
+		switch (distr) {
+		case 'c':
+		case 'p':
+			break;
+		case 'u': {
+			//mean*U is uniform in [0, mean]. Keep the part within [min, max].
+			lower = Math.max(min, 0);
+			upper = Math.min(max, mean);
+			break;
+		}
+		case 'e': {
+			//The distribution is memoryless, so it is shifted to the lower bound and only
+			//the probability above the upper bound must be removed.
+			lower = Math.max(min, 0);
+			upper = max;
+			tail = (mean > 0) ? Math.exp(-(upper - lower) / mean) : 0;
+			break;
+		}
+		case 'l': {
+			// transform lognormal parameters to normal parameters
+			double m = mean, s = stDev;
+			mu = 2 * Math.log(m) - Math.log(s * s + m * m) / 2;
+			//The variables were generated with sqrt(-log(R2)) instead of sqrt(-2*log(R2)) in the Box-Muller
+			//transform, so the standard deviation of the normal variable is divided by sqrt(2) to keep the
+			//same distribution.
+			sigma = Math.sqrt(-2 * Math.log(m) + Math.log(s * s + m * m)) / Math.sqrt(2);
+			break;
+		}
+		default: {
+			System.out.println("Distribution type configuration error. Use one of c,e,l or p.");
+			System.exit(0);
+		}
+		}
+	}
+
+	/**
+	 * Checks if the sampler was created with some arguments.
+	 * @return True if the arguments are the same.
+	 */
+	boolean matches(char distr, float mean, float stDev, float max, float min) {
+		return (this.distr == distr) && (this.mean == mean) && (this.stDev == stDev) && (this.max == max)
+				&& (this.min == min);
+	}
+
+	/**
+	 * Generates a random variable.
+	 * @param generator The generator of the uniform random numbers.
+	 * @return A float which obeys the distribution of the sampler.
+	 */
+	public float sample(Random generator) {
+		switch (distr) {
+		case 'c':
+			return (int) mean; //Casted because in most cases this value must be integer
+		case 'u':
+			return (float) (lower + (upper - lower) * generator.nextDouble());
+		case 'e': {
+			if (mean <= 0) return 0;
+			if (tail == 0) {
+				//The upper bound is too far to affect the distribution.
+				return (float) (lower + mean * exponential(generator));
+			}
+			return (float) (lower - mean * Math.log1p(-generator.nextDouble() * (1 - tail)));
+		}
+		case 'l': {
+			double rLogNormal = 0;
+			do {
+				rLogNormal = Math.exp(mu + sigma * normal(generator));
+			} while ((rLogNormal >= max) || (rLogNormal <= min)); // truncate
+			return (float) rLogNormal;
+		}
+		default: {
+			//Pareto with alfa=1.2 and b=20*8. alfa is good in other telecom stochastic cases as well.
+			//U^(-1/alfa) = exp(E/alfa), where E=-log(U) is exponential.
+			double b = 20 * 8;
+			return (float) (b * Math.exp(exponential(generator) / 1.2d) + b);
+		}
+		}
+	}
+
+	/**
+	 * Generates a normally distributed variable with zero mean and unit variance, with the ziggurat method.
+	 * @param generator The generator of the uniform random numbers.
+	 * @return The variable.
+	 */
+	public static double normal(Random generator) {
+		for (;;) {
+			long u = generator.nextLong();
+			int iz = (int) (u & 127);
+			int hz = (int) (u >> 32);
+			if (Math.abs((long) hz) < kn[iz]) {
+				return hz * wn[iz];
+			}
+			if (iz == 0) {
+				//The tail beyond NORMAL_R.
+				double x = 0, y = 0;
+				do {
+					x = -Math.log(uniform(generator)) / NORMAL_R;
+					y = -Math.log(uniform(generator));
+				} while (y + y < x * x);
+				return (hz > 0) ? NORMAL_R + x : -NORMAL_R - x;
+			}
+			double x = hz * wn[iz];
+			if (fn[iz] + uniform(generator) * (fn[iz - 1] - fn[iz]) < Math.exp(-0.5 * x * x)) {
+				return x;
+			}
+		}
+	}
+
+	/**
+	 * Generates an exponentially distributed variable with unit mean, with the ziggurat method.
+	 * @param generator The generator of the uniform random numbers.
+	 * @return The variable.
+	 */
+	public static double exponential(Random generator) {
+		for (;;) {
+			long u = generator.nextLong();
+			int iz = (int) (u & 255);
+			long jz = u >>> 32;
+			if (jz < ke[iz]) {
+				return jz * we[iz];
+			}
+			if (iz == 0) {
+				//The tail beyond EXP_R.
+				return EXP_R - Math.log(uniform(generator));
+			}
+			double x = jz * we[iz];
+			if (fe[iz] + uniform(generator) * (fe[iz - 1] - fe[iz]) < Math.exp(-x)) {
+				return x;
+			}
+		}
+	}
+
+	//A uniform random number in (0, 1), never 0, so that its logarithm is finite.
+	private static double uniform(Random generator) {
+		return ((generator.nextLong() >>> 11) + 0.5) * UNIT;
+	}
+}
@@ -1,7 +1,9 @@
 package src.pamvotis.sources;
 
+import java.io.Serializable;
 import java.util.Vector;
 
+import src.pamvotis.core.SimulationContext;
 import src.pamvotis.core.VirtualPacket;
 
 
@@ -12,25 +14,28 @@ import src.pamvotis.core.VirtualPacket;
  * from the inherited sources.
  * @author Dimitris El. Vassis
  */
-public abstract class Source{
+public abstract class Source implements Serializable {
 
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The context of the simulation the source belongs to. Its timer represents the current time in slots
+	 * and is used for synchronization.
+	 */
+	protected SimulationContext context;
 	/**
 	 * The time slot value according to the physical layer. Used for synchronization
 	 */
-	public static float slot;
+	public float slot;
 	/**
 	 * Generator for generating random variables
 	 */
-	public static java.util.Random generator;
+	public java.util.Random generator;
 	
 	/**
 	 * The Id of the source
 	 */
 	public int _sourceId;
-	/**
-	 * Represents the current time in slots. used for synchronization
-	 */
-	public static long timer;
 	/**
 	 * The interarrival time of the packet to be generated.
 	 */
@@ -48,6 +53,58 @@ public abstract class Source{
 	 * each one of them, when the time to be generated arrives, it is converted to a real packet and added to the source for transmission.
 	 */
 	public Vector<VirtualPacket> session = new Vector<VirtualPacket>();
+	/**
+	 * The samplers of the distributions used by the source, with their parameters calculated.
+	 */
+	private Sampler[] samplers = new Sampler[8];
+	private int samplerCount = 0;
+
+	/**
+	 * Creates a source that belongs to the simulation of the current thread, until it is added to a node.
+	 * @see SimulationContext#current()
+	 * @see #setContext(SimulationContext)
+	 */
+	public Source(){
+		context = SimulationContext.current();
+		slot = context.slot;
+		generator = context.generator;
+	}
+
+	/**
+	 * Binds the source to the context of the simulation of the node it is added to, so the source does not
+	 * depend on the thread that created it. Called when the source is added to a node. If the source was created
+	 * with another context, it uses the timer of the new one and draws its first packet again; if it used the
+	 * generator of the other context, it uses the generator of the new one.
+	 * @param context The context of the simulation of the node.
+	 */
+	public void setContext(SimulationContext context){
+		if (context == this.context) {
+			return;
+		}
+		java.util.Random previous = this.context.generator;
+		this.context = context;
+		slot = context.slot;
+		setGenerator((generator == previous) ? context.generator : generator);
+	}
+
+	/**
+	 * Sets the generator of the source and draws the first packet again, so that all the random variables of
+	 * the source come from this generator. Called when the source is added to a node, before it is polled.
+	 * @param generator The generator of the source.
+	 */
+	public void setGenerator(java.util.Random generator){
+		this.generator = generator;
+		session.clear();
+		restart();
+	}
+
+	/**
+	 * Draws the first packet of the source, like the constructor does. Called by setGenerator, after the session is
+	 * cleared. Sources whose constructor does more than calling getNextPacket() must override it.
+	 */
+	protected void restart(){
+		getNextPacket();
+	}
 
 	/**
 	 * Generates a random variable obeying a specific distribution.
@@ -55,78 +112,27 @@ public abstract class Source{
 	 * 'p' for Pareto, 'l' for lognormal
 	 * @param mean Mean value of the distribution
 	 * @param stDev Standard deviation of the distribution
-	 * @param max Maximum value. If this value is set, truncation will occur using the accept/reject method and the variable will obviously obey
-	 * a truncated distribution.
-	 * @param min Minimum value. If this value is set, truncation will occur using the accept/reject method and the variable will obviously obey
-	 * a truncated distribution.
+	 * @param max Maximum value. If this value is set, the variable will obey a truncated distribution.
+	 * @param min Minimum value. If this value is set, the variable will obey a truncated distribution.
 	 * @return A float which obeys the distribution set by 'dist'
+	 * @see Sampler
 	 */
 	private float generateRandomVariable(char distr, float mean, float stDev, float max, float min){
-		float rnd = 0;
-		switch (distr) {
-		case 'c': {
-			rnd = (int) mean; //Casted because in most cases this value must be integer
-			break;
-		}
-		case 'u': {
-			do{
-			rnd = mean*generator.nextFloat();
-			}while((rnd>max)||(rnd<min));
-			break;
-		}
-		case 'e': // exponential
-		{
-			do{
-			rnd = - (float) (mean * Math.log(generator.nextDouble()));
-			}while((rnd>max)||(rnd<min));
-			break;
-		}
-		case 'l': // lognormal
-		{
-			double R1 = 0, R2 = 0, rNormal = 0, rLogNormal = 0, ml = 0, sl = 0;
-			// Generate uniform
-			do {
-				// transform lognormal parameters to normal parameters
-				ml = 2
-				* java.lang.Math.log((double) mean)
-				- java.lang.Math.log(java.lang.Math.pow((double) stDev,
-						2)
-						+ java.lang.Math.pow((double) mean, 2)) / 2;
-				sl = java.lang.Math.sqrt(-2
-						* java.lang.Math.log((double) mean)
-						+ java.lang.Math.log(java.lang.Math.pow((double) stDev,
-								2)
-								+ java.lang.Math.pow((double) mean, 2)));
-				// generate normal
-				R1 = generator.nextDouble();
-				R2 = generator.nextDouble();
-				rNormal = ml + sl * java.lang.Math.cos(2 * 3.14 * R1)
-				* java.lang.Math.sqrt(-java.lang.Math.log(R2));
-				// generate lognormal
-				rLogNormal = java.lang.Math.exp(rNormal);
-			} while ((rLogNormal >= max)||(rLogNormal<=min)); // truncate
-			rnd = (float)rLogNormal;
-			break;
-		}
-		case 'p': //Pareto
-		{
-			double alfa = 1.2d; //alfa parameter of pareto is 1.2 for the video case. Is good in other telecom
-			//stochastic cases as well.
-			double b = 20*8;//(double)mean*(alfa-1d)/alfa;
-			double d=0;
-				d = generator.nextDouble();
-				//generate a pareto distributed number 
-				d = b/Math.pow(d,1d/alfa);
-			rnd = (float) (d+b);//System.out.println(rnd);
-			break;
+		//A source uses a few distributions, so the samplers are found with a linear search.
+		for (int i = 0; i < samplerCount; i++) {
+			if (samplers[i].matches(distr, mean, stDev, max, min)) {
+				return samplers[i].sample(generator);
+			}
 		}
-		default:
-		{
-			System.out.println("Distribution type configuration error. Use one of c,e,l or p.");
-			System.exit(0);
+		Sampler sampler = new Sampler(distr, mean, stDev, max, min);
+		if (samplerCount < samplers.length) {
+			samplers[samplerCount++] = sampler;
+		} else {
+			//The parameters change often. Replace the oldest sampler.
+			System.arraycopy(samplers, 1, samplers, 0, samplers.length - 1);
+			samplers[samplers.length - 1] = sampler;
 		}
-		}
-		return rnd;
+		return sampler.sample(generator);
 	}
 	
 	/**
@@ -135,10 +141,8 @@ public abstract class Source{
 	 * 'p' for Pareto, 'l' for lognormal. For Pareto, alfa=1.2 is always assumed.
 	 * @param mean Mean value of the distribution
 	 * @param stDev Standard deviation of the distribution (only available for some distributions)
-	 * @param max Maximum value. If this value is set, truncation will occur using the accept/reject method and the variable will obviously obey
-	 * a truncated distribution. If you want to ommit this parameter, set it to Integer.MAX_VALUE
-	 * @param min Minimum value. If this value is set, truncation will occur using the accept/reject method and the variable will obviously obey
-	 * a truncated distribution. If you want to ommit this parameter, set it to -1.
+	 * @param max Maximum value. If this value is set, the variable will obey a truncated distribution. If you want to ommit this parameter, set it to Integer.MAX_VALUE
+	 * @param min Minimum value. If this value is set, the variable will obey a truncated distribution. If you want to ommit this parameter, set it to -1.
 	 * @return A float which obeys the distribution set by 'dist'
 	 */
 	public float genRv(char distr, float mean, float stDev, float max, float min){
@@ -174,16 +178,35 @@ public abstract class Source{
 	 * @param distr The distribution which the random variable will obey: 'c' for constant, 'e' for exponential,
 	 * 'p' for Pareto, 'l' for lognormal. For Pareto, alfa=1.2 is always assumed.
 	 * @param mean Mean value of the distribution
-	 * @param max Maximum value. If this value is set, truncation will occur using the accept/reject method and the variable will obviously obey
-	 * a truncated distribution.
-	 * @param min Minimum value. If this value is set, truncation will occur using the accept/reject method and the variable will obviously obey
-	 * a truncated distribution.
+	 * @param max Maximum value. If this value is set, the variable will obey a truncated distribution.
+	 * @param min Minimum value. If this value is set, the variable will obey a truncated distribution.
 	 * @return A float which obeys the distribution set by 'dist'
 	 */
 	public float genRv(char distr, float mean, float max, float min){
 			return generateRandomVariable(distr, mean, 0, max, min);
 	}
 	
+	/**
+	 * Returns the number of slots, starting from 'currentSlot', during which the source is guaranteed not to generate
+	 * a packet and not to change its state in synchronize(). Used by the event-driven engine of the simulator
+	 * for skipping idle slots. Sources that do some work in synchronize() must override this method.
+	 * @param currentSlot The first slot to be simulated.
+	 * @return The number of idle slots of the source.
+	 * @see #skip(long)
+	 */
+	public long idleSlots(long currentSlot){
+			return interArTime - 1;
+	}
+
+	/**
+	 * Advances the source over a number of idle slots, as if it was polled once in each one of them.
+	 * @param slots The number of slots to skip. Must not be more than the value returned by idleSlots().
+	 * @see #idleSlots(long)
+	 */
+	public void skip(long slots){
+			interArTime -= slots;
+	}
+
 	/**This abstract method is called by the source manager to get a packet generated by the packet source.
 	*Implemented differently in each source.
 	*/
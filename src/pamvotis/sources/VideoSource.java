@@ -7,6 +7,9 @@ import src.pamvotis.core.VirtualPacket;
  * @author Dimitris El. Vassis
  */
 public class VideoSource extends Source{
+
+	private static final long serialVersionUID = 1L;
+
 	int _frameIntArr=20;
 	int _packetsPerFrame = 8;
 	float _pktSize= 50*8;
@@ -14,7 +17,6 @@ public class VideoSource extends Source{
 	int _pktIntArr = (int)(0.006/slot);
 	int _pktIntArrMax = (int)(0.125/slot);
 	int intArrCounter = 0;
-	static long timer;
 	long _lastFrameCreation = 0;
 
 	/**
@@ -39,7 +41,7 @@ public class VideoSource extends Source{
 		_pktIntArrMax=(int)(pktIntArrMax/slot); //Note: At the moment, this parameter is not used, as pareto distrubution
 		//is adopted, instead of truncated pareto recommended by 3GPP.
 		intArrCounter = _frameIntArr;
-		_lastFrameCreation = Source.timer;
+		_lastFrameCreation = context.timer;
 		createSession();
 	}
 
@@ -53,6 +55,14 @@ public class VideoSource extends Source{
 		intArrCounter = _frameIntArr;
 	}
 
+	/**
+	 * Creates the first session again, like the constructor does.
+	 */
+	protected void restart(){
+		_lastFrameCreation = context.timer;
+		createSession();
+	}
+
 	/**
 	 * If the session is not empty, it takes the first packet of the session in order to be born when its
 	 * interarrival timer expires. If the session is empty, it just adds dummy packets, that actually represent an off interval.
@@ -71,12 +81,29 @@ public class VideoSource extends Source{
 		}
 	}
 
+	/**
+	 * Between two frames the source generates a dummy packet in every slot, so it is idle until the frame
+	 * interarrival timer expires.
+	 */
+	public long idleSlots(long currentSlot){
+		long idle = Long.MAX_VALUE;
+		if(!(session.isEmpty()&&(packetToBeTransmittedID==-1))) idle = super.idleSlots(currentSlot);
+		return Math.min(idle, _lastFrameCreation+_frameIntArr-currentSlot);
+	}
+
+	/**
+	 * The dummy packets between two frames are not affected by skipping.
+	 */
+	public void skip(long slots){
+		if(!(session.isEmpty()&&(packetToBeTransmittedID==-1))) super.skip(slots);
+	}
+
 	/**
 	 * When the frame interarrival timer expires, a new session is created, which is actually a new frame.
 	 */
 	public void synchronize(){
-		if(Source.timer-_lastFrameCreation>=_frameIntArr){
-			_lastFrameCreation=Source.timer;
+		if(context.timer-_lastFrameCreation>=_frameIntArr){
+			_lastFrameCreation=context.timer;
 			createSession();
 		}
 	}	
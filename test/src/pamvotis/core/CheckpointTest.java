@@ -0,0 +1,76 @@
+package src.pamvotis.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that a simulation resumed from a checkpoint gives exactly the same counters as a simulation that never
+ * stopped, with both engines, and that a checkpoint is refused if the parameters of SpecParams have changed.
+ * @see Simulator#saveCheckpoint(String)
+ * @see Simulator#loadCheckpoint(String)
+ */
+public class CheckpointTest {
+
+    private File file = null;	//The checkpoint file.
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("pamvotis", ".ckpt");
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void resumeHiddenTerminals() throws Exception {
+        assertSameAfterResume(TestScenarios.hiddenTerminals(), false);
+        assertSameAfterResume(TestScenarios.hiddenTerminals(), true);
+    }
+
+    @Test
+    public void resumeFtpAndHttpSources() throws Exception {
+        assertSameAfterResume(TestScenarios.ftpAndHttp(), false);
+        assertSameAfterResume(TestScenarios.ftpAndHttp(), true);
+    }
+
+    @Test
+    public void refuseOtherSpecParams() throws Exception {
+        Simulator sim = TestScenarios.create(TestScenarios.hiddenTerminals(), false);
+        TestScenarios.simulate(sim, 1, 2);
+        sim.saveCheckpoint(file.getPath());
+        int cwMax = SpecParams.CW_MAX;
+        SpecParams.CW_MAX = cwMax * 2;
+        try {
+            Simulator.loadCheckpoint(file.getPath());
+            fail("A checkpoint with other parameters of SpecParams was resumed");
+        } catch (IOException e) {
+            //Expected.
+        } finally {
+            SpecParams.CW_MAX = cwMax;
+        }
+    }
+
+    //Saves a checkpoint in the middle of a simulation and compares the rest of the resumed simulation with the
+    //same intervals of a simulation that did not stop.
+    private void assertSameAfterResume(Scenario scenario, boolean eventDriven) throws Exception {
+        Simulator continuous = TestScenarios.create(scenario, eventDriven);
+        int values = continuous.getValues();
+        TestScenarios.simulate(continuous, 1, values / 2);
+        String expected = TestScenarios.simulate(continuous, values / 2 + 1, values);
+
+        Simulator saved = TestScenarios.create(scenario, eventDriven);
+        TestScenarios.simulate(saved, 1, values / 2);
+        saved.saveCheckpoint(file.getPath());
+        Simulator resumed = Simulator.loadCheckpoint(file.getPath());
+        assertEquals(expected, TestScenarios.simulate(resumed, values / 2 + 1, values));
+    }
+}
@@ -0,0 +1,37 @@
+package src.pamvotis.core;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Checks that the event-driven engine gives exactly the same counters as the slot-stepping engine, after every
+ * interval, for the scenario that comes with the application, a network with hidden terminals and a network
+ * with FTP and HTTP sources.
+ * @see Simulator#setEventDriven(boolean)
+ */
+public class EventDrivenTest {
+
+    @Test
+    public void shippedScenario() throws Exception {
+        assertSameCounters(TestScenarios.shipped());
+    }
+
+    @Test
+    public void hiddenTerminals() throws Exception {
+        assertSameCounters(TestScenarios.hiddenTerminals());
+    }
+
+    @Test
+    public void ftpAndHttpSources() throws Exception {
+        assertSameCounters(TestScenarios.ftpAndHttp());
+    }
+
+    private static void assertSameCounters(Scenario scenario) throws Exception {
+        Simulator slots = TestScenarios.create(scenario, false);
+        Simulator events = TestScenarios.create(scenario, true);
+        String expected = TestScenarios.simulate(slots, 1, slots.getValues());
+        String actual = TestScenarios.simulate(events, 1, events.getValues());
+        assertEquals(expected, actual);
+    }
+}
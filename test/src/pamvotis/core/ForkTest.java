@@ -0,0 +1,68 @@
+package src.pamvotis.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * Checks that a fork of a simulation and the simulation itself continue exactly like a simulation that was
+ * never forked, with both engines, even when the fork runs in another thread.
+ * @see Simulator#fork()
+ */
+public class ForkTest {
+
+    @Test
+    public void forkHiddenTerminals() throws Exception {
+        assertSameAfterFork(TestScenarios.hiddenTerminals(), false);
+        assertSameAfterFork(TestScenarios.hiddenTerminals(), true);
+    }
+
+    @Test
+    public void forkFtpAndHttpSources() throws Exception {
+        assertSameAfterFork(TestScenarios.ftpAndHttp(), false);
+        assertSameAfterFork(TestScenarios.ftpAndHttp(), true);
+    }
+
+    @Test
+    public void forkKeepsCurrentSimulation() throws Exception {
+        Simulator sim = TestScenarios.create(TestScenarios.hiddenTerminals(), false);
+        TestScenarios.simulate(sim, 1, 2);
+        SimulationContext current = SimulationContext.current();
+        sim.fork();
+        assertSame(current, SimulationContext.current());
+    }
+
+    //Forks a simulation in the middle and compares the rest of the fork, simulated in another thread, and the
+    //rest of the simulation with the same intervals of a simulation that was not forked.
+    private void assertSameAfterFork(Scenario scenario, boolean eventDriven) throws Exception {
+        Simulator plain = TestScenarios.create(scenario, eventDriven);
+        final int values = plain.getValues();
+        TestScenarios.simulate(plain, 1, values / 2);
+        String expected = TestScenarios.simulate(plain, values / 2 + 1, values);
+
+        Simulator sim = TestScenarios.create(scenario, eventDriven);
+        TestScenarios.simulate(sim, 1, values / 2);
+        final Simulator fork = sim.fork();
+        final String[] forked = new String[1];
+        final Exception[] failure = new Exception[1];
+        Thread thread = new Thread() {
+
+            public void run() {
+                try {
+                    forked[0] = TestScenarios.simulate(fork, values / 2 + 1, values);
+                } catch (Exception e) {
+                    failure[0] = e;
+                }
+            }
+        };
+        thread.start();
+        String original = TestScenarios.simulate(sim, values / 2 + 1, values);
+        thread.join();
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        assertEquals(expected, original);
+        assertEquals(expected, forked[0]);
+    }
+}
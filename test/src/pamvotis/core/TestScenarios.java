@@ -0,0 +1,136 @@
+package src.pamvotis.core;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import src.pamvotis.exceptions.ElementDoesNotExistException;
+
+/**
+ * The scenarios of the regression tests and a record of the counters of a simulation, for comparing two
+ * simulations that must give exactly the same results. The tests run from the directory of the application,
+ * like the simulator, because it reads the "config/SpecParams.xml" file.
+ */
+final class TestScenarios {
+
+    private TestScenarios() {
+    }
+
+    /**
+     * @return The scenario of the "config/NtConf.xml" file that comes with the application, with no result files.
+     * @throws Exception If the file cannot be read.
+     */
+    static Scenario shipped() throws Exception {
+        return Scenario.load("config" + File.separator + "NtConf.xml").toBuilder().setOutResults("").build();
+    }
+
+    /**
+     * @return Eight nodes in a line, 10 meters from each other, with a coverage of 17 meters, so each node hears
+     * only its neighbours and the transmissions suffer from hidden terminals. The packets are sent with RTS/CTS.
+     */
+    static Scenario hiddenTerminals() {
+        Scenario.Builder b = new Scenario.Builder().setSeed(7).setDuration(3).setValues(10).setRtsThr(4000);
+        for (int i = 1; i <= 8; i++) {
+            b.addNode(i, 1000000, 17, 10 * i, 17, i % 4);
+            b.addSource(i, new Scenario.GenericSourceConfig(1, (i % 2 == 0) ? 'e' : 'c', 10, 'c', 8000));
+        }
+        return b.build();
+    }
+
+    /**
+     * @return An 802.11g network with FTP and HTTP sources, which are idle for long periods, and a generic source.
+     */
+    static Scenario ftpAndHttp() {
+        Scenario.Builder b = new Scenario.Builder().setSeed(11).setDuration(5).setValues(10).setPhyLayer('g')
+                .setRtsThr(4000);
+        for (int i = 1; i <= 6; i++) {
+            b.addNode(i, 54000000, 17, 17, 17, i % 4);
+            if (i % 3 == 1) {
+                b.addSource(i, new Scenario.FTPSourceConfig(1, 8000, 20000, 7220, 50000, 0.05f));
+            } else if (i % 3 == 2) {
+                b.addSource(i, new Scenario.HTTPSourceConfig(1, 12000, 10710, 25032, 100, 2000000, 7758, 126168,
+                        50, 2000000, 5.64f, 53, 0.3f, 0.13f));
+            } else {
+                b.addSource(i, new Scenario.GenericSourceConfig(1, 'e', 5, 'c', 8000));
+            }
+        }
+        return b.build();
+    }
+
+    /**
+     * Creates a simulation of a scenario.
+     * @param scenario The scenario.
+     * @param eventDriven True for the event-driven engine.
+     * @return The simulation, after confParams().
+     */
+    static Simulator create(Scenario scenario, boolean eventDriven) {
+        Simulator sim = new Simulator();
+        sim.setEventDriven(eventDriven);
+        sim.confParams(scenario);
+        return sim;
+    }
+
+    /**
+     * Simulates some of the intervals of a simulation, like the interface does, and records the counters of the
+     * simulation after each interval.
+     * @param sim The simulation.
+     * @param first The first interval, from 1 to the number of intervals of the simulation.
+     * @param last The last interval.
+     * @return The counters after each interval, one node per line.
+     * @throws Exception If the counters cannot be read.
+     */
+    static String simulate(Simulator sim, int first, int last) throws Exception {
+        int values = sim.getValues();
+        int interval = (int) (sim.getDuration() * 1000 / values);
+        int modInterval = (int) ((sim.getDuration() * 1000) % values);
+        StringBuilder b = new StringBuilder();
+        for (int i = first; i <= last; i++) {
+            int j = (i - 1) * interval;
+            sim.simulate(j + 1, j + interval + ((i == values) ? modInterval : 0));
+            b.append("Interval ").append(i).append('\n').append(counters(sim));
+        }
+        return b.toString();
+    }
+
+    /**
+     * Records every counter of every node: the statistics, the MAC state, the packet buffer and the delay
+     * histograms. The counters are the primitive fields of MobileNode, so the counters added later are
+     * recorded too.
+     * @param sim The simulation.
+     * @return The counters, one node per line, after the counters of the whole system.
+     * @throws Exception If the counters cannot be read.
+     */
+    static String counters(Simulator sim) throws Exception {
+        StringBuilder b = new StringBuilder();
+        b.append("time=").append(sim.getTime()).append(" collisions=").append(sim.getCollisionsForAllNodes())
+                .append(" success=").append(sim.getSuccessForAllNodes()).append('\n');
+        int[] ids = sim.getNodeIds();
+        for (int i = 0; i < ids.length; i++) {
+            b.append(node(sim, ids[i])).append('\n');
+        }
+        return b.toString();
+    }
+
+    //The counters of a node.
+    private static String node(Simulator sim, int id) throws ElementDoesNotExistException, IllegalAccessException {
+        MobileNode n = sim.getNode(id);
+        StringBuilder b = new StringBuilder("node=" + id);
+        Field[] fields = MobileNode.class.getDeclaredFields();
+        for (int i = 0; i < fields.length; i++) {
+            if ((Modifier.isStatic(fields[i].getModifiers()) == false) && fields[i].getType().isPrimitive()) {
+                fields[i].setAccessible(true);
+                b.append(' ').append(fields[i].getName()).append('=').append(fields[i].get(n));
+            }
+        }
+        b.append(" backoff=").append(n.getBackoffCounter()).append(" request=").append(n.isRequestTransmit())
+                .append(" success=").append(n.isSuccessfullyTransmitting()).append(" havePkt=")
+                .append(n.isHavePktToSend()).append(" transmitting=").append(n.isNowTransmitting())
+                .append(" buffer=").append(n.getPacketBuffer().size());
+        for (int d = 0; d < n.totDelays.length; d++) {
+            b.append(" delay").append(d).append('=').append(n.totDelays[d].getTotalCount()).append('/')
+                    .append(n.totDelays[d].getMean()).append('/').append(n.totDelays[d].getValueAtPercentile(99))
+                    .append('/').append(n.totDelays[d].getMax());
+        }
+        return b.toString();
+    }
+}